@@ -0,0 +1,138 @@
+import { createClient } from "@/lib/supabase/server"
+import { changeFeedHorizonNanos } from "@/lib/utils/change-feed"
+import { parseLimit } from "@/lib/utils/paging"
+import { type NextRequest, NextResponse } from "next/server"
+
+// Long-poll waits are capped below common proxy idle timeouts
+const MAX_WAIT_MILLIS = 25000
+const POLL_INTERVAL_MILLIS = 1000
+
+// GET /api/fitness/v1/users/{userId}/dataSources/{dataSourceId}/changes?cursor=&limit=&waitMillis=
+//
+// Returns data points modified after `cursor`, oldest change first. The cursor is opaque to
+// clients ("<modifiedTimeNanos>:<id>"); an empty cursor starts from the beginning. When
+// nothing has changed and `waitMillis` is set, the request is held open until a change
+// arrives or the wait runs out, so clients can follow a stream without polling the
+// whole range. Changes become visible MAX_WRITE_DURATION_MILLIS after they are stamped, so
+// a write that commits late is not skipped by a cursor that has already moved past it.
+export async function GET(
+  request: NextRequest,
+  { params }: { params: Promise<{ userId: string; dataSourceId: string }> },
+) {
+  try {
+    const { userId, dataSourceId } = await params
+    const { searchParams } = new URL(request.url)
+    const cursor = parseCursor(searchParams.get("cursor"))
+    const limit = parseLimit(searchParams.get("limit"))
+    const waitMillis = Math.min(Math.max(Number.parseInt(searchParams.get("waitMillis") || "0") || 0, 0), MAX_WAIT_MILLIS)
+    const supabase = await createClient()
+
+    if (cursor === undefined) {
+      return NextResponse.json({ error: "Invalid cursor" }, { status: 400 })
+    }
+
+    // Verify authentication
+    const {
+      data: { user },
+      error: authError,
+    } = await supabase.auth.getUser()
+    if (authError || !user || user.id !== userId) {
+      return NextResponse.json({ error: "Unauthorized" }, { status: 401 })
+    }
+
+    // Get data source
+    const { data: dataSource, error: dsError } = await supabase
+      .from("data_sources")
+      .select("id")
+      .eq("user_id", userId)
+      .eq("data_stream_id", dataSourceId)
+      .single()
+
+    if (dsError || !dataSource) {
+      return NextResponse.json({ error: "Data source not found" }, { status: 404 })
+    }
+
+    const deadline = Date.now() + waitMillis
+    let rows: any[] = []
+    while (true) {
+      let query = supabase
+        .from("data_points")
+        // The text copy keeps the cursor exact; bigint arrives as a lossy JSON number
+        .select("*, modified_time_text:modified_time_nanos::text")
+        .eq("user_id", userId)
+        .eq("data_source_id", dataSource.id)
+        // Rows stamped within MAX_WRITE_DURATION_MILLIS may still have older siblings in flight
+        .lt("modified_time_nanos", changeFeedHorizonNanos())
+
+      // Keyset paging on (modified_time_nanos, id) so points sharing a timestamp are not skipped
+      if (cursor) {
+        query = query.or(
+          `modified_time_nanos.gt.${cursor.modified},and(modified_time_nanos.eq.${cursor.modified},id.gt.${cursor.id})`,
+        )
+      }
+
+      const { data, error } = await query
+        .order("modified_time_nanos", { ascending: true })
+        .order("id", { ascending: true })
+        .limit(limit + 1)
+
+      if (error) {
+        return NextResponse.json({ error: "Failed to fetch changes" }, { status: 500 })
+      }
+
+      rows = data
+      if (rows.length > 0 || Date.now() + POLL_INTERVAL_MILLIS > deadline || request.signal.aborted) {
+        break
+      }
+      await new Promise((resolve) => setTimeout(resolve, POLL_INTERVAL_MILLIS))
+    }
+
+    const hasMore = rows.length > limit
+    const changes = hasMore ? rows.slice(0, limit) : rows
+    const last = changes[changes.length - 1]
+
+    // Transform to HealthyDuck API format
+    const transformedPoints = changes.map((dp) => ({
+      startTimeNanos: dp.start_time_nanos.toString(),
+      endTimeNanos: dp.end_time_nanos.toString(),
+      dataTypeName: dp.data_type_name,
+      modifiedTimeMillis: Math.floor(dp.modified_time_nanos / 1000000).toString(),
+      value:
+        dp.int_val !== null
+          ? [{ intVal: dp.int_val }]
+          : dp.fp_val !== null
+            ? [{ fpVal: dp.fp_val }]
+            : dp.string_val !== null
+              ? [{ stringVal: dp.string_val }]
+              : dp.map_val !== null
+                ? [{ mapVal: dp.map_val }]
+                : [],
+      originDataSourceId: dp.origin_data_source_id,
+    }))
+
+    return NextResponse.json({
+      dataSourceId: dataSourceId,
+      point: transformedPoints,
+      // Unchanged when nothing new arrived, so the client can poll again with the same value
+      cursor: last ? `${last.modified_time_text}:${last.id}` : searchParams.get("cursor") || "",
+      hasMore,
+    })
+  } catch (error) {
+    console.error("Error fetching changes:", error)
+    return NextResponse.json({ error: "Internal server error" }, { status: 500 })
+  }
+}
+
+// Returns null for "from the beginning" and undefined for a malformed cursor.
+function parseCursor(value: string | null): { modified: string; id: string } | null | undefined {
+  if (!value) {
+    return null
+  }
+  const separator = value.indexOf(":")
+  const modified = value.slice(0, separator)
+  const id = value.slice(separator + 1)
+  if (separator < 1 || !/^\d+$/.test(modified) || !/^[0-9a-f-]{36}$/i.test(id)) {
+    return undefined
+  }
+  return { modified, id }
+}
@@ -1,5 +1,21 @@
 import { createClient } from "@/lib/supabase/server"
 import { type NextRequest, NextResponse } from "next/server"
+import {
+  BINARY_DATAPOINTS_CONTENT_TYPE,
+  acceptsBinaryDataPoints,
+  decodeDataPoints,
+  encodeDataPoints,
+  isBinaryDataPoints,
+  type WireDataPoint,
+} from "@/lib/utils/datapoint-wire-format"
+import { parsePageParams } from "@/lib/utils/paging"
+
+// Binary responses above this many points are gzip-compressed
+const COMPRESS_MIN_POINTS = 1000
+
+// Unique key of a stored point (scripts/007). Upserting on it makes a retried or replayed
+// PATCH overwrite the points it already wrote instead of duplicating them.
+const POINT_KEY = "data_source_id,data_type_name,start_time_nanos,end_time_nanos"
 
 // GET /api/fitness/v1/users/{userId}/dataSources/{dataSourceId}/datasets/{datasetId}
 export async function GET(
@@ -8,6 +24,8 @@ export async function GET(
 ) {
   try {
     const { userId, dataSourceId, datasetId } = await params
+    const { searchParams } = new URL(request.url)
+    const page = parsePageParams(searchParams)
     const supabase = await createClient()
 
     // Verify authentication
@@ -39,7 +57,7 @@ export async function GET(
     }
 
     // Get data points in the time range
-    const { data: dataPoints, error } = await supabase
+    let query = supabase
       .from("data_points")
       .select("*")
       .eq("user_id", userId)
@@ -47,11 +65,22 @@ export async function GET(
       .gte("start_time_nanos", startTimeNanos)
       .lte("end_time_nanos", endTimeNanos)
       .order("start_time_nanos", { ascending: true })
+      .order("id", { ascending: true })
+
+    // Fetch one extra row to know whether another page follows
+    if (page) {
+      query = query.range(page.offset, page.offset + page.limit)
+    }
+
+    const { data: rows, error } = await query
 
     if (error) {
       return NextResponse.json({ error: "Failed to fetch data points" }, { status: 500 })
     }
 
+    const hasMore = page !== null && rows.length > page.limit
+    const dataPoints = page && hasMore ? rows.slice(0, page.limit) : rows
+
     // Transform to HealthyDuck API format
     const transformedPoints = dataPoints.map((dp) => ({
       startTimeNanos: dp.start_time_nanos.toString(),
@@ -71,14 +100,31 @@ export async function GET(
       originDataSourceId: dp.origin_data_source_id,
     }))
 
+    const nextPageToken = page && hasMore ? (page.offset + page.limit).toString() : undefined
+
+    // Binary has no mapVal encoding; such datasets are always sent as JSON
+    const wirePoints = transformedPoints as WireDataPoint[]
+    if (
+      acceptsBinaryDataPoints(request.headers.get("accept")) &&
+      wirePoints.every((point) => !point.value[0] || !("mapVal" in point.value[0]))
+    ) {
+      const body = encodeDataPoints(wirePoints, { compress: wirePoints.length >= COMPRESS_MIN_POINTS })
+      const headers: Record<string, string> = { "Content-Type": BINARY_DATAPOINTS_CONTENT_TYPE, Vary: "Accept" }
+      if (nextPageToken) {
+        headers["X-Next-Page-Token"] = nextPageToken
+      }
+      return new NextResponse(body, { headers })
+    }
+
     const response = {
       dataSourceId: dataSourceId,
       maxEndTimeNs: endTimeNanos.toString(),
       minStartTimeNs: startTimeNanos.toString(),
       point: transformedPoints,
+      nextPageToken,
     }
 
-    return NextResponse.json(response)
+    return NextResponse.json(response, { headers: { Vary: "Accept" } })
   } catch (error) {
     console.error("Error fetching dataset:", error)
     return NextResponse.json({ error: "Internal server error" }, { status: 500 })
@@ -92,7 +138,6 @@ export async function PATCH(
 ) {
   try {
     const { userId, dataSourceId, datasetId } = await params
-    const body = await request.json()
     const supabase = await createClient()
 
     // Verify authentication
@@ -123,8 +168,22 @@ export async function PATCH(
       return NextResponse.json({ error: "Data source not found" }, { status: 404 })
     }
 
-    // Process data points from request
-    const dataPoints = body.point || []
+    // Process data points from request, sent either as JSON or in the binary wire format
+    let dataPoints: any[]
+    if (isBinaryDataPoints(request.headers.get("content-type"))) {
+      try {
+        dataPoints = decodeDataPoints(new Uint8Array(await request.arrayBuffer()))
+      } catch {
+        return NextResponse.json({ error: "Invalid binary data point payload" }, { status: 400 })
+      }
+    } else {
+      const body = await request.json()
+      dataPoints = body.point || body.dataPoints || []
+    }
+    // Stamped by the server so client clock skew cannot reorder the change feed. The feed
+    // holds rows back for MAX_WRITE_DURATION_MILLIS (lib/utils/change-feed), so this stamp
+    // may lag the commit by up to that long. Kept as a string because nanos overflow a double
+    const modifiedTimeNanos = (BigInt(Date.now()) * BigInt(1000000)).toString()
     const insertPromises = dataPoints.map(async (point: any) => {
       const value = point.value?.[0]
 
@@ -134,16 +193,20 @@ export async function PATCH(
         data_type_name: point.dataTypeName,
         start_time_nanos: Number.parseInt(point.startTimeNanos),
         end_time_nanos: Number.parseInt(point.endTimeNanos),
-        modified_time_nanos: Number.parseInt(point.modifiedTimeMillis) * 1000000,
+        modified_time_nanos: modifiedTimeNanos,
         int_val: value?.intVal || null,
         fp_val: value?.fpVal || null,
         string_val: value?.stringVal || null,
         map_val: value?.mapVal || null,
         origin_data_source_id: point.originDataSourceId,
-      })
+      }, { onConflict: POINT_KEY })
     })
 
-    await Promise.all(insertPromises)
+    // Report a failed write so the client retries it; a replay is absorbed by the upsert key
+    const results = await Promise.all(insertPromises)
+    if (results.some((result) => result.error)) {
+      return NextResponse.json({ error: "Failed to store data points" }, { status: 500 })
+    }
 
     return NextResponse.json({ message: "Data points updated successfully" })
   } catch (error) {
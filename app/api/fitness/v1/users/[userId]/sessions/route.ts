@@ -1,5 +1,6 @@
 import { createClient } from "@/lib/supabase/server"
 import { type NextRequest, NextResponse } from "next/server"
+import { parsePageParams } from "@/lib/utils/paging"
 
 // GET /api/fitness/v1/users/{userId}/sessions
 export async function GET(request: NextRequest, { params }: { params: { userId: string } }) {
@@ -8,6 +9,7 @@ export async function GET(request: NextRequest, { params }: { params: { userId:
     const { searchParams } = new URL(request.url)
     const startTime = searchParams.get("startTime")
     const endTime = searchParams.get("endTime")
+    const page = parsePageParams(searchParams)
     const supabase = await createClient()
 
     // Verify authentication
@@ -30,12 +32,22 @@ export async function GET(request: NextRequest, { params }: { params: { userId:
       query = query.lte("end_time_millis", Number.parseInt(endTime))
     }
 
-    const { data: sessions, error } = await query.order("start_time_millis", { ascending: false })
+    query = query.order("start_time_millis", { ascending: false }).order("session_id", { ascending: true })
+
+    // Fetch one extra row to know whether another page follows
+    if (page) {
+      query = query.range(page.offset, page.offset + page.limit)
+    }
+
+    const { data: rows, error } = await query
 
     if (error) {
       return NextResponse.json({ error: "Failed to fetch sessions" }, { status: 500 })
     }
 
+    const hasMore = page !== null && rows.length > page.limit
+    const sessions = page && hasMore ? rows.slice(0, page.limit) : rows
+
     // Transform to HealthyDuck API format
     const transformedSessions = sessions.map((session) => ({
       id: session.session_id,
@@ -55,6 +67,7 @@ export async function GET(request: NextRequest, { params }: { params: { userId:
 
     return NextResponse.json({
       session: transformedSessions,
+      nextPageToken: page && hasMore ? (page.offset + page.limit).toString() : undefined,
     })
   } catch (error) {
     console.error("Error fetching sessions:", error)
@@ -0,0 +1,90 @@
+package com.ultimatequack.healthyduck.client;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One time bucket of an aggregation result, in the same shape as the server's
+ * {@code AggregationBucket} ({@code /dataset/aggregate}), so local and remote results can
+ * be compared field by field.
+ */
+public final class AggregationBucket {
+    private final long startTimeMillis;
+    private final long endTimeMillis;
+    private final List<AggregatedPoint> points;
+
+    AggregationBucket(long startTimeMillis, long endTimeMillis, List<AggregatedPoint> points) {
+        this.startTimeMillis = startTimeMillis;
+        this.endTimeMillis = endTimeMillis;
+        this.points = Collections.unmodifiableList(points);
+    }
+
+    public long getStartTimeMillis() { return startTimeMillis; }
+    public long getEndTimeMillis() { return endTimeMillis; }
+
+    /** One aggregated point per data type present in the bucket, or per requested type. */
+    public List<AggregatedPoint> getPoints() { return points; }
+
+    public JSONObject toJson() throws JSONException {
+        JSONArray pointArray = new JSONArray();
+        for (AggregatedPoint point : points) {
+            pointArray.put(point.toJson(startTimeMillis, endTimeMillis));
+        }
+        JSONObject dataset = new JSONObject();
+        dataset.put("point", pointArray);
+
+        JSONObject json = new JSONObject();
+        json.put("startTimeMillis", startTimeMillis);
+        json.put("endTimeMillis", endTimeMillis);
+        json.put("dataset", new JSONArray().put(dataset));
+        return json;
+    }
+
+    /** Parses a bucket returned by the aggregate endpoint. */
+    public static AggregationBucket fromJson(JSONObject json) throws JSONException {
+        List<AggregatedPoint> points = new ArrayList<>();
+        JSONArray datasets = json.optJSONArray("dataset");
+        for (int d = 0; datasets != null && d < datasets.length(); d++) {
+            JSONArray pointArray = datasets.getJSONObject(d).optJSONArray("point");
+            for (int p = 0; pointArray != null && p < pointArray.length(); p++) {
+                JSONObject point = pointArray.getJSONObject(p);
+                JSONArray values = point.optJSONArray("value");
+                JSONObject value = values != null && values.length() > 0 ? values.getJSONObject(0) : new JSONObject();
+                double number = value.has("fpVal") ? value.getDouble("fpVal") : value.optDouble("intVal", 0);
+                points.add(new AggregatedPoint(point.optString("dataTypeName"), number, 0));
+            }
+        }
+        return new AggregationBucket(json.getLong("startTimeMillis"), json.getLong("endTimeMillis"), points);
+    }
+
+    public static final class AggregatedPoint {
+        private final String dataTypeName;
+        private final double value;
+        private final long count;
+
+        AggregatedPoint(String dataTypeName, double value, long count) {
+            this.dataTypeName = dataTypeName;
+            this.value = value;
+            this.count = count;
+        }
+
+        public String getDataTypeName() { return dataTypeName; }
+        public double getValue() { return value; }
+
+        /** Number of raw points that went into the value (0 when parsed from the server). */
+        public long getCount() { return count; }
+
+        JSONObject toJson(long bucketStartMillis, long bucketEndMillis) throws JSONException {
+            JSONObject json = new JSONObject();
+            json.put("dataTypeName", dataTypeName);
+            json.put("startTimeNanos", bucketStartMillis * 1000000);
+            json.put("endTimeNanos", bucketEndMillis * 1000000);
+            json.put("value", new JSONArray().put(new JSONObject().put("fpVal", value)));
+            return json;
+        }
+    }
+}
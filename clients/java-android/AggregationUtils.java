@@ -0,0 +1,85 @@
+package com.ultimatequack.healthyduck.client;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Java counterpart of {@code AggregationUtils} in {@code lib/utils/aggregation.ts}.
+ * Keep the two in step; {@link DataPointAggregator} builds on these definitions.
+ */
+public final class AggregationUtils {
+    public static final long HOUR_MILLIS = 60L * 60 * 1000;
+    public static final long DAY_MILLIS = 24 * HOUR_MILLIS;
+
+    public enum AggregationType { SUM, AVG, MIN, MAX }
+
+    private AggregationUtils() {
+    }
+
+    /** Consecutive {@code [start, end)} buckets of {@code bucketSize} millis; the last one may be shorter. */
+    public static List<long[]> createTimeBuckets(long startTime, long endTime, long bucketSize) {
+        if (bucketSize <= 0) {
+            throw new IllegalArgumentException("bucketSize must be > 0");
+        }
+        List<long[]> buckets = new ArrayList<>();
+        long currentStart = startTime;
+        while (currentStart < endTime) {
+            long currentEnd = Math.min(currentStart + bucketSize, endTime);
+            buckets.add(new long[] {currentStart, currentEnd});
+            currentStart = currentEnd;
+        }
+        return buckets;
+    }
+
+    /** Aggregates a value array; returns 0 for an empty input, like the TypeScript version. */
+    public static double aggregateValues(double[] values, AggregationType aggregationType) {
+        if (values.length == 0) {
+            return 0;
+        }
+        switch (aggregationType) {
+            case AVG:
+                return sum(values) / values.length;
+            case MIN: {
+                double min = values[0];
+                for (double value : values) {
+                    min = Math.min(min, value);
+                }
+                return min;
+            }
+            case MAX: {
+                double max = values[0];
+                for (double value : values) {
+                    max = Math.max(max, value);
+                }
+                return max;
+            }
+            case SUM:
+            default:
+                return sum(values);
+        }
+    }
+
+    /** Fixed bucket length for a period name; unknown names default to a day. */
+    public static long getBucketDuration(String period) {
+        switch (period.toLowerCase(java.util.Locale.ROOT)) {
+            case "hour":
+                return HOUR_MILLIS;
+            case "day":
+                return DAY_MILLIS;
+            case "week":
+                return 7 * DAY_MILLIS;
+            case "month":
+                return 30 * DAY_MILLIS;
+            default:
+                return DAY_MILLIS; // Default to day
+        }
+    }
+
+    private static double sum(double[] values) {
+        double sum = 0;
+        for (double value : values) {
+            sum += value;
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,49 @@
+package com.ultimatequack.healthyduck.client;
+
+/**
+ * Thresholds for {@link DataPointBatcher}.
+ */
+public class BatchOptions {
+    private int maxBatchSize = 500;
+    private long lingerMillis = 1000;
+    private int maxBufferedPoints = 10000;
+    private long maxBlockMillis = 5000;
+
+    public int getMaxBatchSize() { return maxBatchSize; }
+
+    /** A (user, data source) buffer is sent as soon as it holds this many points. */
+    public BatchOptions setMaxBatchSize(int maxBatchSize) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("maxBatchSize must be >= 1");
+        }
+        this.maxBatchSize = maxBatchSize;
+        return this;
+    }
+
+    public long getLingerMillis() { return lingerMillis; }
+
+    /** Longest time a point waits in a buffer before the buffer is sent anyway. */
+    public BatchOptions setLingerMillis(long lingerMillis) {
+        this.lingerMillis = lingerMillis;
+        return this;
+    }
+
+    public int getMaxBufferedPoints() { return maxBufferedPoints; }
+
+    /** Points buffered or in flight across all buffers before {@code add} starts blocking. */
+    public BatchOptions setMaxBufferedPoints(int maxBufferedPoints) {
+        if (maxBufferedPoints < 1) {
+            throw new IllegalArgumentException("maxBufferedPoints must be >= 1");
+        }
+        this.maxBufferedPoints = maxBufferedPoints;
+        return this;
+    }
+
+    public long getMaxBlockMillis() { return maxBlockMillis; }
+
+    /** How long {@code add} waits for buffer space before failing the point. */
+    public BatchOptions setMaxBlockMillis(long maxBlockMillis) {
+        this.maxBlockMillis = maxBlockMillis;
+        return this;
+    }
+}
@@ -0,0 +1,277 @@
+package com.ultimatequack.healthyduck.client;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Runs the queries of one bulk fetch with at most {@link FanOutOptions#getMaxConcurrentRequests()}
+ * HTTP requests in flight, starting the next as each completes. A long range is read in
+ * chunks by {@link RangeQueryPlanner}; its chunk requests take permits from the same
+ * {@link RequestLimiter} as every other request of the fetch. All-sources queries first
+ * list the user's data sources and then queue one read per source, so listings share the
+ * same bound. When a user's last query completes, its results are k-way merged into one
+ * time-ordered list.
+ */
+final class BulkDataPointFetch {
+    private static final Comparator<Cursor> BY_TIME = Comparator
+        .comparingLong((Cursor cursor) -> cursor.peek().getStartTimeNanos())
+        .thenComparingLong(cursor -> cursor.peek().getEndTimeNanos())
+        .thenComparing(cursor -> cursor.dataSourceId, Comparator.nullsFirst(Comparator.<String>naturalOrder()))
+        .thenComparingInt(cursor -> cursor.order);
+
+    private final HealthyDuckClient client;
+    private final int maxConcurrent;
+    private final RequestLimiter limiter;
+    private final BulkFetchListener listener;
+    private final CompletableFuture<BulkFetchResult> done = new CompletableFuture<>();
+
+    // Guarded by this
+    private final Deque<Supplier<CompletableFuture<?>>> queue = new ArrayDeque<>();
+    private final Map<String, UserState> users = new LinkedHashMap<>();
+    private final List<QueryResult> results = new ArrayList<>();
+    private int running;
+    private int remaining;
+    private boolean pumping;
+
+    BulkDataPointFetch(HealthyDuckClient client, FanOutOptions options, BulkFetchListener listener) {
+        this.client = client;
+        this.maxConcurrent = options.getMaxConcurrentRequests();
+        this.limiter = new RequestLimiter(maxConcurrent);
+        this.listener = listener != null ? listener : BulkFetchListener.NONE;
+    }
+
+    CompletableFuture<BulkFetchResult> start(Collection<DataPointQuery> queries) {
+        synchronized (this) {
+            for (DataPointQuery query : queries) {
+                UserState user = users.computeIfAbsent(query.getUserId(), id -> new UserState());
+                user.pending++;
+                remaining++;
+                queue.add(query.getDataSourceId() != null ? () -> read(query) : () -> expand(query));
+            }
+        }
+        if (queries.isEmpty()) {
+            done.complete(new BulkFetchResult(new LinkedHashMap<>(), new ArrayList<>()));
+        }
+        pump();
+        return done;
+    }
+
+    private CompletableFuture<?> read(DataPointQuery query) {
+        CompletableFuture<List<DataPoint>> fetch;
+        try {
+            fetch = client.getDataPoints(query.getUserId(), query.getDataSourceId(), query.datasetId(), limiter);
+        } catch (RuntimeException e) {
+            fetch = failed(e);
+        }
+        return fetch.whenComplete((points, error) ->
+                finish(new QueryResult(query, points, error != null ? HealthyDuckClient.unwrap(error) : null)));
+    }
+
+    /** Replaces an all-sources query with one read per data source of the user. */
+    private CompletableFuture<?> expand(DataPointQuery query) {
+        CompletableFuture<List<DataSource>> listing;
+        try {
+            listing = limiter.submit(() -> client.getDataSources(query.getUserId()));
+        } catch (RuntimeException e) {
+            listing = failed(e);
+        }
+        return listing.whenComplete((sources, error) -> {
+            if (error != null) {
+                finish(new QueryResult(query, null, HealthyDuckClient.unwrap(error)));
+                return;
+            }
+            Runnable completion;
+            synchronized (this) {
+                UserState user = users.get(query.getUserId());
+                for (DataSource source : sources) {
+                    DataPointQuery perSource = new DataPointQuery(query.getUserId(), source.getDataStreamId(),
+                        query.getStartTimeNanos(), query.getEndTimeNanos());
+                    user.pending++;
+                    remaining++;
+                    queue.add(() -> read(perSource));
+                }
+                // The listing itself is done; its reads now keep the user open
+                completion = release(query.getUserId(), user);
+            }
+            completion.run();
+            pump();
+        });
+    }
+
+    private void finish(QueryResult result) {
+        callListener(() -> listener.onQueryResult(result));
+        String userId = result.getQuery().getUserId();
+        Runnable completion;
+        synchronized (this) {
+            results.add(result);
+            UserState user = users.get(userId);
+            user.results.add(result);
+            completion = release(userId, user);
+        }
+        completion.run();
+    }
+
+    /**
+     * Marks one of the user's queries done; called with the lock held. The returned
+     * callbacks run after the lock is released so listeners and dependent stages never
+     * execute inside it.
+     */
+    private Runnable release(String userId, UserState user) {
+        user.pending--;
+        remaining--;
+        if (user.pending > 0) {
+            return () -> { };
+        }
+        List<DataPoint> merged = merge(user.results);
+        user.merged = merged;
+        BulkFetchResult result = remaining == 0 ? snapshot() : null;
+        return () -> {
+            callListener(() -> listener.onUserComplete(userId, merged));
+            if (result != null) {
+                done.complete(result);
+            }
+        };
+    }
+
+    private BulkFetchResult snapshot() {
+        Map<String, List<DataPoint>> byUser = new LinkedHashMap<>();
+        for (Map.Entry<String, UserState> entry : users.entrySet()) {
+            byUser.put(entry.getKey(), entry.getValue().merged);
+        }
+        return new BulkFetchResult(byUser, new ArrayList<>(results));
+    }
+
+    /** Starts queued work up to the concurrency bound; re-entrant calls leave it to the running loop. */
+    private void pump() {
+        synchronized (this) {
+            if (pumping) {
+                return;
+            }
+            pumping = true;
+        }
+        while (true) {
+            Supplier<CompletableFuture<?>> task;
+            synchronized (this) {
+                if (running >= maxConcurrent || queue.isEmpty()) {
+                    pumping = false;
+                    return;
+                }
+                task = queue.poll();
+                running++;
+            }
+            task.get().whenComplete((ignored, error) -> {
+                synchronized (this) {
+                    running--;
+                }
+                pump();
+            });
+        }
+    }
+
+    private static <T> CompletableFuture<T> failed(Throwable error) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(error);
+        return future;
+    }
+
+    private static void callListener(Runnable callback) {
+        try {
+            callback.run();
+        } catch (RuntimeException e) {
+            // A failing listener must not stall the rest of the batch
+        }
+    }
+
+    /**
+     * K-way merge of the successful results by start then end time. Ties keep a fixed order
+     * by data source and query, so all points of one source with the same start and end are
+     * adjacent. Within that group each data type is kept once, matching the server's point
+     * key (source, type, start, end): a point returned by overlapping queries appears once
+     * even when points of other types interleave with its copies.
+     */
+    static List<DataPoint> merge(List<QueryResult> results) {
+        PriorityQueue<Cursor> heap = new PriorityQueue<>(Math.max(1, results.size()), BY_TIME);
+        int total = 0;
+        for (int i = 0; i < results.size(); i++) {
+            QueryResult result = results.get(i);
+            if (result.isSuccess() && !result.getPoints().isEmpty()) {
+                heap.add(new Cursor(sortedByTime(result.getPoints()), result.getQuery().getDataSourceId(), i));
+                total += result.getPoints().size();
+            }
+        }
+
+        List<DataPoint> merged = new ArrayList<>(total);
+        // Data types already kept for the current (source, start, end) group
+        Set<String> groupTypes = new HashSet<>();
+        DataPoint groupFirst = null;
+        String groupSource = null;
+        while (!heap.isEmpty()) {
+            Cursor cursor = heap.poll();
+            DataPoint point = cursor.points.get(cursor.index++);
+            if (groupFirst == null || !Objects.equals(cursor.dataSourceId, groupSource)
+                    || !sameTimeRange(groupFirst, point)) {
+                groupTypes.clear();
+                groupFirst = point;
+                groupSource = cursor.dataSourceId;
+            }
+            if (groupTypes.add(String.valueOf(point.getDataTypeName()))) {
+                merged.add(point);
+            }
+            if (cursor.index < cursor.points.size()) {
+                heap.add(cursor);
+            }
+        }
+        return merged;
+    }
+
+    private static List<DataPoint> sortedByTime(List<DataPoint> points) {
+        for (int i = 1; i < points.size(); i++) {
+            if (points.get(i - 1).getStartTimeNanos() > points.get(i).getStartTimeNanos()) {
+                List<DataPoint> copy = new ArrayList<>(points);
+                copy.sort(Comparator.comparingLong(DataPoint::getStartTimeNanos)
+                                    .thenComparingLong(DataPoint::getEndTimeNanos));
+                return copy;
+            }
+        }
+        return points;
+    }
+
+    private static boolean sameTimeRange(DataPoint a, DataPoint b) {
+        return a.getStartTimeNanos() == b.getStartTimeNanos() && a.getEndTimeNanos() == b.getEndTimeNanos();
+    }
+
+    private static final class UserState {
+        final List<QueryResult> results = new ArrayList<>();
+        int pending;
+        List<DataPoint> merged;
+    }
+
+    private static final class Cursor {
+        final List<DataPoint> points;
+        final String dataSourceId;
+        final int order;
+        int index;
+
+        Cursor(List<DataPoint> points, String dataSourceId, int order) {
+            this.points = points;
+            this.dataSourceId = dataSourceId;
+            this.order = order;
+        }
+
+        DataPoint peek() {
+            return points.get(index);
+        }
+    }
+}
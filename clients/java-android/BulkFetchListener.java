@@ -0,0 +1,19 @@
+package com.ultimatequack.healthyduck.client;
+
+import java.util.List;
+
+/**
+ * Progress callbacks for a bulk fetch, called on I/O threads as work completes. They must
+ * not block; an exception thrown here is ignored.
+ */
+public interface BulkFetchListener {
+    BulkFetchListener NONE = new BulkFetchListener() {};
+
+    /** One query finished, successfully or not. */
+    default void onQueryResult(QueryResult result) {
+    }
+
+    /** Every query for {@code userId} finished; {@code points} merges the successful ones in time order. */
+    default void onUserComplete(String userId, List<DataPoint> points) {
+    }
+}
@@ -0,0 +1,47 @@
+package com.ultimatequack.healthyduck.client;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Everything a bulk fetch returned: per-user merged points plus every per-query outcome.
+ * The fetch itself never fails; check {@link #getFailures()} for queries that did.
+ */
+public final class BulkFetchResult {
+    private final Map<String, List<DataPoint>> pointsByUser;
+    private final List<QueryResult> results;
+
+    BulkFetchResult(Map<String, List<DataPoint>> pointsByUser, List<QueryResult> results) {
+        this.pointsByUser = Collections.unmodifiableMap(pointsByUser);
+        this.results = Collections.unmodifiableList(results);
+    }
+
+    /** Users in the order they first appeared in the queries. */
+    public Set<String> getUserIds() {
+        return pointsByUser.keySet();
+    }
+
+    /** Time-ordered points across all of the user's successful queries; empty for unknown users. */
+    public List<DataPoint> getPoints(String userId) {
+        List<DataPoint> points = pointsByUser.get(userId);
+        return points != null ? points : Collections.<DataPoint>emptyList();
+    }
+
+    /** Per-query outcomes in completion order. */
+    public List<QueryResult> getResults() {
+        return results;
+    }
+
+    public List<QueryResult> getFailures() {
+        List<QueryResult> failures = new ArrayList<>();
+        for (QueryResult result : results) {
+            if (!result.isSuccess()) {
+                failures.add(result);
+            }
+        }
+        return failures;
+    }
+}
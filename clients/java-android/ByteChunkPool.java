@@ -0,0 +1,50 @@
+package com.ultimatequack.healthyduck.client;
+
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Bounded free list of equally sized byte arrays that request bodies are encoded into.
+ * Chunks beyond {@code maxPooled} are left to the garbage collector, and so are chunks
+ * that are never handed back, so a leak only costs the reuse.
+ */
+final class ByteChunkPool {
+    static final int DEFAULT_CHUNK_BYTES = 16 * 1024;
+    private static final int DEFAULT_MAX_POOLED = 64;
+
+    private static final ByteChunkPool SHARED = new ByteChunkPool(DEFAULT_CHUNK_BYTES, DEFAULT_MAX_POOLED);
+
+    private final int chunkBytes;
+    private final ArrayBlockingQueue<byte[]> free;
+
+    ByteChunkPool(int chunkBytes, int maxPooled) {
+        if (chunkBytes < 1 || maxPooled < 1) {
+            throw new IllegalArgumentException("chunkBytes and maxPooled must be at least 1");
+        }
+        this.chunkBytes = chunkBytes;
+        this.free = new ArrayBlockingQueue<>(maxPooled);
+    }
+
+    /** Process-wide pool of 16 KiB chunks, retaining at most 1 MiB while idle. */
+    static ByteChunkPool shared() {
+        return SHARED;
+    }
+
+    int chunkBytes() {
+        return chunkBytes;
+    }
+
+    byte[] acquire() {
+        byte[] chunk = free.poll();
+        return chunk != null ? chunk : new byte[chunkBytes];
+    }
+
+    void release(byte[] chunk) {
+        if (chunk.length == chunkBytes) {
+            free.offer(chunk);
+        }
+    }
+
+    int pooledCount() {
+        return free.size();
+    }
+}
@@ -0,0 +1,36 @@
+package com.ultimatequack.healthyduck.client;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Data points of one stream that were added or updated since the previous batch, oldest
+ * change first. An empty batch means the long poll ended without changes.
+ */
+public final class ChangeBatch {
+    private final String userId;
+    private final String dataSourceId;
+    private final List<DataPoint> points;
+    private final String cursor;
+    private final boolean hasMore;
+
+    ChangeBatch(String userId, String dataSourceId, List<DataPoint> points, String cursor, boolean hasMore) {
+        this.userId = userId;
+        this.dataSourceId = dataSourceId;
+        this.points = Collections.unmodifiableList(points);
+        this.cursor = cursor;
+        this.hasMore = hasMore;
+    }
+
+    public String getUserId() { return userId; }
+    public String getDataSourceId() { return dataSourceId; }
+    public List<DataPoint> getPoints() { return points; }
+
+    /** High-water mark after this batch; opaque, but safe to store and restore. */
+    public String getCursor() { return cursor; }
+
+    /** True when the server has further changes waiting beyond this page. */
+    public boolean hasMore() { return hasMore; }
+
+    public boolean isEmpty() { return points.isEmpty(); }
+}
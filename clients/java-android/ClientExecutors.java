@@ -0,0 +1,122 @@
+package com.ultimatequack.healthyduck.client;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executors for the blocking I/O done by {@link HealthyDuckClient}. Requests never run
+ * on {@code ForkJoinPool.commonPool()} so they cannot starve parallel streams elsewhere
+ * in the process.
+ */
+public final class ClientExecutors {
+    private ClientExecutors() {
+    }
+
+    /**
+     * Fixed pool of daemon threads with a bounded queue. When the queue is full the request
+     * is rejected and {@link HealthyDuckClient} fails its future. The submitting thread never
+     * runs it, since on Android that is usually the main thread.
+     */
+    public static ExecutorService newBoundedExecutor(int threads, int queueCapacity) {
+        return newFixedDaemonPool(threads, new ArrayBlockingQueue<>(queueCapacity));
+    }
+
+    /**
+     * Fixed pool of daemon threads whose queue grows without limit. Requests wait for a
+     * thread however many are submitted; this is what clients use by default.
+     */
+    public static ExecutorService newUnboundedQueueExecutor(int threads) {
+        return newFixedDaemonPool(threads, new LinkedBlockingQueue<>());
+    }
+
+    private static ExecutorService newFixedDaemonPool(int threads, BlockingQueue<Runnable> queue) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads,
+            30, TimeUnit.SECONDS,
+            queue,
+            new DaemonThreadFactory("healthyduck-io-"),
+            new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /** True when the runtime provides virtual threads (JDK 21+). */
+    public static boolean isVirtualThreadSupported() {
+        return virtualThreadFactoryMethod() != null;
+    }
+
+    /**
+     * One virtual thread per request (JDK 21+). Blocking I/O parks the virtual thread
+     * rather than a carrier, so no pool sizing is needed.
+     *
+     * @throws UnsupportedOperationException on runtimes without virtual threads, including Android
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor() {
+        Method factory = virtualThreadFactoryMethod();
+        if (factory == null) {
+            throw new UnsupportedOperationException("Virtual threads require JDK 21 or newer");
+        }
+        try {
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new UnsupportedOperationException("Virtual threads are not available", e);
+        }
+    }
+
+    /** Shared pool used by clients that were not given an executor. */
+    static ExecutorService defaultExecutor() {
+        return DefaultHolder.INSTANCE;
+    }
+
+    /**
+     * Threads for hedged request attempts. Hand-off only: when all threads are busy the
+     * caller runs the attempt itself, which simply means that request is not hedged.
+     */
+    static ExecutorService hedgeExecutor() {
+        return HedgeHolder.INSTANCE;
+    }
+
+    private static Method virtualThreadFactoryMethod() {
+        try {
+            return java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    private static final class DefaultHolder {
+        static final ExecutorService INSTANCE = newUnboundedQueueExecutor(
+            Math.max(4, Runtime.getRuntime().availableProcessors() * 2));
+    }
+
+    private static final class HedgeHolder {
+        static final ExecutorService INSTANCE = new ThreadPoolExecutor(0, 64,
+            30, TimeUnit.SECONDS,
+            new SynchronousQueue<>(),
+            new DaemonThreadFactory("healthyduck-hedge-"),
+            new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    private static final class DaemonThreadFactory implements ThreadFactory {
+        private final String prefix;
+        private final AtomicInteger counter = new AtomicInteger();
+
+        DaemonThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.ultimatequack.healthyduck.client;
+
+/**
+ * Instrumentation hooks called by {@link HealthyDuckClient}. Every method has an empty
+ * default, so implementations override only what they record; {@link #NOOP} is used when
+ * nothing is installed and costs one virtual call per hook with no allocation.
+ *
+ * <p>Hooks run on the thread doing the I/O and must be fast and non-blocking. Operation
+ * names are the HTTP method plus the URL path with IDs masked, e.g.
+ * {@code GET /api/fitness/v1/users/{id}/sessions}. Use {@link RecordingClientMetrics} for
+ * in-process histograms and counters, or adapt these calls to an existing metrics or
+ * tracing library.
+ */
+public interface ClientMetrics {
+    ClientMetrics NOOP = new ClientMetrics() {};
+
+    /**
+     * An HTTP attempt is about to be sent (retries and hedges count as separate attempts).
+     * The returned object, typically a tracing span, is handed back to
+     * {@link #requestFinished}; it may be null.
+     */
+    default Object requestStarted(String operation) {
+        return null;
+    }
+
+    /**
+     * The attempt received response headers, or failed. {@code statusCode} is -1 and
+     * {@code error} non-null when no response arrived. Latency is time to headers.
+     */
+    default void requestFinished(Object span, String operation, int statusCode, long latencyNanos,
+                                 long requestBytes, Throwable error) {
+    }
+
+    /** The response body of an attempt was closed after {@code bytes} were read from it. */
+    default void responseBodyRead(String operation, long bytes) {
+    }
+
+    /** Attempt {@code attempt} failed and the request will be sent again after a backoff. */
+    default void retryScheduled(String operation, int attempt) {
+    }
+
+    /** A hedged duplicate of a slow GET was sent. */
+    default void hedgeSent(String operation) {
+    }
+
+    /** A dataset read was answered by the data point cache; {@code partial} when some of it was fetched. */
+    default void cacheHit(boolean partial) {
+    }
+
+    default void cacheMiss() {
+    }
+}
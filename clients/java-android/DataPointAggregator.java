@@ -0,0 +1,322 @@
+package com.ultimatequack.healthyduck.client;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Local roll-ups over {@link DataPointColumns}, producing the same buckets as the server's
+ * aggregate endpoint so callers that already hold raw points can skip the round-trip.
+ *
+ * <p>As on the server, a point is counted when it starts at or after the range start and
+ * ends at or before the range end, and it goes to the bucket containing its start time.
+ * Each pass reads the primitive columns once; inputs above {@link #PARALLEL_THRESHOLD}
+ * rows are split into row ranges that are aggregated on a {@link ForkJoinPool} and merged
+ * per bucket.
+ *
+ * <p>Differences from the server that remain:
+ * <ul>
+ *   <li>The server sums every element of a point's {@code value} array. A stored point
+ *       holds one value (the dataset PATCH keeps only {@code value[0]}), and so does a
+ *       {@link DataPointColumns} row, so the totals are the same.</li>
+ *   <li>The server only sums. {@code AVG}, {@code MIN} and {@code MAX} are local extras.</li>
+ *   <li>The server groups by the data source's type; here each point's own type is used.
+ *       The two only differ for points written under a source of another type.</li>
+ * </ul>
+ */
+public final class DataPointAggregator {
+    static final int PARALLEL_THRESHOLD = 64 * 1024;
+
+    private final long durationMillis;
+    private final ChronoUnit periodUnit;
+    private final int periodValue;
+    private final ZoneId zone;
+    private final ForkJoinPool pool;
+
+    private DataPointAggregator(long durationMillis, ChronoUnit periodUnit, int periodValue, ZoneId zone,
+                                ForkJoinPool pool) {
+        this.durationMillis = durationMillis;
+        this.periodUnit = periodUnit;
+        this.periodValue = periodValue;
+        this.zone = zone;
+        this.pool = pool;
+    }
+
+    /** Fixed-length buckets aligned to the epoch, as the server's {@code bucketByTime.durationMillis} does. */
+    public static DataPointAggregator byDuration(long durationMillis) {
+        if (durationMillis <= 0) {
+            throw new IllegalArgumentException("durationMillis must be > 0");
+        }
+        return new DataPointAggregator(durationMillis, null, 0, null, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Calendar buckets ({@code "day"}, {@code "week"} starting Monday, or {@code "month"}) of
+     * {@code value} periods each, with boundaries at local midnight in {@code timeZone}.
+     */
+    public static DataPointAggregator byPeriod(String type, int value, ZoneId timeZone) {
+        if (value < 1) {
+            throw new IllegalArgumentException("period value must be >= 1");
+        }
+        ChronoUnit unit;
+        switch (type.toLowerCase(java.util.Locale.ROOT)) {
+            case "day": unit = ChronoUnit.DAYS; break;
+            case "week": unit = ChronoUnit.WEEKS; break;
+            case "month": unit = ChronoUnit.MONTHS; break;
+            default: throw new IllegalArgumentException("Unsupported period type: " + type);
+        }
+        return new DataPointAggregator(0, unit, value, timeZone, ForkJoinPool.commonPool());
+    }
+
+    /** Runs parallel passes on {@code pool} instead of the common pool. */
+    public DataPointAggregator withPool(ForkJoinPool pool) {
+        return new DataPointAggregator(durationMillis, periodUnit, periodValue, zone, pool);
+    }
+
+    /**
+     * Aggregates the points within {@code [startTimeMillis, endTimeMillis]}. Only buckets
+     * holding points are returned, in time order, each with one point per data type present
+     * in it. Use {@link #aggregate(DataPointColumns, long, long, AggregationUtils.AggregationType, List)}
+     * for the server's output, which lists every requested type.
+     */
+    public List<AggregationBucket> aggregate(DataPointColumns points, long startTimeMillis, long endTimeMillis,
+                                             AggregationUtils.AggregationType type) {
+        return aggregate(points, startTimeMillis, endTimeMillis, type, null);
+    }
+
+    /**
+     * Like the aggregate endpoint with {@code aggregateBy} set to {@code dataTypeNames}. Every
+     * bucket holding any point gets one point per requested type, in request order. A type
+     * without values in the bucket gets 0 with a count of 0, as the server sends.
+     */
+    public List<AggregationBucket> aggregate(DataPointColumns points, long startTimeMillis, long endTimeMillis,
+                                             AggregationUtils.AggregationType type, List<String> dataTypeNames) {
+        long[] boundaries = boundaries(startTimeMillis, endTimeMillis);
+        int bucketCount = boundaries.length - 1;
+        int typeCount = points.getDataTypeNames().length;
+        if (bucketCount <= 0 || points.size() == 0) {
+            return new ArrayList<>();
+        }
+
+        Accumulator total;
+        if (points.size() < PARALLEL_THRESHOLD) {
+            total = new Accumulator(bucketCount, typeCount);
+            total.scan(points, 0, points.size(), startTimeMillis, endTimeMillis, boundaries, this);
+        } else {
+            total = pool.invoke(new ScanTask(points, 0, points.size(), startTimeMillis, endTimeMillis,
+                                             boundaries, bucketCount, typeCount));
+        }
+        return total.toBuckets(boundaries, points.getDataTypeNames(), type, dataTypeNames);
+    }
+
+    /** Bucket edges covering the range; bucket {@code i} is {@code [b[i], b[i+1])}. */
+    long[] boundaries(long startTimeMillis, long endTimeMillis) {
+        if (endTimeMillis <= startTimeMillis) {
+            return new long[] {startTimeMillis};
+        }
+        if (periodUnit == null) {
+            long first = Math.floorDiv(startTimeMillis, durationMillis) * durationMillis;
+            int count = (int) ((endTimeMillis - first + durationMillis - 1) / durationMillis);
+            long[] edges = new long[count + 1];
+            for (int i = 0; i <= count; i++) {
+                edges[i] = first + i * durationMillis;
+            }
+            return edges;
+        }
+
+        ZonedDateTime cursor = Instant.ofEpochMilli(startTimeMillis).atZone(zone).truncatedTo(ChronoUnit.DAYS);
+        if (periodUnit == ChronoUnit.WEEKS) {
+            cursor = cursor.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+        } else if (periodUnit == ChronoUnit.MONTHS) {
+            cursor = cursor.withDayOfMonth(1);
+        }
+        long[] edges = new long[16];
+        int n = 0;
+        while (true) {
+            long edge = cursor.toInstant().toEpochMilli();
+            if (n == edges.length) {
+                edges = Arrays.copyOf(edges, n * 2);
+            }
+            edges[n++] = edge;
+            if (edge >= endTimeMillis) {
+                break;
+            }
+            cursor = cursor.plus(periodValue, periodUnit);
+        }
+        return Arrays.copyOf(edges, n);
+    }
+
+    int bucketOf(long timeMillis, long[] boundaries) {
+        if (timeMillis < boundaries[0] || timeMillis >= boundaries[boundaries.length - 1]) {
+            return -1;
+        }
+        if (periodUnit == null) {
+            return (int) ((timeMillis - boundaries[0]) / durationMillis);
+        }
+        int index = Arrays.binarySearch(boundaries, timeMillis);
+        return index >= 0 ? index : -index - 2;
+    }
+
+    /** Per (bucket, data type) running sum, count, min and max. */
+    private static final class Accumulator {
+        final int typeCount;
+        final long[] bucketPoints;
+        final double[] sum;
+        final long[] count;
+        final double[] min;
+        final double[] max;
+
+        Accumulator(int bucketCount, int typeCount) {
+            this.typeCount = typeCount;
+            int cells = bucketCount * typeCount;
+            bucketPoints = new long[bucketCount];
+            sum = new double[cells];
+            count = new long[cells];
+            min = new double[cells];
+            max = new double[cells];
+            Arrays.fill(min, Double.POSITIVE_INFINITY);
+            Arrays.fill(max, Double.NEGATIVE_INFINITY);
+        }
+
+        void scan(DataPointColumns points, int from, int to, long startMillis, long endMillis,
+                  long[] boundaries, DataPointAggregator owner) {
+            long startNanos = startMillis * 1000000L;
+            long endNanos = endMillis * 1000000L;
+            for (int row = from; row < to; row++) {
+                if (points.getStartTimeNanos(row) < startNanos || points.getEndTimeNanos(row) > endNanos) {
+                    continue;
+                }
+                int bucket = owner.bucketOf(Math.floorDiv(points.getStartTimeNanos(row), 1000000L), boundaries);
+                if (bucket < 0) {
+                    continue;
+                }
+                // Any point opens its bucket on the server, numeric or not
+                bucketPoints[bucket]++;
+                byte kind = points.getValueKind(row);
+                if (kind != DataPointColumns.VALUE_INT && kind != DataPointColumns.VALUE_FP) {
+                    continue;
+                }
+                int cell = bucket * typeCount + points.getDataTypeCode(row);
+                double value = points.getNumericValue(row);
+                sum[cell] += value;
+                count[cell]++;
+                if (value < min[cell]) {
+                    min[cell] = value;
+                }
+                if (value > max[cell]) {
+                    max[cell] = value;
+                }
+            }
+        }
+
+        void merge(Accumulator other) {
+            for (int bucket = 0; bucket < bucketPoints.length; bucket++) {
+                bucketPoints[bucket] += other.bucketPoints[bucket];
+            }
+            for (int cell = 0; cell < sum.length; cell++) {
+                sum[cell] += other.sum[cell];
+                count[cell] += other.count[cell];
+                min[cell] = Math.min(min[cell], other.min[cell]);
+                max[cell] = Math.max(max[cell], other.max[cell]);
+            }
+        }
+
+        List<AggregationBucket> toBuckets(long[] boundaries, String[] typeNames,
+                                          AggregationUtils.AggregationType type, List<String> requested) {
+            int[] requestedCodes = null;
+            if (requested != null) {
+                requestedCodes = new int[requested.size()];
+                for (int i = 0; i < requestedCodes.length; i++) {
+                    requestedCodes[i] = Arrays.asList(typeNames).indexOf(requested.get(i));
+                }
+            }
+            List<AggregationBucket> buckets = new ArrayList<>();
+            for (int bucket = 0; bucket < boundaries.length - 1; bucket++) {
+                if (bucketPoints[bucket] == 0) {
+                    continue;
+                }
+                List<AggregationBucket.AggregatedPoint> points = new ArrayList<>();
+                if (requestedCodes != null) {
+                    for (int i = 0; i < requestedCodes.length; i++) {
+                        int cell = requestedCodes[i] < 0 ? -1 : bucket * typeCount + requestedCodes[i];
+                        boolean empty = cell < 0 || count[cell] == 0;
+                        points.add(new AggregationBucket.AggregatedPoint(requested.get(i),
+                            empty ? 0 : value(cell, type), empty ? 0 : count[cell]));
+                    }
+                } else {
+                    for (int t = 0; t < typeCount; t++) {
+                        int cell = bucket * typeCount + t;
+                        if (count[cell] > 0) {
+                            points.add(new AggregationBucket.AggregatedPoint(typeNames[t], value(cell, type), count[cell]));
+                        }
+                    }
+                    if (points.isEmpty()) {
+                        continue;
+                    }
+                }
+                buckets.add(new AggregationBucket(boundaries[bucket], boundaries[bucket + 1], points));
+            }
+            return buckets;
+        }
+
+        private double value(int cell, AggregationUtils.AggregationType type) {
+            switch (type) {
+                case AVG: return sum[cell] / count[cell];
+                case MIN: return min[cell];
+                case MAX: return max[cell];
+                case SUM:
+                default: return sum[cell];
+            }
+        }
+    }
+
+    private final class ScanTask extends RecursiveTask<Accumulator> {
+        private static final long serialVersionUID = 1L;
+
+        private final DataPointColumns points;
+        private final int from;
+        private final int to;
+        private final long startMillis;
+        private final long endMillis;
+        private final long[] boundaries;
+        private final int bucketCount;
+        private final int typeCount;
+
+        ScanTask(DataPointColumns points, int from, int to, long startMillis, long endMillis,
+                 long[] boundaries, int bucketCount, int typeCount) {
+            this.points = points;
+            this.from = from;
+            this.to = to;
+            this.startMillis = startMillis;
+            this.endMillis = endMillis;
+            this.boundaries = boundaries;
+            this.bucketCount = bucketCount;
+            this.typeCount = typeCount;
+        }
+
+        @Override
+        protected Accumulator compute() {
+            if (to - from <= PARALLEL_THRESHOLD / 2) {
+                Accumulator accumulator = new Accumulator(bucketCount, typeCount);
+                accumulator.scan(points, from, to, startMillis, endMillis, boundaries, DataPointAggregator.this);
+                return accumulator;
+            }
+            int mid = (from + to) >>> 1;
+            ScanTask left = new ScanTask(points, from, mid, startMillis, endMillis, boundaries, bucketCount, typeCount);
+            left.fork();
+            Accumulator right = new ScanTask(points, mid, to, startMillis, endMillis, boundaries, bucketCount, typeCount)
+                .compute();
+            Accumulator result = left.join();
+            result.merge(right);
+            return result;
+        }
+    }
+}
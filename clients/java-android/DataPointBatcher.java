@@ -0,0 +1,244 @@
+package com.ultimatequack.healthyduck.client;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces single data points into one dataset PATCH per (user, data source).
+ * A buffer is sent when it reaches {@link BatchOptions#getMaxBatchSize()} points or when its
+ * oldest point has waited {@link BatchOptions#getLingerMillis()}. Each point gets its own
+ * future that completes when the batch carrying it has been accepted by the server.
+ *
+ * <p>Obtain one from {@link HealthyDuckClient#newBatchingWriter(BatchOptions)}.
+ */
+public class DataPointBatcher implements Closeable {
+    private final HealthyDuckClient client;
+    private final BatchOptions options;
+    private final Semaphore capacity;
+    private final ScheduledExecutorService scheduler;
+    private final ConcurrentMap<CompletableFuture<Void>, Boolean> inFlight = new ConcurrentHashMap<>();
+    /** Guards {@link #buffers}, every buffer in it and {@link #closed}. */
+    private final Object lock = new Object();
+    private final Map<StreamKey, Buffer> buffers = new HashMap<>();
+    private boolean closed;
+
+    DataPointBatcher(HealthyDuckClient client, BatchOptions options) {
+        this.client = client;
+        this.options = options;
+        this.capacity = new Semaphore(options.getMaxBufferedPoints());
+        ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "healthyduck-batcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.setRemoveOnCancelPolicy(true);
+        this.scheduler = timer;
+    }
+
+    /**
+     * Queues a point for the given stream. Blocks up to {@link BatchOptions#getMaxBlockMillis()}
+     * while the writer is at capacity; if no space frees up the returned future fails.
+     */
+    public CompletableFuture<Void> add(String userId, String dataSourceId, DataPoint point) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        synchronized (lock) {
+            if (closed) {
+                future.completeExceptionally(new HealthyDuckException("Batching writer is closed"));
+                return future;
+            }
+        }
+        try {
+            if (!capacity.tryAcquire(options.getMaxBlockMillis(), TimeUnit.MILLISECONDS)) {
+                future.completeExceptionally(new HealthyDuckException(
+                    "Batch buffer full (" + options.getMaxBufferedPoints() + " points)"));
+                return future;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.completeExceptionally(new HealthyDuckException("Interrupted waiting for batch buffer", e));
+            return future;
+        }
+
+        StreamKey key = new StreamKey(userId, dataSourceId);
+        List<Pending> ready = null;
+        synchronized (lock) {
+            // close() may have run while this thread waited for capacity
+            if (closed) {
+                capacity.release();
+                future.completeExceptionally(new HealthyDuckException("Batching writer is closed"));
+                return future;
+            }
+            Buffer buffer = buffers.computeIfAbsent(key, Buffer::new);
+            buffer.pending.add(new Pending(point, future));
+            if (buffer.pending.size() >= options.getMaxBatchSize()) {
+                ready = take(buffer);
+            } else if (buffer.lingerTask == null) {
+                try {
+                    buffer.lingerTask = scheduler.schedule(() -> flush(buffer),
+                        options.getLingerMillis(), TimeUnit.MILLISECONDS);
+                } catch (RejectedExecutionException e) {
+                    buffer.pending.remove(buffer.pending.size() - 1);
+                    if (buffer.pending.isEmpty()) {
+                        buffers.remove(key);
+                    }
+                    capacity.release();
+                    future.completeExceptionally(new HealthyDuckException("Batching writer is closed", e));
+                    return future;
+                }
+            }
+        }
+        if (ready != null) {
+            send(key, ready);
+        }
+        return future;
+    }
+
+    /** Sends every non-empty buffer now; the result completes when all in-flight batches have landed. */
+    public CompletableFuture<Void> flush() {
+        List<Buffer> drained;
+        synchronized (lock) {
+            drained = new ArrayList<>(buffers.values());
+            buffers.clear();
+            for (Buffer buffer : drained) {
+                buffer.cancelLinger();
+            }
+        }
+        for (Buffer buffer : drained) {
+            if (!buffer.pending.isEmpty()) {
+                send(buffer.key, buffer.pending);
+            }
+        }
+        return CompletableFuture.allOf(inFlight.keySet().toArray(new CompletableFuture<?>[0]));
+    }
+
+    /** Stops accepting points, sends what is buffered and waits for it to land. */
+    @Override
+    public void close() {
+        synchronized (lock) {
+            closed = true;
+        }
+        try {
+            flush().join();
+        } catch (RuntimeException e) {
+            // Failures were already reported through the per-point futures
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /** Linger timer: sends the buffer unless it was already sent and replaced. */
+    private void flush(Buffer buffer) {
+        List<Pending> ready;
+        synchronized (lock) {
+            if (buffers.get(buffer.key) != buffer) {
+                return;
+            }
+            ready = take(buffer);
+        }
+        send(buffer.key, ready);
+    }
+
+    /** Removes a buffer from the map so idle streams leave nothing behind. Caller holds {@link #lock}. */
+    private List<Pending> take(Buffer buffer) {
+        buffers.remove(buffer.key);
+        buffer.cancelLinger();
+        return buffer.pending;
+    }
+
+    private void send(StreamKey key, List<Pending> batch) {
+        List<DataPoint> points = new ArrayList<>(batch.size());
+        long minStart = Long.MAX_VALUE;
+        long maxEnd = Long.MIN_VALUE;
+        for (Pending pending : batch) {
+            points.add(pending.point);
+            minStart = Math.min(minStart, pending.point.getStartTimeNanos());
+            maxEnd = Math.max(maxEnd, pending.point.getEndTimeNanos());
+        }
+        String datasetId = minStart + "-" + maxEnd;
+
+        CompletableFuture<Void> request;
+        try {
+            request = client.insertDataPoints(key.userId, key.dataSourceId, datasetId, points);
+        } catch (RuntimeException e) {
+            request = new CompletableFuture<>();
+            request.completeExceptionally(e);
+        }
+        CompletableFuture<Void> tracked = request;
+        inFlight.put(tracked, Boolean.TRUE);
+        tracked.whenComplete((ignored, error) -> {
+            inFlight.remove(tracked);
+            capacity.release(batch.size());
+            for (Pending pending : batch) {
+                if (error == null) {
+                    pending.future.complete(null);
+                } else {
+                    pending.future.completeExceptionally(error);
+                }
+            }
+        });
+    }
+
+    private static final class Pending {
+        final DataPoint point;
+        final CompletableFuture<Void> future;
+
+        Pending(DataPoint point, CompletableFuture<Void> future) {
+            this.point = point;
+            this.future = future;
+        }
+    }
+
+    /** Points waiting for one stream. Once taken out of the map it is never added to again. */
+    private static final class Buffer {
+        final StreamKey key;
+        final List<Pending> pending = new ArrayList<>();
+        ScheduledFuture<?> lingerTask;
+
+        Buffer(StreamKey key) {
+            this.key = key;
+        }
+
+        void cancelLinger() {
+            if (lingerTask != null) {
+                lingerTask.cancel(false);
+                lingerTask = null;
+            }
+        }
+    }
+
+    private static final class StreamKey {
+        final String userId;
+        final String dataSourceId;
+
+        StreamKey(String userId, String dataSourceId) {
+            this.userId = userId;
+            this.dataSourceId = dataSourceId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof StreamKey)) {
+                return false;
+            }
+            StreamKey other = (StreamKey) o;
+            return userId.equals(other.userId) && dataSourceId.equals(other.dataSourceId);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * userId.hashCode() + dataSourceId.hashCode();
+        }
+    }
+}
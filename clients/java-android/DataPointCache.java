@@ -0,0 +1,316 @@
+package com.ultimatequack.healthyduck.client;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Read-through cache for dataset reads, keyed by (user, data source) and aware of which
+ * time ranges it already holds. A request that overlaps cached data only fetches the
+ * missing sub-ranges. Streams are evicted least-recently-used once the estimated size
+ * exceeds the configured budget, and local writes drop the ranges they touch.
+ *
+ * <p>Range semantics follow the dataset endpoint: a point belongs to {@code [start, end]}
+ * when it starts at or after {@code start} and ends at or before {@code end}. Gaps next
+ * to cached data are fetched with {@link #BOUNDARY_OVERLAP_NANOS} of overlap so points
+ * straddling the seam are not lost; longer points can still be missed at a seam. Loads
+ * split full responses like chunked reads do; a load that still may have stopped at the
+ * server's row limit is returned but its range is not marked covered.
+ *
+ * <p>Enable with {@link HealthyDuckClient#enableDataPointCache(long)}.
+ */
+public class DataPointCache {
+    static final long BOUNDARY_OVERLAP_NANOS = 60L * 60 * 1_000_000_000L;
+
+    /** Rough heap cost of one cached point: object headers, value list and map entry. */
+    private static final long BYTES_PER_POINT = 160;
+
+    /**
+     * Fetches {@code [startNanos, endNanos]} from the server; the result is incomplete when
+     * a response may have stopped at the server's row limit.
+     */
+    interface RangeLoader {
+        RangeQueryPlanner.RangeRead<DataPoint> load(String userId, String dataSourceId, long startNanos,
+                                                    long endNanos) throws Exception;
+    }
+
+    private static final Comparator<DataPoint> POINT_ORDER = Comparator
+        .comparingLong(DataPoint::getStartTimeNanos)
+        .thenComparingLong(DataPoint::getEndTimeNanos)
+        .thenComparing(DataPoint::getDataTypeName, Comparator.nullsFirst(Comparator.naturalOrder()))
+        .thenComparing(DataPoint::getOriginDataSourceId, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+    private final long maxBytes;
+    private final RangeLoader loader;
+    private final LinkedHashMap<String, Stream> streams = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+
+    private volatile ClientMetrics metrics = ClientMetrics.NOOP;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong partialHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong fetchedPoints = new AtomicLong();
+
+    DataPointCache(long maxBytes, RangeLoader loader) {
+        this.maxBytes = maxBytes;
+        this.loader = loader;
+    }
+
+    void setMetrics(ClientMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /** Points in {@code [startNanos, endNanos]}, fetching only what is not cached yet. */
+    List<DataPoint> get(String userId, String dataSourceId, long startNanos, long endNanos) throws Exception {
+        String key = userId + '\u0000' + dataSourceId;
+        Stream stream;
+        long generation;
+        List<long[]> gaps;
+        synchronized (this) {
+            stream = streams.get(key);
+            if (stream == null) {
+                stream = new Stream();
+                streams.put(key, stream);
+            }
+            generation = stream.generation;
+            gaps = stream.gaps(startNanos, endNanos);
+        }
+
+        // Loads that raced an invalidation, eviction or clear, or that the server may have
+        // cut short; returned but never cached
+        List<DataPoint> uncached = null;
+        if (gaps.isEmpty()) {
+            hits.incrementAndGet();
+            metrics.cacheHit(false);
+        } else {
+            boolean whole = gaps.size() == 1 && gaps.get(0)[0] == startNanos && gaps.get(0)[1] == endNanos;
+            (whole ? misses : partialHits).incrementAndGet();
+            if (whole) {
+                metrics.cacheMiss();
+            } else {
+                metrics.cacheHit(true);
+            }
+            for (long[] gap : gaps) {
+                long fetchStart = gap[0] == startNanos ? gap[0] : gap[0] - BOUNDARY_OVERLAP_NANOS;
+                long fetchEnd = gap[1] == endNanos ? gap[1] : gap[1] + BOUNDARY_OVERLAP_NANOS;
+                RangeQueryPlanner.RangeRead<DataPoint> read = loader.load(userId, dataSourceId, fetchStart, fetchEnd);
+                List<DataPoint> loaded = read.elements;
+                fetchedPoints.addAndGet(loaded.size());
+                // A truncated load marked covered would be served to every later read as complete
+                boolean complete = read.complete;
+                synchronized (this) {
+                    // A write invalidated the stream after this load started, so the data
+                    // may predate it; caching it would mark the range covered again
+                    if (complete && streams.get(key) == stream && stream.generation == generation) {
+                        bytes += stream.add(loaded, gap[0], gap[1]);
+                    } else {
+                        if (uncached == null) {
+                            uncached = new ArrayList<>();
+                        }
+                        uncached.addAll(loaded);
+                    }
+                }
+            }
+        }
+
+        List<DataPoint> result;
+        synchronized (this) {
+            result = streams.get(key) == stream ? stream.range(startNanos, endNanos) : new ArrayList<>();
+            evictIfNeeded();
+        }
+        if (uncached != null) {
+            NavigableSet<DataPoint> merged = new TreeSet<>(POINT_ORDER);
+            merged.addAll(result);
+            for (DataPoint point : uncached) {
+                if (point.getStartTimeNanos() >= startNanos && point.getEndTimeNanos() <= endNanos) {
+                    merged.add(point);
+                }
+            }
+            result = new ArrayList<>(merged);
+        }
+        return result;
+    }
+
+    /**
+     * Forgets everything cached for the stream between {@code startNanos} and {@code endNanos}.
+     * Loads already in flight for the stream are not cached when they return.
+     */
+    synchronized void invalidate(String userId, String dataSourceId, long startNanos, long endNanos) {
+        Stream stream = streams.get(userId + '\u0000' + dataSourceId);
+        if (stream != null) {
+            stream.generation++;
+            bytes -= stream.remove(startNanos, endNanos);
+        }
+    }
+
+    public synchronized void clear() {
+        streams.clear();
+        bytes = 0;
+    }
+
+    public Stats getStats() {
+        synchronized (this) {
+            return new Stats(hits.get(), partialHits.get(), misses.get(), evictions.get(),
+                             fetchedPoints.get(), bytes, streams.size());
+        }
+    }
+
+    private void evictIfNeeded() {
+        Iterator<Map.Entry<String, Stream>> eldest = streams.entrySet().iterator();
+        while (bytes > maxBytes && eldest.hasNext()) {
+            bytes -= eldest.next().getValue().bytes();
+            eldest.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    private static List<long[]> singleGap(long startNanos, long endNanos) {
+        List<long[]> gaps = new ArrayList<>(1);
+        gaps.add(new long[] {startNanos, endNanos});
+        return gaps;
+    }
+
+    /** Cached points and covered ranges of one (user, data source). */
+    private static final class Stream {
+        final TreeMap<Long, Long> covered = new TreeMap<>();
+        final NavigableSet<DataPoint> points = new TreeSet<>(POINT_ORDER);
+        /** Bumped by every invalidation; a load only lands if it is unchanged. */
+        long generation;
+
+        List<long[]> gaps(long start, long end) {
+            List<long[]> gaps = new ArrayList<>();
+            long cursor = start;
+            Map.Entry<Long, Long> floor = covered.floorEntry(start);
+            if (floor != null && floor.getValue() >= start) {
+                cursor = floor.getValue();
+            }
+            for (Map.Entry<Long, Long> range : covered.subMap(start, false, end, true).entrySet()) {
+                if (range.getKey() > cursor) {
+                    gaps.add(new long[] {cursor, range.getKey()});
+                }
+                cursor = Math.max(cursor, range.getValue());
+            }
+            if (cursor < end) {
+                gaps.add(new long[] {cursor, end});
+            }
+            return gaps;
+        }
+
+        /** Adds fetched points and marks {@code [start, end]} covered; returns the bytes added. */
+        long add(List<DataPoint> loaded, long start, long end) {
+            int before = points.size();
+            for (DataPoint point : loaded) {
+                points.remove(point);
+                points.add(point);
+            }
+            long mergedStart = start;
+            long mergedEnd = end;
+            Map.Entry<Long, Long> floor = covered.floorEntry(start);
+            if (floor != null && floor.getValue() >= start) {
+                mergedStart = floor.getKey();
+                mergedEnd = Math.max(mergedEnd, floor.getValue());
+            }
+            Iterator<Map.Entry<Long, Long>> overlapping =
+                covered.subMap(mergedStart, true, end, true).entrySet().iterator();
+            while (overlapping.hasNext()) {
+                mergedEnd = Math.max(mergedEnd, overlapping.next().getValue());
+                overlapping.remove();
+            }
+            covered.put(mergedStart, mergedEnd);
+            return (long) (points.size() - before) * BYTES_PER_POINT;
+        }
+
+        List<DataPoint> range(long start, long end) {
+            DataPoint probe = new DataPoint();
+            probe.setStartTimeNanos(start);
+            probe.setEndTimeNanos(Long.MIN_VALUE);
+            List<DataPoint> result = new ArrayList<>();
+            for (DataPoint point : points.tailSet(probe, true)) {
+                if (point.getStartTimeNanos() > end) {
+                    break;
+                }
+                if (point.getStartTimeNanos() >= start && point.getEndTimeNanos() <= end) {
+                    result.add(point);
+                }
+            }
+            return result;
+        }
+
+        /** Drops points overlapping {@code [start, end]} and un-covers the range; returns the bytes freed. */
+        long remove(long start, long end) {
+            int before = points.size();
+            points.removeIf(p -> p.getStartTimeNanos() <= end && p.getEndTimeNanos() >= start);
+
+            TreeMap<Long, Long> kept = new TreeMap<>();
+            for (Map.Entry<Long, Long> range : covered.entrySet()) {
+                long rangeStart = range.getKey();
+                long rangeEnd = range.getValue();
+                if (rangeEnd < start || rangeStart > end) {
+                    kept.put(rangeStart, rangeEnd);
+                    continue;
+                }
+                if (rangeStart < start) {
+                    kept.put(rangeStart, start - 1);
+                }
+                if (rangeEnd > end) {
+                    kept.put(end + 1, rangeEnd);
+                }
+            }
+            covered.clear();
+            covered.putAll(kept);
+            return (long) (before - points.size()) * BYTES_PER_POINT;
+        }
+
+        long bytes() {
+            return (long) points.size() * BYTES_PER_POINT;
+        }
+    }
+
+    /** Point-in-time cache counters for sizing. */
+    public static final class Stats {
+        private final long hits;
+        private final long partialHits;
+        private final long misses;
+        private final long evictions;
+        private final long fetchedPoints;
+        private final long bytes;
+        private final int streams;
+
+        Stats(long hits, long partialHits, long misses, long evictions, long fetchedPoints, long bytes, int streams) {
+            this.hits = hits;
+            this.partialHits = partialHits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.fetchedPoints = fetchedPoints;
+            this.bytes = bytes;
+            this.streams = streams;
+        }
+
+        /** Reads answered entirely from the cache. */
+        public long getHits() { return hits; }
+        /** Reads that fetched only part of the requested range. */
+        public long getPartialHits() { return partialHits; }
+        /** Reads that fetched the whole range. */
+        public long getMisses() { return misses; }
+        public long getEvictions() { return evictions; }
+        public long getFetchedPoints() { return fetchedPoints; }
+        /** Estimated heap held by cached points. */
+        public long getBytes() { return bytes; }
+        public int getStreams() { return streams; }
+
+        @Override
+        public String toString() {
+            return "DataPointCache.Stats{hits=" + hits + ", partialHits=" + partialHits + ", misses=" + misses
+                + ", evictions=" + evictions + ", fetchedPoints=" + fetchedPoints + ", bytes=" + bytes
+                + ", streams=" + streams + "}";
+        }
+    }
+}
@@ -0,0 +1,293 @@
+package com.ultimatequack.healthyduck.client;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Column-oriented, primitive-array form of a dataset. Each point is a row index into
+ * parallel arrays; data type names, origin data source IDs and string values are
+ * dictionary-encoded. Reading a row allocates nothing, which makes scans over millions
+ * of points cheap compared to a {@code List<DataPoint>}.
+ *
+ * <p>Returned by {@link HealthyDuckClient#getDataPointsColumnar}; instances are immutable.
+ */
+public final class DataPointColumns {
+    public static final byte VALUE_NONE = 0;
+    public static final byte VALUE_INT = 1;
+    public static final byte VALUE_FP = 2;
+    public static final byte VALUE_STRING = 3;
+
+    private final int size;
+    private final long[] startNanos;
+    private final long[] endNanos;
+    private final long[] modifiedMillis;
+    private final byte[] valueKind;
+    private final long[] intVal;
+    private final double[] fpVal;
+    private final int[] dataTypeCode;
+    private final int[] originCode;
+    private final String[] dataTypeNames;
+    private final String[] originIds;
+    private final String[] stringValues;
+
+    private DataPointColumns(Builder b) {
+        this.size = b.size;
+        this.startNanos = b.startNanos;
+        this.endNanos = b.endNanos;
+        this.modifiedMillis = b.modifiedMillis;
+        this.valueKind = b.valueKind;
+        this.intVal = b.intVal;
+        this.fpVal = b.fpVal;
+        this.dataTypeCode = b.dataTypeCode;
+        this.originCode = b.originCode;
+        this.dataTypeNames = b.dataTypes.toArray();
+        this.originIds = b.origins.toArray();
+        this.stringValues = b.strings.toArray();
+    }
+
+    public int size() { return size; }
+
+    public long getStartTimeNanos(int row) { return startNanos[check(row)]; }
+    public long getEndTimeNanos(int row) { return endNanos[check(row)]; }
+    public long getModifiedTimeMillis(int row) { return modifiedMillis[check(row)]; }
+
+    /** One of {@link #VALUE_NONE}, {@link #VALUE_INT}, {@link #VALUE_FP}, {@link #VALUE_STRING}. */
+    public byte getValueKind(int row) { return valueKind[check(row)]; }
+    public long getIntVal(int row) { return intVal[check(row)]; }
+    public double getFpVal(int row) { return fpVal[check(row)]; }
+
+    /** Int or floating point value as a double; 0 for rows without a numeric value. */
+    public double getNumericValue(int row) {
+        switch (valueKind[check(row)]) {
+            case VALUE_INT: return intVal[row];
+            case VALUE_FP: return fpVal[row];
+            default: return 0;
+        }
+    }
+
+    public String getStringVal(int row) {
+        return valueKind[check(row)] == VALUE_STRING ? stringValues[(int) intVal[row]] : null;
+    }
+
+    /** Index into {@link #getDataTypeNames()}. */
+    public int getDataTypeCode(int row) { return dataTypeCode[check(row)]; }
+    public String getDataTypeName(int row) { return dataTypeNames[dataTypeCode[check(row)]]; }
+
+    /** Index into {@link #getOriginDataSourceIds()}, or -1 when the point has no origin. */
+    public int getOriginCode(int row) { return originCode[check(row)]; }
+    public String getOriginDataSourceId(int row) {
+        int code = originCode[check(row)];
+        return code < 0 ? null : originIds[code];
+    }
+
+    public String[] getDataTypeNames() { return dataTypeNames.clone(); }
+    public String[] getOriginDataSourceIds() { return originIds.clone(); }
+
+    /** Index into {@link #stringValues()} for {@link #VALUE_STRING} rows. */
+    int getStringCode(int row) { return (int) intVal[check(row)]; }
+
+    /** The shared dictionaries, uncopied, for encoders in this package. */
+    String[] dataTypeNames() { return dataTypeNames; }
+    String[] originIds() { return originIds; }
+    String[] stringValues() { return stringValues; }
+
+    /** Converts a row back to the object model, for interop with list-based APIs. */
+    public DataPoint toDataPoint(int row) {
+        DataPoint point = new DataPoint();
+        point.setStartTimeNanos(getStartTimeNanos(row));
+        point.setEndTimeNanos(getEndTimeNanos(row));
+        point.setModifiedTimeMillis(getModifiedTimeMillis(row));
+        point.setDataTypeName(getDataTypeName(row));
+        point.setOriginDataSourceId(getOriginDataSourceId(row));
+        Value value = new Value();
+        switch (valueKind[row]) {
+            case VALUE_INT: value.setIntVal(intVal[row]); break;
+            case VALUE_FP: value.setFpVal(fpVal[row]); break;
+            case VALUE_STRING: value.setStringVal(getStringVal(row)); break;
+            default: return point;
+        }
+        point.getValue().add(value);
+        return point;
+    }
+
+    private int check(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("row " + row + " of " + size);
+        }
+        return row;
+    }
+
+    /** Appends rows, growing the arrays geometrically. */
+    static final class Builder {
+        private int size;
+        private long[] startNanos;
+        private long[] endNanos;
+        private long[] modifiedMillis;
+        private byte[] valueKind;
+        private long[] intVal;
+        private double[] fpVal;
+        private int[] dataTypeCode;
+        private int[] originCode;
+        private final Dictionary dataTypes = new Dictionary();
+        private final Dictionary origins = new Dictionary();
+        private final Dictionary strings = new Dictionary();
+
+        Builder(int initialCapacity) {
+            int capacity = Math.max(initialCapacity, 16);
+            startNanos = new long[capacity];
+            endNanos = new long[capacity];
+            modifiedMillis = new long[capacity];
+            valueKind = new byte[capacity];
+            intVal = new long[capacity];
+            fpVal = new double[capacity];
+            dataTypeCode = new int[capacity];
+            originCode = new int[capacity];
+        }
+
+        /** Adds a point in the API's JSON representation (numbers may be encoded as strings). */
+        Builder add(JSONObject json) {
+            int row = nextRow();
+            startNanos[row] = longField(json, "startTimeNanos");
+            endNanos[row] = longField(json, "endTimeNanos");
+            modifiedMillis[row] = longField(json, "modifiedTimeMillis");
+            dataTypeCode[row] = dataTypes.code(json.optString("dataTypeName", ""));
+            String origin = json.optString("originDataSourceId", null);
+            originCode[row] = origin == null || json.isNull("originDataSourceId") ? -1 : origins.code(origin);
+
+            JSONArray values = json.optJSONArray("value");
+            JSONObject value = values != null && values.length() > 0 ? values.optJSONObject(0) : null;
+            if (value == null) {
+                valueKind[row] = VALUE_NONE;
+            } else if (value.has("intVal") && !value.isNull("intVal")) {
+                valueKind[row] = VALUE_INT;
+                intVal[row] = longField(value, "intVal");
+            } else if (value.has("fpVal") && !value.isNull("fpVal")) {
+                valueKind[row] = VALUE_FP;
+                fpVal[row] = value.optDouble("fpVal");
+            } else if (value.has("stringVal") && !value.isNull("stringVal")) {
+                valueKind[row] = VALUE_STRING;
+                intVal[row] = strings.code(value.optString("stringVal"));
+            } else {
+                valueKind[row] = VALUE_NONE;
+            }
+            return this;
+        }
+
+        Builder add(DataPoint point) {
+            int row = nextRow();
+            startNanos[row] = point.getStartTimeNanos();
+            endNanos[row] = point.getEndTimeNanos();
+            modifiedMillis[row] = point.getModifiedTimeMillis();
+            dataTypeCode[row] = dataTypes.code(point.getDataTypeName() != null ? point.getDataTypeName() : "");
+            String origin = point.getOriginDataSourceId();
+            originCode[row] = origin == null ? -1 : origins.code(origin);
+
+            Value value = point.getValue() != null && !point.getValue().isEmpty() ? point.getValue().get(0) : null;
+            if (value != null && value.getIntVal() != null) {
+                valueKind[row] = VALUE_INT;
+                intVal[row] = value.getIntVal();
+            } else if (value != null && value.getFpVal() != null) {
+                valueKind[row] = VALUE_FP;
+                fpVal[row] = value.getFpVal();
+            } else if (value != null && value.getStringVal() != null) {
+                valueKind[row] = VALUE_STRING;
+                intVal[row] = strings.code(value.getStringVal());
+            } else {
+                valueKind[row] = VALUE_NONE;
+            }
+            return this;
+        }
+
+        int internDataType(String name) { return dataTypes.code(name); }
+        int internOrigin(String originDataSourceId) { return origins.code(originDataSourceId); }
+        int internString(String value) { return strings.code(value); }
+
+        /**
+         * Adds a row whose dictionary codes come from the {@code intern*} methods. For
+         * {@link #VALUE_STRING} rows {@code intVal} is the string code; origin -1 means none.
+         */
+        Builder addRow(long startTimeNanos, long endTimeNanos, long modifiedTimeMillis, int dataTypeCode,
+                       int originCode, byte valueKind, long intVal, double fpVal) {
+            int row = nextRow();
+            this.startNanos[row] = startTimeNanos;
+            this.endNanos[row] = endTimeNanos;
+            this.modifiedMillis[row] = modifiedTimeMillis;
+            this.dataTypeCode[row] = dataTypeCode;
+            this.originCode[row] = originCode;
+            this.valueKind[row] = valueKind;
+            this.intVal[row] = intVal;
+            this.fpVal[row] = fpVal;
+            return this;
+        }
+
+        /**
+         * The API sends nanosecond timestamps as decimal strings; Android's {@code optLong}
+         * goes through {@code double} for strings and would lose the low digits.
+         */
+        static long longField(JSONObject json, String key) {
+            Object value = json.opt(key);
+            if (value instanceof Number) {
+                return ((Number) value).longValue();
+            }
+            if (value instanceof String) {
+                try {
+                    return Long.parseLong((String) value);
+                } catch (NumberFormatException e) {
+                    return (long) Double.parseDouble((String) value);
+                }
+            }
+            return 0;
+        }
+
+        DataPointColumns build() {
+            if (startNanos.length != size) {
+                resize(size);
+            }
+            return new DataPointColumns(this);
+        }
+
+        private int nextRow() {
+            if (size == startNanos.length) {
+                resize(size + (size >> 1) + 1);
+            }
+            return size++;
+        }
+
+        private void resize(int capacity) {
+            startNanos = Arrays.copyOf(startNanos, capacity);
+            endNanos = Arrays.copyOf(endNanos, capacity);
+            modifiedMillis = Arrays.copyOf(modifiedMillis, capacity);
+            valueKind = Arrays.copyOf(valueKind, capacity);
+            intVal = Arrays.copyOf(intVal, capacity);
+            fpVal = Arrays.copyOf(fpVal, capacity);
+            dataTypeCode = Arrays.copyOf(dataTypeCode, capacity);
+            originCode = Arrays.copyOf(originCode, capacity);
+        }
+    }
+
+    /** String interning table: value to dense code and back. */
+    private static final class Dictionary {
+        private final Map<String, Integer> codes = new HashMap<>();
+        private String[] values = new String[4];
+
+        int code(String value) {
+            Integer code = codes.get(value);
+            if (code == null) {
+                code = codes.size();
+                if (code == values.length) {
+                    values = Arrays.copyOf(values, code * 2);
+                }
+                values[code] = value;
+                codes.put(value, code);
+            }
+            return code;
+        }
+
+        String[] toArray() {
+            return Arrays.copyOf(values, codes.size());
+        }
+    }
+}
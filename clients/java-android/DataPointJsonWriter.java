@@ -0,0 +1,176 @@
+package com.ultimatequack.healthyduck.client;
+
+import org.json.JSONException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Writes a dataset PATCH body, {@code {"dataPoints":[...]}}, as UTF-8 straight into a
+ * stream, with the fields the dataset endpoint reads and nanosecond times as decimal
+ * strings like the API sends them. Nothing is built per point: no {@code JSONObject},
+ * no String for the body.
+ */
+final class DataPointJsonWriter {
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private final OutputStream out;
+    // Small staging buffer so tokens are not written to the stream byte by byte
+    private final byte[] buffer = new byte[1024];
+    private int position;
+
+    private DataPointJsonWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    /** Writes the body and flushes it to {@code out}, which is not closed. */
+    static void write(List<DataPoint> points, OutputStream out) throws IOException, JSONException {
+        DataPointJsonWriter writer = new DataPointJsonWriter(out);
+        writer.ascii("{\"dataPoints\":[");
+        for (int i = 0; i < points.size(); i++) {
+            if (i > 0) {
+                writer.ascii(',');
+            }
+            writer.point(points.get(i));
+        }
+        writer.ascii("]}");
+        writer.flush();
+    }
+
+    private void point(DataPoint point) throws IOException, JSONException {
+        ascii("{\"startTimeNanos\":\"");
+        number(point.getStartTimeNanos());
+        ascii("\",\"endTimeNanos\":\"");
+        number(point.getEndTimeNanos());
+        ascii('"');
+        if (point.getModifiedTimeMillis() != 0) {
+            ascii(",\"modifiedTimeMillis\":");
+            number(point.getModifiedTimeMillis());
+        }
+        if (point.getDataTypeName() != null) {
+            ascii(",\"dataTypeName\":");
+            string(point.getDataTypeName());
+        }
+        if (point.getOriginDataSourceId() != null) {
+            ascii(",\"originDataSourceId\":");
+            string(point.getOriginDataSourceId());
+        }
+        ascii(",\"value\":[");
+        List<Value> values = point.getValue();
+        for (int i = 0; values != null && i < values.size(); i++) {
+            if (i > 0) {
+                ascii(',');
+            }
+            value(values.get(i));
+        }
+        ascii("]}");
+    }
+
+    private void value(Value value) throws IOException, JSONException {
+        ascii('{');
+        if (value.getIntVal() != null) {
+            ascii("\"intVal\":");
+            number(value.getIntVal());
+        } else if (value.getFpVal() != null) {
+            double fp = value.getFpVal();
+            if (Double.isNaN(fp) || Double.isInfinite(fp)) {
+                throw new JSONException("JSON does not allow non-finite numbers");
+            }
+            ascii("\"fpVal\":");
+            ascii(Double.toString(fp));
+        } else if (value.getStringVal() != null) {
+            ascii("\"stringVal\":");
+            string(value.getStringVal());
+        }
+        ascii('}');
+    }
+
+    private void number(long value) throws IOException {
+        ensure(20);
+        if (value == Long.MIN_VALUE) {
+            ascii(Long.toString(value));
+            return;
+        }
+        if (value < 0) {
+            buffer[position++] = '-';
+            value = -value;
+        }
+        int digits = 1;
+        for (long rest = value / 10; rest != 0; rest /= 10) {
+            digits++;
+        }
+        for (int i = position + digits - 1; i >= position; i--) {
+            buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        position += digits;
+    }
+
+    /** Quoted string, escaped as JSON and encoded as UTF-8. */
+    private void string(String value) throws IOException {
+        ascii('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            ensure(6);
+            if (c == '"' || c == '\\') {
+                buffer[position++] = '\\';
+                buffer[position++] = (byte) c;
+            } else if (c < 0x20) {
+                buffer[position++] = '\\';
+                buffer[position++] = 'u';
+                buffer[position++] = '0';
+                buffer[position++] = '0';
+                buffer[position++] = HEX[c >> 4];
+                buffer[position++] = HEX[c & 0xF];
+            } else if (c < 0x80) {
+                buffer[position++] = (byte) c;
+            } else if (c < 0x800) {
+                buffer[position++] = (byte) (0xC0 | (c >> 6));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                       && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer[position++] = (byte) (0xF0 | (codePoint >> 18));
+                buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                buffer[position++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                // Unpaired surrogate: replaced the same way String.getBytes(UTF_8) does
+                buffer[position++] = '?';
+            } else {
+                buffer[position++] = (byte) (0xE0 | (c >> 12));
+                buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        ascii('"');
+    }
+
+    private void ascii(String token) throws IOException {
+        for (int i = 0; i < token.length(); i++) {
+            ascii(token.charAt(i));
+        }
+    }
+
+    private void ascii(char c) throws IOException {
+        ensure(1);
+        buffer[position++] = (byte) c;
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (position + bytes > buffer.length) {
+            flushBuffer();
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        out.write(buffer, 0, position);
+        position = 0;
+    }
+
+    private void flush() throws IOException {
+        flushBuffer();
+        out.flush();
+    }
+}
@@ -0,0 +1,46 @@
+package com.ultimatequack.healthyduck.client;
+
+/**
+ * One (user, data source, time range) read for {@link HealthyDuckClient#getDataPoints(java.util.Collection, FanOutOptions, BulkFetchListener)}.
+ * A null data source reads every data source the user has.
+ */
+public final class DataPointQuery {
+    private final String userId;
+    private final String dataSourceId;
+    private final long startTimeNanos;
+    private final long endTimeNanos;
+
+    public DataPointQuery(String userId, String dataSourceId, long startTimeNanos, long endTimeNanos) {
+        if (userId == null) {
+            throw new IllegalArgumentException("userId is required");
+        }
+        if (endTimeNanos < startTimeNanos) {
+            throw new IllegalArgumentException("endTimeNanos must be >= startTimeNanos");
+        }
+        this.userId = userId;
+        this.dataSourceId = dataSourceId;
+        this.startTimeNanos = startTimeNanos;
+        this.endTimeNanos = endTimeNanos;
+    }
+
+    /** Every data source of {@code userId} over the range. */
+    public static DataPointQuery allSources(String userId, long startTimeNanos, long endTimeNanos) {
+        return new DataPointQuery(userId, null, startTimeNanos, endTimeNanos);
+    }
+
+    public String getUserId() { return userId; }
+
+    /** Null when the query covers all of the user's data sources. */
+    public String getDataSourceId() { return dataSourceId; }
+    public long getStartTimeNanos() { return startTimeNanos; }
+    public long getEndTimeNanos() { return endTimeNanos; }
+
+    String datasetId() {
+        return startTimeNanos + "-" + endTimeNanos;
+    }
+
+    @Override
+    public String toString() {
+        return userId + "/" + (dataSourceId != null ? dataSourceId : "*") + "/" + datasetId();
+    }
+}
@@ -0,0 +1,326 @@
+package com.ultimatequack.healthyduck.client;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compact binary encoding for batches of data points, negotiated with the dataset
+ * endpoints through {@link #CONTENT_TYPE}. The server side lives in
+ * {@code lib/utils/datapoint-wire-format.ts}; both must change together.
+ *
+ * <p>Layout (varints are unsigned LEB128, "zigzag" varints are signed):
+ * <pre>
+ *   "HDPB" | version u8 | flags u8 (bit 0: rest of the body is gzip-compressed)
+ *   dataTypeNames, originDataSourceIds, stringValues:
+ *       varint count, then per entry varint byte length + UTF-8
+ *   varint pointCount, then per point:
+ *       zigzag startTimeNanos - previous startTimeNanos
+ *       zigzag endTimeNanos - startTimeNanos
+ *       zigzag modifiedTimeMillis - previous modifiedTimeMillis
+ *       varint dataTypeName index
+ *       varint originDataSourceId index + 1 (0 = none)
+ *       u8 value kind ({@link DataPointColumns#VALUE_NONE} ... {@link DataPointColumns#VALUE_STRING})
+ *       int: zigzag varint | fp: float64 big-endian | string: varint stringValues index
+ * </pre>
+ * Regularly sampled streams come out at roughly 8-12 bytes per point before compression,
+ * against 150+ bytes of JSON. The codec works directly on {@link DataPointColumns}, whose
+ * dictionaries map one-to-one onto the wire dictionaries.
+ */
+final class DataPointWireFormat {
+    static final String CONTENT_TYPE = "application/vnd.healthyduck.datapoints+binary";
+
+    /** Bodies at least this large are gzip-compressed when compression is allowed. */
+    static final int COMPRESS_THRESHOLD_BYTES = 16 * 1024;
+
+    private static final byte[] MAGIC = {'H', 'D', 'P', 'B'};
+    private static final int VERSION = 1;
+    private static final int FLAG_GZIP = 1;
+    private static final int HEADER_BYTES = 6;
+
+    private DataPointWireFormat() {}
+
+    static boolean isBinary(String contentType) {
+        return contentType != null && contentType.startsWith(CONTENT_TYPE);
+    }
+
+    static byte[] encode(DataPointColumns points, boolean allowCompression) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(HEADER_BYTES + 64 + points.size() * 12);
+        encode(points, allowCompression, out);
+        return out.toByteArray();
+    }
+
+    /** Writes the payload to {@code out}, which is not closed. */
+    static void encode(DataPointColumns points, boolean allowCompression, OutputStream out) throws IOException {
+        Sink body = new Sink(64 + points.size() * 12);
+        writeDictionary(body, points.dataTypeNames());
+        writeDictionary(body, points.originIds());
+        writeDictionary(body, points.stringValues());
+        body.writeVarint(points.size());
+
+        long previousStart = 0;
+        long previousModified = 0;
+        for (int row = 0; row < points.size(); row++) {
+            long start = points.getStartTimeNanos(row);
+            long modified = points.getModifiedTimeMillis(row);
+            body.writeZigZag(start - previousStart);
+            body.writeZigZag(points.getEndTimeNanos(row) - start);
+            body.writeZigZag(modified - previousModified);
+            body.writeVarint(points.getDataTypeCode(row));
+            body.writeVarint(points.getOriginCode(row) + 1);
+            previousStart = start;
+            previousModified = modified;
+
+            byte kind = points.getValueKind(row);
+            body.writeByte(kind);
+            switch (kind) {
+                case DataPointColumns.VALUE_INT: body.writeZigZag(points.getIntVal(row)); break;
+                case DataPointColumns.VALUE_FP: body.writeDouble(points.getFpVal(row)); break;
+                case DataPointColumns.VALUE_STRING: body.writeVarint(points.getStringCode(row)); break;
+                default: break;
+            }
+        }
+
+        boolean compress = allowCompression && body.length >= COMPRESS_THRESHOLD_BYTES;
+        out.write(MAGIC);
+        out.write(VERSION);
+        out.write(compress ? FLAG_GZIP : 0);
+        if (compress) {
+            // Closing the gzip stream frees its deflater but must leave the caller's stream open
+            OutputStream unclosable = new FilterOutputStream(out) {
+                @Override
+                public void write(byte[] bytes, int offset, int length) throws IOException {
+                    out.write(bytes, offset, length);
+                }
+
+                @Override
+                public void close() throws IOException {
+                    flush();
+                }
+            };
+            try (GZIPOutputStream gzip = new GZIPOutputStream(unclosable, 8192)) {
+                gzip.write(body.buffer, 0, body.length);
+            }
+        } else {
+            out.write(body.buffer, 0, body.length);
+        }
+    }
+
+    /** Decodes a whole payload from {@code in}, which is not closed. */
+    static DataPointColumns decode(InputStream in) throws IOException {
+        byte[] header = new byte[HEADER_BYTES];
+        readFully(in, header);
+        if (!Arrays.equals(Arrays.copyOf(header, MAGIC.length), MAGIC)) {
+            throw new IOException("Not a binary data point payload");
+        }
+        if (header[4] != VERSION) {
+            throw new IOException("Unsupported binary data point version " + header[4]);
+        }
+        Source body = new Source((header[5] & FLAG_GZIP) != 0 ? new GZIPInputStream(in, 8192) : in);
+
+        String[] dataTypes = body.readStrings();
+        String[] origins = body.readStrings();
+        String[] strings = body.readStrings();
+        int count = body.readLength();
+
+        // Intern each dictionary once and remap wire codes, instead of hashing per row
+        DataPointColumns.Builder columns = new DataPointColumns.Builder(Math.min(count, 64 * 1024));
+        int[] typeCodes = new int[dataTypes.length];
+        for (int i = 0; i < dataTypes.length; i++) {
+            typeCodes[i] = columns.internDataType(dataTypes[i]);
+        }
+        int[] originCodes = new int[origins.length];
+        for (int i = 0; i < origins.length; i++) {
+            originCodes[i] = columns.internOrigin(origins[i]);
+        }
+        int[] stringCodes = new int[strings.length];
+        for (int i = 0; i < strings.length; i++) {
+            stringCodes[i] = columns.internString(strings[i]);
+        }
+
+        long start = 0;
+        long modified = 0;
+        for (int row = 0; row < count; row++) {
+            start += body.readZigZag();
+            long end = start + body.readZigZag();
+            modified += body.readZigZag();
+            int typeCode = typeCodes[index(body.readVarint(), typeCodes.length)];
+            long origin = body.readVarint();
+            int originCode = origin == 0 ? -1 : originCodes[index(origin - 1, originCodes.length)];
+
+            byte kind = (byte) body.readByte();
+            long intVal = 0;
+            double fpVal = 0;
+            switch (kind) {
+                case DataPointColumns.VALUE_NONE: break;
+                case DataPointColumns.VALUE_INT: intVal = body.readZigZag(); break;
+                case DataPointColumns.VALUE_FP: fpVal = body.readDouble(); break;
+                case DataPointColumns.VALUE_STRING: intVal = stringCodes[index(body.readVarint(), stringCodes.length)]; break;
+                default: throw new IOException("Unknown value kind " + kind);
+            }
+            columns.addRow(start, end, modified, typeCode, originCode, kind, intVal, fpVal);
+        }
+        return columns.build();
+    }
+
+    private static void writeDictionary(Sink sink, String[] values) {
+        sink.writeVarint(values.length);
+        for (String value : values) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            sink.writeVarint(bytes.length);
+            sink.writeBytes(bytes);
+        }
+    }
+
+    private static int index(long code, int size) throws IOException {
+        if (code < 0 || code >= size) {
+            throw new IOException("Dictionary index " + code + " out of range");
+        }
+        return (int) code;
+    }
+
+    private static void readFully(InputStream in, byte[] bytes) throws IOException {
+        int read = 0;
+        while (read < bytes.length) {
+            int n = in.read(bytes, read, bytes.length - read);
+            if (n < 0) {
+                throw new EOFException("Truncated binary data point payload");
+            }
+            read += n;
+        }
+    }
+
+    /** Growable byte array with varint helpers; avoids per-byte stream calls. */
+    private static final class Sink {
+        byte[] buffer;
+        int length;
+
+        Sink(int initialCapacity) {
+            buffer = new byte[Math.max(initialCapacity, 64)];
+        }
+
+        void writeByte(int value) {
+            ensure(1);
+            buffer[length++] = (byte) value;
+        }
+
+        void writeVarint(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[length++] = (byte) value;
+        }
+
+        void writeZigZag(long value) {
+            writeVarint((value << 1) ^ (value >> 63));
+        }
+
+        void writeDouble(double value) {
+            ensure(8);
+            long bits = Double.doubleToRawLongBits(value);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buffer[length++] = (byte) (bits >>> shift);
+            }
+        }
+
+        void writeBytes(byte[] bytes) {
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buffer, length, bytes.length);
+            length += bytes.length;
+        }
+
+        private void ensure(int extra) {
+            if (length + extra > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + extra));
+            }
+        }
+    }
+
+    /** Buffered reader over the (possibly decompressing) response stream. */
+    private static final class Source {
+        private final InputStream in;
+        private final byte[] buffer = new byte[16 * 1024];
+        private int position;
+        private int limit;
+
+        Source(InputStream in) {
+            this.in = in;
+        }
+
+        int readByte() throws IOException {
+            if (position == limit) {
+                fill();
+            }
+            return buffer[position++] & 0xFF;
+        }
+
+        long readVarint() throws IOException {
+            long result = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                result |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return result;
+                }
+            }
+            throw new IOException("Malformed varint");
+        }
+
+        int readLength() throws IOException {
+            long value = readVarint();
+            if (value < 0 || value > Integer.MAX_VALUE) {
+                throw new IOException("Invalid length " + value);
+            }
+            return (int) value;
+        }
+
+        long readZigZag() throws IOException {
+            long value = readVarint();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        double readDouble() throws IOException {
+            long bits = 0;
+            for (int i = 0; i < 8; i++) {
+                bits = (bits << 8) | readByte();
+            }
+            return Double.longBitsToDouble(bits);
+        }
+
+        String[] readStrings() throws IOException {
+            String[] values = new String[readLength()];
+            for (int i = 0; i < values.length; i++) {
+                byte[] bytes = new byte[readLength()];
+                for (int read = 0; read < bytes.length; ) {
+                    if (position == limit) {
+                        fill();
+                    }
+                    int n = Math.min(limit - position, bytes.length - read);
+                    System.arraycopy(buffer, position, bytes, read, n);
+                    position += n;
+                    read += n;
+                }
+                values[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+            return values;
+        }
+
+        private void fill() throws IOException {
+            int n = in.read(buffer, 0, buffer.length);
+            if (n <= 0) {
+                throw new EOFException("Truncated binary data point payload");
+            }
+            position = 0;
+            limit = n;
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package com.ultimatequack.healthyduck.client;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Subscribes to a publisher of data points for one (user, data source) and writes them
+ * as dataset PATCHes of up to {@link BatchOptions#getMaxBatchSize()} points, one at a
+ * time and in arrival order. At most {@link BatchOptions#getMaxBufferedPoints()} points
+ * are requested and not yet written, so a publisher that outruns the network is held
+ * back by demand instead of filling memory. A partial batch is sent once its oldest
+ * point has waited {@link BatchOptions#getLingerMillis()}.
+ *
+ * <p>Created by {@link HealthyDuckClient#insertDataPoints(String, String, Flow.Publisher, BatchOptions)}.
+ */
+final class DataPointWriteSubscriber implements Flow.Subscriber<DataPoint> {
+    private static final ScheduledExecutorService LINGER = newLingerTimer();
+
+    private final HealthyDuckClient client;
+    private final String userId;
+    private final String dataSourceId;
+    private final BatchOptions options;
+    private final CompletableFuture<Long> result = new CompletableFuture<>();
+
+    // Guarded by this
+    private Flow.Subscription subscription;
+    private List<DataPoint> buffer = new ArrayList<>();
+    private final Deque<List<DataPoint>> ready = new ArrayDeque<>();
+    private ScheduledFuture<?> lingerTask;
+    private boolean sending;
+    private boolean upstreamDone;
+    private Throwable upstreamError;
+    private long written;
+
+    DataPointWriteSubscriber(HealthyDuckClient client, String userId, String dataSourceId, BatchOptions options) {
+        this.client = client;
+        this.userId = userId;
+        this.dataSourceId = dataSourceId;
+        this.options = options;
+        // Cancelling the result stops the publisher
+        result.whenComplete((count, error) -> {
+            if (result.isCancelled()) {
+                cancelUpstream();
+            }
+        });
+    }
+
+    /** Completes with the number of points written, or fails with the first error. */
+    CompletableFuture<Long> result() {
+        return result;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        synchronized (this) {
+            if (this.subscription != null || result.isDone()) {
+                subscription.cancel();
+                return;
+            }
+            this.subscription = subscription;
+        }
+        subscription.request(options.getMaxBufferedPoints());
+    }
+
+    @Override
+    public void onNext(DataPoint point) {
+        List<DataPoint> batch;
+        synchronized (this) {
+            if (upstreamDone || result.isDone()) {
+                return;
+            }
+            buffer.add(point);
+            if (buffer.size() >= options.getMaxBatchSize()) {
+                ready.add(takeBuffer());
+            } else if (lingerTask == null) {
+                lingerTask = LINGER.schedule(this::lingerExpired, options.getLingerMillis(), TimeUnit.MILLISECONDS);
+            }
+            batch = nextBatch();
+        }
+        send(batch);
+    }
+
+    @Override
+    public void onError(Throwable error) {
+        upstreamFinished(error);
+    }
+
+    @Override
+    public void onComplete() {
+        upstreamFinished(null);
+    }
+
+    private void upstreamFinished(Throwable error) {
+        List<DataPoint> batch;
+        synchronized (this) {
+            if (upstreamDone) {
+                return;
+            }
+            upstreamDone = true;
+            upstreamError = error;
+            // What already arrived is still written before the error is reported
+            if (!buffer.isEmpty()) {
+                ready.add(takeBuffer());
+            }
+            batch = nextBatch();
+        }
+        send(batch);
+    }
+
+    private void lingerExpired() {
+        List<DataPoint> batch;
+        synchronized (this) {
+            lingerTask = null;
+            if (buffer.isEmpty()) {
+                return;
+            }
+            ready.add(takeBuffer());
+            batch = nextBatch();
+        }
+        send(batch);
+    }
+
+    /** Caller must hold the monitor. */
+    private List<DataPoint> takeBuffer() {
+        List<DataPoint> taken = buffer;
+        buffer = new ArrayList<>();
+        if (lingerTask != null) {
+            lingerTask.cancel(false);
+            lingerTask = null;
+        }
+        return taken;
+    }
+
+    /**
+     * Claims the next batch to send, or completes the result once everything is written.
+     * Caller must hold the monitor.
+     */
+    private List<DataPoint> nextBatch() {
+        if (sending || result.isDone()) {
+            return null;
+        }
+        if (!ready.isEmpty()) {
+            sending = true;
+            return ready.poll();
+        }
+        if (upstreamDone && buffer.isEmpty()) {
+            if (upstreamError != null) {
+                result.completeExceptionally(new HealthyDuckException("Data point publisher failed", upstreamError));
+            } else {
+                result.complete(written);
+            }
+        }
+        return null;
+    }
+
+    private void send(List<DataPoint> batch) {
+        if (batch == null) {
+            return;
+        }
+        long minStart = Long.MAX_VALUE;
+        long maxEnd = Long.MIN_VALUE;
+        for (DataPoint point : batch) {
+            minStart = Math.min(minStart, point.getStartTimeNanos());
+            maxEnd = Math.max(maxEnd, point.getEndTimeNanos());
+        }
+        CompletableFuture<Void> request;
+        try {
+            request = client.insertDataPoints(userId, dataSourceId, minStart + "-" + maxEnd, batch);
+        } catch (RuntimeException e) {
+            request = new CompletableFuture<>();
+            request.completeExceptionally(e);
+        }
+        request.whenComplete((ignored, error) -> batchFinished(batch.size(), error));
+    }
+
+    private void batchFinished(int size, Throwable error) {
+        List<DataPoint> batch;
+        Flow.Subscription replenish = null;
+        synchronized (this) {
+            sending = false;
+            if (error != null) {
+                ready.clear();
+                buffer.clear();
+                result.completeExceptionally(HealthyDuckClient.unwrap(error));
+                batch = null;
+            } else {
+                written += size;
+                if (!upstreamDone) {
+                    replenish = subscription;
+                }
+                batch = nextBatch();
+            }
+        }
+        if (error != null) {
+            cancelUpstream();
+        } else if (replenish != null) {
+            replenish.request(size);
+        }
+        send(batch);
+    }
+
+    private void cancelUpstream() {
+        Flow.Subscription current;
+        synchronized (this) {
+            upstreamDone = true;
+            current = subscription;
+            if (lingerTask != null) {
+                lingerTask.cancel(false);
+                lingerTask = null;
+            }
+        }
+        if (current != null) {
+            current.cancel();
+        }
+    }
+
+    private static ScheduledExecutorService newLingerTimer() {
+        ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "healthyduck-flow-linger");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.setRemoveOnCancelPolicy(true);
+        return timer;
+    }
+}
@@ -0,0 +1,225 @@
+package com.ultimatequack.healthyduck.client;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-user set of data sources known to exist on the server, so repeated writes to the
+ * same stream do not POST the data source every time.
+ *
+ * <p>A user's entries are loaded lazily from {@code getDataSources} the first time a stream
+ * for that user is requested. Concurrent {@link #ensureRegistered} calls for the same stream
+ * share one in-flight request, and a 409 from the server is treated as "already exists".
+ * When a persistence file is set, known streams survive process restarts and the initial
+ * listing is skipped for users found in the file.
+ */
+public class DataSourceRegistry {
+    private final HealthyDuckClient client;
+    private final Map<String, Map<String, DataSource>> known = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<Void>> userLoads = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<DataSource>> inFlight = new ConcurrentHashMap<>();
+    private volatile File persistenceFile;
+
+    DataSourceRegistry(HealthyDuckClient client) {
+        this.client = client;
+    }
+
+    /**
+     * Completes with the data source once it is known to exist for {@code userId}, creating
+     * it if needed. Completes immediately when the stream is already registered.
+     */
+    public CompletableFuture<DataSource> ensureRegistered(String userId, DataSource dataSource) {
+        String key = keyOf(dataSource);
+        DataSource existing = lookup(userId, key);
+        if (existing != null) {
+            return CompletableFuture.completedFuture(existing);
+        }
+
+        String flightKey = userId + '\n' + key;
+        CompletableFuture<DataSource> created = new CompletableFuture<>();
+        CompletableFuture<DataSource> shared = inFlight.putIfAbsent(flightKey, created);
+        if (shared != null) {
+            return shared;
+        }
+
+        loadUser(userId)
+            .thenCompose(ignored -> {
+                DataSource loaded = lookup(userId, key);
+                return loaded != null ? CompletableFuture.completedFuture(loaded) : create(userId, dataSource);
+            })
+            .whenComplete((registered, error) -> {
+                if (error == null) {
+                    remember(userId, key, registered);
+                    inFlight.remove(flightKey);
+                    created.complete(registered);
+                } else {
+                    inFlight.remove(flightKey);
+                    created.completeExceptionally(HealthyDuckClient.unwrap(error));
+                }
+            });
+        return created;
+    }
+
+    public boolean isRegistered(String userId, DataSource dataSource) {
+        return lookup(userId, keyOf(dataSource)) != null;
+    }
+
+    /** Forgets what is known for {@code userId}; the next use reloads from the server. */
+    public void invalidate(String userId) {
+        known.remove(userId);
+        userLoads.remove(userId);
+        save();
+    }
+
+    public void clear() {
+        known.clear();
+        userLoads.clear();
+        save();
+    }
+
+    /**
+     * Loads previously saved registrations from {@code file} and keeps it updated from now
+     * on. A missing or unreadable file starts empty.
+     */
+    public void setPersistenceFile(File file) {
+        if (file != null && file.isFile()) {
+            try (InputStream in = new FileInputStream(file)) {
+                ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+                byte[] chunk = new byte[8192];
+                int read;
+                while ((read = in.read(chunk)) != -1) {
+                    buffer.write(chunk, 0, read);
+                }
+                JSONObject json = new JSONObject(new String(buffer.toByteArray(), StandardCharsets.UTF_8));
+                JSONArray users = json.names();
+                for (int u = 0; users != null && u < users.length(); u++) {
+                    String userId = users.getString(u);
+                    JSONObject sources = json.getJSONObject(userId);
+                    JSONArray keys = sources.names();
+                    for (int i = 0; keys != null && i < keys.length(); i++) {
+                        String key = keys.getString(i);
+                        userMap(userId).put(key, DataSource.fromJson(sources.getJSONObject(key)));
+                    }
+                    userLoads.putIfAbsent(userId, CompletableFuture.completedFuture(null));
+                }
+            } catch (Exception e) {
+                // A corrupt cache only costs a reload from the server
+            }
+        }
+        this.persistenceFile = file;
+    }
+
+    private DataSource lookup(String userId, String key) {
+        Map<String, DataSource> sources = known.get(userId);
+        return sources != null ? sources.get(key) : null;
+    }
+
+    private Map<String, DataSource> userMap(String userId) {
+        return known.computeIfAbsent(userId, id -> new ConcurrentHashMap<>());
+    }
+
+    /** Lists the user's data sources once; a failed listing is not fatal and is retried next time. */
+    private CompletableFuture<Void> loadUser(String userId) {
+        CompletableFuture<Void> load = userLoads.get(userId);
+        if (load != null) {
+            return load;
+        }
+        CompletableFuture<Void> started = new CompletableFuture<>();
+        load = userLoads.putIfAbsent(userId, started);
+        if (load != null) {
+            return load;
+        }
+        client.getDataSources(userId).whenComplete((sources, error) -> {
+            if (error == null) {
+                Map<String, DataSource> map = userMap(userId);
+                for (DataSource dataSource : sources) {
+                    map.putIfAbsent(keyOf(dataSource), dataSource);
+                    // Locally built sources often have no stream id yet
+                    map.putIfAbsent(derivedKeyOf(dataSource), dataSource);
+                }
+                save();
+            } else {
+                userLoads.remove(userId, started);
+            }
+            started.complete(null);
+        });
+        return started;
+    }
+
+    private CompletableFuture<DataSource> create(String userId, DataSource dataSource) {
+        return client.createDataSource(userId, dataSource).handle((created, error) -> {
+            if (error == null) {
+                return created != null && created.getDataStreamId() != null ? created : dataSource;
+            }
+            Throwable cause = HealthyDuckClient.unwrap(error);
+            if (cause instanceof HealthyDuckException && ((HealthyDuckException) cause).getStatusCode() == 409) {
+                // Created concurrently by another device or process
+                return dataSource;
+            }
+            throw cause instanceof RuntimeException ? (RuntimeException) cause
+                                                    : new HealthyDuckException("Failed to register data source", cause);
+        });
+    }
+
+    private void remember(String userId, String key, DataSource dataSource) {
+        if (userMap(userId).putIfAbsent(key, dataSource) == null) {
+            save();
+        }
+    }
+
+    private synchronized void save() {
+        File file = persistenceFile;
+        if (file == null) {
+            return;
+        }
+        try {
+            JSONObject json = new JSONObject();
+            for (Map.Entry<String, Map<String, DataSource>> user : known.entrySet()) {
+                // Keyed by lookup key, which for locally built sources is not the stream id
+                JSONObject sources = new JSONObject();
+                for (Map.Entry<String, DataSource> source : user.getValue().entrySet()) {
+                    sources.put(source.getKey(), source.getValue().toJson());
+                }
+                json.put(user.getKey(), sources);
+            }
+            File temp = new File(file.getPath() + ".tmp");
+            try (OutputStream out = new FileOutputStream(temp)) {
+                out.write(json.toString().getBytes(StandardCharsets.UTF_8));
+            }
+            if (!temp.renameTo(file) && (!file.delete() || !temp.renameTo(file))) {
+                temp.delete();
+            }
+        } catch (Exception e) {
+            // Persistence is best effort; the in-memory registry stays authoritative
+        }
+    }
+
+    /** Stream identity: the server-side id when set, otherwise the fields it is derived from. */
+    static String keyOf(DataSource dataSource) {
+        return dataSource.getDataStreamId() != null ? dataSource.getDataStreamId() : derivedKeyOf(dataSource);
+    }
+
+    private static String derivedKeyOf(DataSource dataSource) {
+        StringBuilder key = new StringBuilder()
+            .append(dataSource.getType()).append(':')
+            .append(dataSource.getDataStreamName());
+        List<DataType> types = dataSource.getDataType();
+        if (types != null) {
+            for (DataType type : types) {
+                key.append(':').append(type.getName());
+            }
+        }
+        return key.toString();
+    }
+}
@@ -0,0 +1,56 @@
+package com.ultimatequack.healthyduck.client;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A request path such as {@code /api/fitness/v1/users/{userId}/sessions}, split into its
+ * literal parts once. Building a path is then a single presized {@code StringBuilder}
+ * instead of parsing a {@code String.format} pattern on every call. Values are inserted
+ * as given, as {@code %s} did.
+ */
+final class EndpointTemplate {
+    private final String[] literals;
+    private final int literalLength;
+
+    private EndpointTemplate(String[] literals) {
+        this.literals = literals;
+        int length = 0;
+        for (String literal : literals) {
+            length += literal.length();
+        }
+        this.literalLength = length;
+    }
+
+    /** Placeholders are {@code {name}}; names only document the template. */
+    static EndpointTemplate compile(String pattern) {
+        List<String> literals = new ArrayList<>();
+        int from = 0;
+        int open;
+        while ((open = pattern.indexOf('{', from)) >= 0) {
+            int close = pattern.indexOf('}', open);
+            if (close < 0) {
+                throw new IllegalArgumentException("Unclosed placeholder in " + pattern);
+            }
+            literals.add(pattern.substring(from, open));
+            from = close + 1;
+        }
+        literals.add(pattern.substring(from));
+        return new EndpointTemplate(literals.toArray(new String[0]));
+    }
+
+    String expand(String... values) {
+        if (values.length != literals.length - 1) {
+            throw new IllegalArgumentException("Expected " + (literals.length - 1) + " values, got " + values.length);
+        }
+        int length = literalLength;
+        for (String value : values) {
+            length += value != null ? value.length() : 4;
+        }
+        StringBuilder path = new StringBuilder(length).append(literals[0]);
+        for (int i = 0; i < values.length; i++) {
+            path.append(values[i]).append(literals[i + 1]);
+        }
+        return path.toString();
+    }
+}
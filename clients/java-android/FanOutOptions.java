@@ -0,0 +1,24 @@
+package com.ultimatequack.healthyduck.client;
+
+/**
+ * Parallelism for {@link HealthyDuckClient#getDataPoints(java.util.Collection, FanOutOptions, BulkFetchListener)}.
+ */
+public class FanOutOptions {
+    private int maxConcurrentRequests = 8;
+
+    public int getMaxConcurrentRequests() { return maxConcurrentRequests; }
+
+    /**
+     * HTTP requests a bulk fetch keeps in flight against the client's host, counting the
+     * chunk requests of long ranges and the data source listings. Matching
+     * {@link TransportOptions#getMaxConnectionsPerHost()} keeps every pooled connection busy
+     * without queueing work on the client's executor behind the connection limit.
+     */
+    public FanOutOptions setMaxConcurrentRequests(int maxConcurrentRequests) {
+        if (maxConcurrentRequests < 1) {
+            throw new IllegalArgumentException("maxConcurrentRequests must be >= 1");
+        }
+        this.maxConcurrentRequests = maxConcurrentRequests;
+        return this;
+    }
+}
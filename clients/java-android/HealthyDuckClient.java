@@ -6,32 +6,167 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 import java.io.*;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * HealthyDuck API Client for Android Applications
  * Optimized for mobile fitness app integration
  */
-public class HealthyDuckClient {
+public class HealthyDuckClient implements Closeable {
     private final String baseUrl;
     private final String accessToken;
-    private final Context context;
-    private static final int TIMEOUT_MS = 10000;
+    private final String packageName;
+    private final HttpTransport transport;
+    private final ResilientTransport resilientTransport;
+    private final boolean ownsTransport;
+    private final Executor executor;
+    private volatile DataPointCache dataPointCache;
+    private volatile LocalTimeSeriesStore localStore;
+    private volatile boolean binaryDataPoints;
+    private volatile RangeQueryPlanner rangePlanner;
+    private volatile ClientMetrics metrics = ClientMetrics.NOOP;
+    private final DataSourceRegistry dataSourceRegistry = new DataSourceRegistry(this);
+    // Headroom over the long-poll wait for the server to answer once it stops waiting
+    private static final int LONG_POLL_MARGIN_MS = 10000;
+    private static final long NANOS_PER_MILLI = 1000000L;
+    // Sessions are sparse but long, so session chunks always reach a day past their end
+    private static final long SESSION_OVERLAP_NANOS = 24L * 60 * 60 * 1000 * NANOS_PER_MILLI;
+    private static final EndpointTemplate DATA_SOURCES =
+        EndpointTemplate.compile("/api/fitness/v1/users/{userId}/dataSources");
+    private static final EndpointTemplate DATASET =
+        EndpointTemplate.compile("/api/fitness/v1/users/{userId}/dataSources/{dataSourceId}/datasets/{datasetId}");
+    private static final EndpointTemplate CHANGES =
+        EndpointTemplate.compile("/api/fitness/v1/users/{userId}/dataSources/{dataSourceId}/changes");
+    private static final EndpointTemplate SESSIONS =
+        EndpointTemplate.compile("/api/fitness/v1/users/{userId}/sessions");
+    // Parsed and encoded by warmUp() so the classes behind a first read and write are loaded
+    private static final String WARM_UP_DATASET = "{\"point\":[{\"startTimeNanos\":\"0\",\"endTimeNanos\":\"1\","
+        + "\"dataTypeName\":\"com.ultimatequack.step_count.delta\",\"value\":[{\"intVal\":1}]}]}";
 
     public HealthyDuckClient(Context context, String baseUrl, String accessToken) {
-        this.context = context;
-        this.baseUrl = baseUrl.replaceAll("/$", "");
+        this(packageNameOf(context), baseUrl, accessToken);
+    }
+
+    /**
+     * For use without an Android {@code Context}: {@code packageName} is what a context
+     * would report, and names the application on data sources the client creates.
+     */
+    public HealthyDuckClient(String packageName, String baseUrl, String accessToken) {
+        // The default engine is built on the first request, not on the constructing thread
+        this(packageName, baseUrl, accessToken,
+             new LazyTransport(() -> HttpTransport.createDefault(new TransportOptions())), true,
+             ClientExecutors.defaultExecutor());
+    }
+
+    /**
+     * Uses the given transport instead of the default pooled engine. The transport may be
+     * shared between clients and is not closed by {@link #close()}.
+     */
+    public HealthyDuckClient(Context context, String baseUrl, String accessToken, HttpTransport transport) {
+        this(packageNameOf(context), baseUrl, accessToken, transport, false, ClientExecutors.defaultExecutor());
+    }
+
+    /**
+     * Runs the blocking HTTP calls on {@code executor}, e.g. one from {@link ClientExecutors}.
+     * The executor is owned by the caller and is not shut down by {@link #close()}.
+     */
+    public HealthyDuckClient(Context context, String baseUrl, String accessToken,
+                             HttpTransport transport, Executor executor) {
+        this(packageNameOf(context), baseUrl, accessToken, transport, false, executor);
+    }
+
+    /** {@code Context}-free variant of the constructor above; see {@link #HealthyDuckClient(String, String, String)}. */
+    public HealthyDuckClient(String packageName, String baseUrl, String accessToken,
+                             HttpTransport transport, Executor executor) {
+        this(packageName, baseUrl, accessToken, transport, false, executor);
+    }
+
+    private HealthyDuckClient(String packageName, String baseUrl, String accessToken,
+                              HttpTransport transport, boolean ownsTransport, Executor executor) {
+        // Only the package name is kept, so the client never holds on to an Activity
+        this.packageName = packageName;
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
         this.accessToken = accessToken;
+        this.resilientTransport = new ResilientTransport(transport, new RequestPolicy());
+        this.transport = resilientTransport;
+        this.ownsTransport = ownsTransport;
+        this.executor = executor;
+        this.rangePlanner = new RangeQueryPlanner(new RangeQueryOptions(), executor);
+    }
+
+    /**
+     * Replaces the timeout, hedging and retry policy. {@link RequestPolicy#none()} restores
+     * a fixed timeout without retries.
+     */
+    public void setRequestPolicy(RequestPolicy policy) {
+        resilientTransport.setPolicy(policy);
+    }
+
+    /**
+     * Installs instrumentation hooks for latency, bytes, retries and cache use, e.g. a
+     * {@link RecordingClientMetrics}. Pass {@link ClientMetrics#NOOP} to turn them off.
+     */
+    public void setMetrics(ClientMetrics metrics) {
+        this.metrics = metrics;
+        resilientTransport.setMetrics(metrics);
+        DataPointCache cache = dataPointCache;
+        if (cache != null) {
+            cache.setMetrics(metrics);
+        }
+    }
+
+    /**
+     * Optional; call it early, e.g. at app launch, so the first real call is not the one
+     * paying for class loading and the TCP/TLS handshake. On the executor, runs a small
+     * dataset through the JSON reader and writer and opens a connection to the API host,
+     * which is kept alive for the next request. The future fails if the host cannot be
+     * reached, which affects nothing else.
+     */
+    public CompletableFuture<Void> warmUp() {
+        return runAsync(() -> {
+            try {
+                byte[] dataset = WARM_UP_DATASET.getBytes(StandardCharsets.UTF_8);
+                List<DataPoint> points = new ArrayList<>();
+                try (JsonArrayStreamReader elements = new JsonArrayStreamReader(new ByteArrayInputStream(dataset),
+                                                                                "point")) {
+                    while (elements.hasNext()) {
+                        points.add(DataPoint.fromJson(elements.next()));
+                    }
+                }
+                new JSONObject(WARM_UP_DATASET).getJSONArray("point");
+                PooledBody body = new PooledBody(ByteChunkPool.shared());
+                try {
+                    DataPointJsonWriter.write(points, body);
+                } finally {
+                    body.release();
+                }
+
+                // Any status will do; only the connection matters
+                HttpTransport.Request request = new HttpTransport.Request("HEAD", baseUrl + "/api/fitness/v1/",
+                                                                          (byte[]) null)
+                    .setHeader("User-Agent", "HealthyDuck-Android-Client/1.0");
+                transport.execute(request).close();
+            } catch (Exception e) {
+                throw new HealthyDuckException("Failed to warm up", e);
+            }
+        });
     }
 
     // Data Sources
     public CompletableFuture<DataSource> createDataSource(String userId, DataSource dataSource) {
-        return CompletableFuture.supplyAsync(() -> {
+        return supplyAsync(() -> {
             try {
-                String endpoint = String.format("/api/fitness/v1/users/%s/dataSources", userId);
+                String endpoint = DATA_SOURCES.expand(userId);
                 JSONObject json = dataSource.toJson();
                 String response = makeRequest(endpoint, "POST", json.toString());
                 return DataSource.fromJson(new JSONObject(response));
@@ -42,12 +177,14 @@ public class HealthyDuckClient {
     }
 
     public CompletableFuture<List<DataSource>> getDataSources(String userId) {
-        return CompletableFuture.supplyAsync(() -> {
+        return supplyAsync(() -> {
             try {
-                String endpoint = String.format("/api/fitness/v1/users/%s/dataSources", userId);
+                String endpoint = DATA_SOURCES.expand(userId);
                 String response = makeRequest(endpoint, "GET", null);
                 JSONObject json = new JSONObject(response);
-                JSONArray dataSourcesArray = json.getJSONArray("dataSources");
+                // The server names the array "dataSource"; older builds used "dataSources"
+                JSONArray dataSourcesArray = json.has("dataSource") ? json.getJSONArray("dataSource")
+                                                                    : json.getJSONArray("dataSources");
                 
                 List<DataSource> dataSources = new ArrayList<>();
                 for (int i = 0; i < dataSourcesArray.length(); i++) {
@@ -60,183 +197,707 @@ public class HealthyDuckClient {
         });
     }
 
+    /** Data sources known to exist per user; {@link #recordSteps} and {@link #recordWorkout} register through it. */
+    public DataSourceRegistry getDataSourceRegistry() {
+        return dataSourceRegistry;
+    }
+
     // Data Points
     public CompletableFuture<Void> insertDataPoints(String userId, String dataSourceId, 
                                                    String datasetId, List<DataPoint> dataPoints) {
-        return CompletableFuture.runAsync(() -> {
+        return runAsync(() -> {
             try {
-                String endpoint = String.format("/api/fitness/v1/users/%s/dataSources/%s/datasets/%s", 
-                                               userId, dataSourceId, datasetId);
-                
-                JSONObject payload = new JSONObject();
-                JSONArray pointsArray = new JSONArray();
-                for (DataPoint point : dataPoints) {
-                    pointsArray.put(point.toJson());
-                }
-                payload.put("dataPoints", pointsArray);
-                
-                makeRequest(endpoint, "PATCH", payload.toString());
+                sendDataPoints(userId, dataSourceId, datasetId, dataPoints);
             } catch (Exception e) {
                 throw new HealthyDuckException("Failed to insert data points", e);
             }
         });
     }
 
+    /**
+     * Opens (or recovers) a durable offline queue in {@code directory}. Writes recorded there
+     * survive network loss and process restarts and are sent in order by
+     * {@link OfflineWriteQueue#drain()}.
+     */
+    public OfflineWriteQueue openOfflineQueue(File directory, OfflineQueueOptions options) throws IOException {
+        return new OfflineWriteQueue(this, directory, options);
+    }
+
+    /**
+     * Opt-in writer that merges individual points into one PATCH per (user, data source).
+     * Close it to flush what is still buffered.
+     */
+    public DataPointBatcher newBatchingWriter(BatchOptions options) {
+        return new DataPointBatcher(this, options);
+    }
+
+    /**
+     * Follows data points added or updated on the server since the last sync, per
+     * (user, data source), instead of re-reading whole ranges.
+     */
+    public IncrementalSync newIncrementalSync(SyncOptions options) {
+        return new IncrementalSync(this, options, executor);
+    }
+
+    /**
+     * Runs many (user, data source, range) reads with bounded parallelism and merges each
+     * user's points into one time-ordered list. Failed queries are reported per query in
+     * the result; the future itself only fails if the batch cannot be started.
+     * {@code listener} sees each query as it completes and each user once all of theirs have.
+     */
+    public CompletableFuture<BulkFetchResult> getDataPoints(Collection<DataPointQuery> queries,
+                                                            FanOutOptions options,
+                                                            BulkFetchListener listener) {
+        return new BulkDataPointFetch(this, options, listener).start(queries);
+    }
+
+    public CompletableFuture<BulkFetchResult> getDataPoints(Collection<DataPointQuery> queries,
+                                                            FanOutOptions options) {
+        return getDataPoints(queries, options, BulkFetchListener.NONE);
+    }
+
+    /**
+     * Reads one dataset. Without the cache, a long range is split into chunks sized from
+     * the density seen so far in this data source and fetched in parallel; see
+     * {@link #setRangeQueryOptions}.
+     */
     public CompletableFuture<List<DataPoint>> getDataPoints(String userId, String dataSourceId, String datasetId) {
-        return CompletableFuture.supplyAsync(() -> {
+        return getDataPoints(userId, dataSourceId, datasetId, null);
+    }
+
+    /**
+     * {@link #getDataPoints(String, String, String)} with every request it sends, chunk
+     * requests included, counted against {@code limiter}; null for no shared limit.
+     */
+    CompletableFuture<List<DataPoint>> getDataPoints(String userId, String dataSourceId, String datasetId,
+                                                     RequestLimiter limiter) {
+        long[] requested = datasetId != null ? parseDatasetId(datasetId) : null;
+        if (dataPointCache == null && requested != null && requested[0] <= requested[1]) {
+            CompletableFuture<List<DataPoint>> chunked = rangePlanner.fetch(
+                userId + "\n" + dataSourceId, requested[0], requested[1], 1, 0, false,
+                DataPoint::getStartTimeNanos, DataPoint::getEndTimeNanos,
+                (start, end) -> fetchDataPoints(userId, dataSourceId, start + "-" + end), limiter);
+            return withFailureMessage(chunked, "Failed to get data points");
+        }
+        if (limiter != null) {
+            return limiter.submit(() -> getDataPoints(userId, dataSourceId, datasetId, null));
+        }
+        return supplyAsync(() -> {
             try {
-                String endpoint = String.format("/api/fitness/v1/users/%s/dataSources/%s/datasets/%s", 
-                                               userId, dataSourceId, datasetId);
-                String response = makeRequest(endpoint, "GET", null);
-                JSONObject json = new JSONObject(response);
-                JSONArray pointsArray = json.getJSONArray("dataPoints");
-                
-                List<DataPoint> dataPoints = new ArrayList<>();
-                for (int i = 0; i < pointsArray.length(); i++) {
-                    dataPoints.add(DataPoint.fromJson(pointsArray.getJSONObject(i)));
+                DataPointCache cache = dataPointCache;
+                long[] range = cache != null ? parseDatasetId(datasetId) : null;
+                if (range != null) {
+                    return cache.get(userId, dataSourceId, range[0], range[1]);
                 }
-                return dataPoints;
+                return fetchDataPoints(userId, dataSourceId, datasetId);
             } catch (Exception e) {
                 throw new HealthyDuckException("Failed to get data points", e);
             }
         });
     }
 
+    /**
+     * Replaces the chunking used by {@link #getDataPoints(String, String, String)} and
+     * {@link #getSessions}. Densities observed so far are forgotten.
+     */
+    public void setRangeQueryOptions(RangeQueryOptions options) {
+        rangePlanner = new RangeQueryPlanner(options, executor);
+    }
+
+    /**
+     * Turns on the read-through cache for {@link #getDataPoints}. Entries are keyed by
+     * (user, data source) and time range, bounded by {@code maxBytes}, and invalidated by
+     * this client's own {@link #insertDataPoints} calls.
+     */
+    public DataPointCache enableDataPointCache(long maxBytes) {
+        DataPointCache cache = new DataPointCache(maxBytes,
+            (userId, dataSourceId, startNanos, endNanos) -> RangeQueryPlanner.fetchWhole(
+                startNanos, endNanos, DataPoint::getStartTimeNanos, DataPoint::getEndTimeNanos,
+                (start, end) -> fetchDataPoints(userId, dataSourceId, start + "-" + end)));
+        cache.setMetrics(metrics);
+        dataPointCache = cache;
+        return cache;
+    }
+
+    public void disableDataPointCache() {
+        dataPointCache = null;
+    }
+
+    /**
+     * Opens an on-device time-series store in {@code directory} and keeps it in sync with
+     * this client: points sent by {@link #insertDataPoints} or queued offline, and points
+     * read by {@link #getDataPoints}, {@link #getDataPointsColumnar} or an
+     * {@link IncrementalSync}, are written to it. Charts and daily totals can then be
+     * answered locally. Replaces and closes a previously opened store.
+     */
+    public LocalTimeSeriesStore openLocalStore(File directory, LocalStoreOptions options) throws IOException {
+        LocalTimeSeriesStore store = new LocalTimeSeriesStore(directory, options);
+        LocalTimeSeriesStore previous = localStore;
+        localStore = store;
+        if (previous != null) {
+            previous.close();
+        }
+        return store;
+    }
+
+    /** The store opened by {@link #openLocalStore}, or null. */
+    public LocalTimeSeriesStore getLocalStore() {
+        return localStore;
+    }
+
+    public void closeLocalStore() throws IOException {
+        LocalTimeSeriesStore store = localStore;
+        localStore = null;
+        if (store != null) {
+            store.close();
+        }
+    }
+
+    /**
+     * Sends and requests dataset points in the compact binary format instead of JSON.
+     * Reads still accept JSON when the server does not offer binary, and writes fall back
+     * to JSON for the rest of the client's life if the server answers 415.
+     */
+    public void setBinaryDataPoints(boolean enabled) {
+        binaryDataPoints = enabled;
+    }
+
+    /**
+     * Streaming variant of {@link #getDataPoints}: points are parsed one at a time and handed
+     * to {@code consumer} on the I/O thread, so memory stays flat regardless of dataset size.
+     * Completes with the number of points delivered.
+     */
+    public CompletableFuture<Long> streamDataPoints(String userId, String dataSourceId, String datasetId,
+                                                    Consumer<DataPoint> consumer) {
+        return supplyAsync(() -> {
+            try {
+                String endpoint = DATASET.expand(userId, dataSourceId, datasetId);
+                return streamArray(endpoint, json -> consumer.accept(DataPoint.fromJson(json)),
+                                   "point", "dataPoints");
+            } catch (Exception e) {
+                throw new HealthyDuckException("Failed to stream data points", e);
+            }
+        });
+    }
+
+    /**
+     * Same data as {@link #getDataPoints}, decoded straight into primitive columns without
+     * building {@code DataPoint} objects. Suited to analytics over large ranges.
+     */
+    public CompletableFuture<DataPointColumns> getDataPointsColumnar(String userId, String dataSourceId,
+                                                                     String datasetId) {
+        return supplyAsync(() -> {
+            try {
+                String endpoint = DATASET.expand(userId, dataSourceId, datasetId);
+                DataPointColumns columns = fetchColumns(endpoint);
+                storeLocally(userId, dataSourceId, columns);
+                return columns;
+            } catch (Exception e) {
+                throw new HealthyDuckException("Failed to get data points", e);
+            }
+        });
+    }
+
+    /**
+     * Iterates over a dataset page by page, following {@code nextPageToken} and prefetching
+     * upcoming pages in the background. Close the iterator when stopping early.
+     */
+    public PagedIterator<DataPoint> iterateDataPoints(String userId, String dataSourceId, String datasetId,
+                                                      PageOptions options) {
+        String endpoint = DATASET.expand(userId, dataSourceId, datasetId);
+        return new PagedIterator<>(
+            pageToken -> fetchPage(endpoint, pageToken, options.getPageSize(), DataPoint::fromJson,
+                                   "point", "dataPoints"),
+            executor, options.getPrefetchDepth());
+    }
+
+    /**
+     * Reactive Streams variant of {@link #streamDataPoints}: points are read and parsed only
+     * as the subscriber requests them, so a slow consumer holds back the download instead
+     * of buffering it. Each subscription sends its own request.
+     */
+    public Flow.Publisher<DataPoint> publishDataPoints(String userId, String dataSourceId, String datasetId) {
+        String endpoint = DATASET.expand(userId, dataSourceId, datasetId);
+        return new ResponseElementPublisher<>(() -> openResponse(endpoint, "GET", null), DataPoint::fromJson,
+                                              new String[] {"point", "dataPoints"}, executor,
+                                              "Failed to stream data points");
+    }
+
+    /**
+     * Writes every point {@code points} publishes as batched PATCHes, one batch in flight at
+     * a time, requesting more only as batches land; see {@link DataPointWriteSubscriber}.
+     * Completes with the number of points written. Cancelling the future cancels the
+     * subscription.
+     */
+    public CompletableFuture<Long> insertDataPoints(String userId, String dataSourceId,
+                                                    Flow.Publisher<DataPoint> points, BatchOptions options) {
+        DataPointWriteSubscriber subscriber = new DataPointWriteSubscriber(this, userId, dataSourceId, options);
+        points.subscribe(subscriber);
+        return subscriber.result();
+    }
+
     // Sessions
     public CompletableFuture<Session> createSession(String userId, Session session) {
-        return CompletableFuture.supplyAsync(() -> {
+        return supplyAsync(() -> {
             try {
-                String endpoint = String.format("/api/fitness/v1/users/%s/sessions", userId);
-                JSONObject json = session.toJson();
-                String response = makeRequest(endpoint, "POST", json.toString());
-                return Session.fromJson(new JSONObject(response));
+                return sendSession(userId, session);
             } catch (Exception e) {
                 throw new HealthyDuckException("Failed to create session", e);
             }
         });
     }
 
+    /**
+     * Sessions in the range, newest first. When both ends are given, a long range is split
+     * into chunks like {@link #getDataPoints(String, String, String)}; chunks overlap by a
+     * day, so sessions up to a day long are kept across chunk boundaries.
+     */
     public CompletableFuture<List<Session>> getSessions(String userId, Date startTime, Date endTime) {
-        return CompletableFuture.supplyAsync(() -> {
+        if (startTime != null && endTime != null && !startTime.after(endTime)) {
+            CompletableFuture<List<Session>> chunked = rangePlanner.fetch(
+                userId + "\nsessions", startTime.getTime() * NANOS_PER_MILLI, endTime.getTime() * NANOS_PER_MILLI,
+                NANOS_PER_MILLI, SESSION_OVERLAP_NANOS, true,
+                session -> session.getStartTimeMillis() * NANOS_PER_MILLI,
+                session -> session.getEndTimeMillis() * NANOS_PER_MILLI,
+                (start, end) -> fetchSessions(sessionsEndpoint(userId, new Date(start / NANOS_PER_MILLI),
+                                                               new Date(end / NANOS_PER_MILLI))), null);
+            return withFailureMessage(chunked, "Failed to get sessions");
+        }
+        return supplyAsync(() -> {
             try {
-                String endpoint = String.format("/api/fitness/v1/users/%s/sessions", userId);
-                
-                if (startTime != null || endTime != null) {
-                    List<String> params = new ArrayList<>();
-                    if (startTime != null) {
-                        params.add("startTime=" + (startTime.getTime() * 1000000));
-                    }
-                    if (endTime != null) {
-                        params.add("endTime=" + (endTime.getTime() * 1000000));
-                    }
-                    endpoint += "?" + String.join("&", params);
-                }
-                
-                String response = makeRequest(endpoint, "GET", null);
-                JSONObject json = new JSONObject(response);
-                JSONArray sessionsArray = json.getJSONArray("sessions");
-                
-                List<Session> sessions = new ArrayList<>();
-                for (int i = 0; i < sessionsArray.length(); i++) {
-                    sessions.add(Session.fromJson(sessionsArray.getJSONObject(i)));
-                }
-                return sessions;
+                return fetchSessions(sessionsEndpoint(userId, startTime, endTime));
             } catch (Exception e) {
                 throw new HealthyDuckException("Failed to get sessions", e);
             }
         });
     }
 
-    // Utility methods for common Android fitness scenarios
-    public CompletableFuture<Void> recordSteps(String userId, int steps, Date startTime, Date endTime) {
-        return CompletableFuture.runAsync(() -> {
+    /** Streaming variant of {@link #getSessions}; see {@link #streamDataPoints}. */
+    public CompletableFuture<Long> streamSessions(String userId, Date startTime, Date endTime,
+                                                  Consumer<Session> consumer) {
+        return supplyAsync(() -> {
             try {
-                // Create or get steps data source
-                DataSource stepsDataSource = createStepsDataSource();
-                createDataSource(userId, stepsDataSource).get();
-                
-                // Create data point
-                DataPoint stepsPoint = DataPoint.createStepsDataPoint(steps, startTime, endTime);
-                List<DataPoint> points = Arrays.asList(stepsPoint);
-                
-                // Insert data
-                String datasetId = String.format("%d-%d", startTime.getTime() * 1000000, endTime.getTime() * 1000000);
-                insertDataPoints(userId, stepsDataSource.getDataStreamId(), datasetId, points).get();
+                String endpoint = sessionsEndpoint(userId, startTime, endTime);
+                return streamArray(endpoint, json -> consumer.accept(Session.fromJson(json)),
+                                   "session", "sessions");
             } catch (Exception e) {
-                throw new HealthyDuckException("Failed to record steps", e);
+                throw new HealthyDuckException("Failed to stream sessions", e);
             }
         });
     }
 
+    /** Paged variant of {@link #getSessions}; see {@link #iterateDataPoints}. */
+    public PagedIterator<Session> iterateSessions(String userId, Date startTime, Date endTime,
+                                                  PageOptions options) {
+        String endpoint = sessionsEndpoint(userId, startTime, endTime);
+        return new PagedIterator<>(
+            pageToken -> fetchPage(endpoint, pageToken, options.getPageSize(), Session::fromJson,
+                                   "session", "sessions"),
+            executor, options.getPrefetchDepth());
+    }
+
+    /** Reactive Streams variant of {@link #getSessions}; see {@link #publishDataPoints}. */
+    public Flow.Publisher<Session> publishSessions(String userId, Date startTime, Date endTime) {
+        String endpoint = sessionsEndpoint(userId, startTime, endTime);
+        return new ResponseElementPublisher<>(() -> openResponse(endpoint, "GET", null), Session::fromJson,
+                                              new String[] {"session", "sessions"}, executor,
+                                              "Failed to stream sessions");
+    }
+
+    // Utility methods for common Android fitness scenarios
+    public CompletableFuture<Void> recordSteps(String userId, int steps, Date startTime, Date endTime) {
+        try {
+            // Registered once per user; later calls skip the POST
+            DataSource stepsDataSource = createStepsDataSource();
+
+            // Create data point
+            DataPoint stepsPoint = DataPoint.createStepsDataPoint(steps, startTime, endTime);
+            List<DataPoint> points = Arrays.asList(stepsPoint);
+            String datasetId = startTime.getTime() * NANOS_PER_MILLI + "-" + endTime.getTime() * NANOS_PER_MILLI;
+
+            // Chain the calls instead of blocking a pool thread on each one
+            CompletableFuture<Void> result = dataSourceRegistry.ensureRegistered(userId, stepsDataSource)
+                .thenCompose(created -> insertDataPoints(userId, stepsDataSource.getDataStreamId(), datasetId, points));
+            return withFailureMessage(result, "Failed to record steps");
+        } catch (RuntimeException e) {
+            return failedFuture(new HealthyDuckException("Failed to record steps", e));
+        }
+    }
+
     public CompletableFuture<Void> recordWorkout(String userId, String workoutName, int activityType, 
                                                 Date startTime, Date endTime, double calories) {
-        return CompletableFuture.runAsync(() -> {
-            try {
-                // Create session
-                Session session = new Session();
-                session.setName(workoutName);
-                session.setStartTimeMillis(startTime.getTime());
-                session.setEndTimeMillis(endTime.getTime());
-                session.setActivityType(activityType);
-                session.setApplication(createDefaultApplication());
-                
-                createSession(userId, session).get();
-                
-                // Record calories if provided
-                if (calories > 0) {
-                    DataSource caloriesDataSource = createCaloriesDataSource();
-                    createDataSource(userId, caloriesDataSource).get();
-                    
-                    DataPoint caloriesPoint = DataPoint.createCaloriesDataPoint(calories, startTime, endTime);
-                    List<DataPoint> points = Arrays.asList(caloriesPoint);
-                    
-                    String datasetId = String.format("%d-%d", startTime.getTime() * 1000000, endTime.getTime() * 1000000);
-                    insertDataPoints(userId, caloriesDataSource.getDataStreamId(), datasetId, points).get();
-                }
-            } catch (Exception e) {
-                throw new HealthyDuckException("Failed to record workout", e);
+        try {
+            // Create session
+            Session session = new Session();
+            session.setName(workoutName);
+            session.setStartTimeMillis(startTime.getTime());
+            session.setEndTimeMillis(endTime.getTime());
+            session.setActivityType(activityType);
+            session.setApplication(createDefaultApplication());
+
+            CompletableFuture<Void> result = createSession(userId, session).thenApply(created -> null);
+
+            // Record calories if provided
+            if (calories > 0) {
+                DataSource caloriesDataSource = createCaloriesDataSource();
+                DataPoint caloriesPoint = DataPoint.createCaloriesDataPoint(calories, startTime, endTime);
+                List<DataPoint> points = Arrays.asList(caloriesPoint);
+                String datasetId = startTime.getTime() * NANOS_PER_MILLI + "-" + endTime.getTime() * NANOS_PER_MILLI;
+
+                result = result
+                    .thenCompose(ignored -> dataSourceRegistry.ensureRegistered(userId, caloriesDataSource))
+                    .thenCompose(created -> insertDataPoints(userId, caloriesDataSource.getDataStreamId(), datasetId, points));
             }
-        });
+            return withFailureMessage(result, "Failed to record workout");
+        } catch (RuntimeException e) {
+            return failedFuture(new HealthyDuckException("Failed to record workout", e));
+        }
     }
 
     // Helper methods
-    private String makeRequest(String endpoint, String method, String body) throws IOException {
-        URL url = new URL(baseUrl + endpoint);
-        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-        
-        connection.setRequestMethod(method);
-        connection.setRequestProperty("Authorization", "Bearer " + accessToken);
-        connection.setRequestProperty("Content-Type", "application/json");
-        connection.setRequestProperty("User-Agent", "HealthyDuck-Android-Client/1.0");
-        connection.setConnectTimeout(TIMEOUT_MS);
-        connection.setReadTimeout(TIMEOUT_MS);
+    /** The sessions endpoint filters on {@code start_time_millis}/{@code end_time_millis}, so times go as millis. */
+    private static String sessionsEndpoint(String userId, Date startTime, Date endTime) {
+        String endpoint = SESSIONS.expand(userId);
+        List<String> params = new ArrayList<>();
+        if (startTime != null) {
+            params.add("startTime=" + startTime.getTime());
+        }
+        if (endTime != null) {
+            params.add("endTime=" + endTime.getTime());
+        }
+        if (!params.isEmpty()) {
+            endpoint += "?" + String.join("&", params);
+        }
+        return endpoint;
+    }
+
+    private List<Session> fetchSessions(String endpoint) throws IOException, JSONException {
+        String response = makeRequest(endpoint, "GET", null);
+        JSONObject json = new JSONObject(response);
+        // The server names the array "session"; older builds used "sessions"
+        JSONArray sessionsArray = json.has("session") ? json.getJSONArray("session")
+                                                      : json.getJSONArray("sessions");
         
-        if (body != null && !body.isEmpty()) {
-            connection.setDoOutput(true);
-            try (OutputStream os = connection.getOutputStream()) {
-                byte[] input = body.getBytes("utf-8");
-                os.write(input, 0, input.length);
+        List<Session> sessions = new ArrayList<>();
+        for (int i = 0; i < sessionsArray.length(); i++) {
+            sessions.add(Session.fromJson(sessionsArray.getJSONObject(i)));
+        }
+        return sessions;
+    }
+
+    private String makeRequest(String endpoint, String method, String body) throws IOException {
+        try (HttpTransport.Response response = openResponse(endpoint, method, body)) {
+            return response.readBodyAsString();
+        }
+    }
+
+    /** Sends the request and returns the still-open response; HTTP errors are thrown here. */
+    private HttpTransport.Response openResponse(String endpoint, String method, String body) throws IOException {
+        byte[] payload = body != null && !body.isEmpty() ? body.getBytes(StandardCharsets.UTF_8) : null;
+        return openResponse(endpoint, method, payload, "application/json", null);
+    }
+
+    private HttpTransport.Response openResponse(String endpoint, String method, byte[] payload,
+                                                String contentType, String accept) throws IOException {
+        return openResponse(endpoint, method, payload, contentType, accept, 0);
+    }
+
+    /** {@code timeoutMillis} of 0 leaves the timeout to the {@link RequestPolicy}. */
+    private HttpTransport.Response openResponse(String endpoint, String method, byte[] payload,
+                                                String contentType, String accept, int timeoutMillis)
+            throws IOException {
+        HttpTransport.Request request = new HttpTransport.Request(method, baseUrl + endpoint, payload)
+            .setTimeoutMillis(timeoutMillis);
+        return send(endpoint, request, contentType, accept);
+    }
+
+    /** Streams {@code body} to the server, e.g. a {@link PooledBody}, instead of sending one array. */
+    private HttpTransport.Response openResponse(String endpoint, String method, HttpTransport.StreamingBody body,
+                                                String contentType) throws IOException {
+        return send(endpoint, new HttpTransport.Request(method, baseUrl + endpoint, body), contentType, null);
+    }
+
+    private HttpTransport.Response send(String endpoint, HttpTransport.Request request, String contentType,
+                                        String accept) throws IOException {
+        request.setHeader("Authorization", "Bearer " + accessToken)
+            .setHeader("Content-Type", contentType)
+            .setHeader("User-Agent", "HealthyDuck-Android-Client/1.0");
+        if (accept != null) {
+            request.setHeader("Accept", accept);
+        }
+
+        long start = System.nanoTime();
+        HttpTransport.Response response = transport.execute(request);
+        int responseCode = response.getStatusCode();
+        if (responseCode >= 400) {
+            try {
+                long elapsedMillis = (System.nanoTime() - start) / 1000000;
+                throw new HealthyDuckException("HTTP " + responseCode + " from " + request.getMethod() + " " + endpoint
+                    + " after " + elapsedMillis + " ms: " + response.readBodyAsString(), responseCode);
+            } finally {
+                response.close();
             }
         }
-        
-        int responseCode = connection.getResponseCode();
-        InputStream inputStream = responseCode >= 200 && responseCode < 300 
-            ? connection.getInputStream() 
-            : connection.getErrorStream();
-            
-        StringBuilder response = new StringBuilder();
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, "utf-8"))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                response.append(line);
+        return response;
+    }
+
+    /** GETs {@code endpoint} and feeds each element of the first matching array field to {@code handler}. */
+    private long streamArray(String endpoint, ElementHandler handler, String... arrayFields) throws Exception {
+        try (HttpTransport.Response response = openResponse(endpoint, "GET", null);
+             JsonArrayStreamReader elements = new JsonArrayStreamReader(response.getBody(), arrayFields)) {
+            long count = 0;
+            while (elements.hasNext()) {
+                handler.accept(elements.next());
+                count++;
             }
+            return count;
         }
-        
-        if (responseCode >= 400) {
-            throw new HealthyDuckException("HTTP " + responseCode + ": " + response.toString());
+    }
+
+    /** Blocking body of {@link #insertDataPoints}; also used when draining the offline queue. */
+    void sendDataPoints(String userId, String dataSourceId, String datasetId, List<DataPoint> dataPoints)
+            throws IOException, JSONException {
+        String endpoint = DATASET.expand(userId, dataSourceId, datasetId);
+
+        // Bodies are encoded into pooled chunks and streamed; large batches never exist as one array
+        if (binaryDataPoints) {
+            DataPointColumns.Builder columns = new DataPointColumns.Builder(dataPoints.size());
+            for (DataPoint point : dataPoints) {
+                columns.add(point);
+            }
+            PooledBody body = new PooledBody(ByteChunkPool.shared());
+            try {
+                DataPointWireFormat.encode(columns.build(), true, body);
+                openResponse(endpoint, "PATCH", body, DataPointWireFormat.CONTENT_TYPE).close();
+                invalidateCachedRange(userId, dataSourceId, datasetId, dataPoints);
+                storeLocally(userId, dataSourceId, dataPoints);
+                return;
+            } catch (HealthyDuckException e) {
+                if (e.getStatusCode() != 415) {
+                    throw e;
+                }
+                // Server predates the binary format
+                binaryDataPoints = false;
+            } finally {
+                body.release();
+            }
         }
+
+        PooledBody body = new PooledBody(ByteChunkPool.shared());
+        try {
+            DataPointJsonWriter.write(dataPoints, body);
+            openResponse(endpoint, "PATCH", body, "application/json").close();
+        } finally {
+            body.release();
+        }
+        invalidateCachedRange(userId, dataSourceId, datasetId, dataPoints);
+        storeLocally(userId, dataSourceId, dataPoints);
+    }
+
+    /**
+     * One request to the change feed: points modified after {@code cursor} (null for all),
+     * held open by the server for up to {@code waitMillis} when there are none.
+     */
+    ChangeBatch fetchChanges(String userId, String dataSourceId, String cursor, int pageSize, int waitMillis)
+            throws Exception {
+        StringBuilder endpoint = new StringBuilder(CHANGES.expand(userId, dataSourceId))
+            .append("?limit=").append(pageSize)
+            .append("&waitMillis=").append(waitMillis);
+        if (cursor != null) {
+            endpoint.append("&cursor=").append(URLEncoder.encode(cursor, "UTF-8"));
+        }
+        int timeout = waitMillis > 0 ? waitMillis + LONG_POLL_MARGIN_MS : 0;
+        try (HttpTransport.Response response = openResponse(endpoint.toString(), "GET", null,
+                                                            "application/json", null, timeout);
+             JsonArrayStreamReader elements = new JsonArrayStreamReader(response.getBody(), "point")) {
+            List<DataPoint> points = new ArrayList<>();
+            while (elements.hasNext()) {
+                points.add(DataPoint.fromJson(elements.next()));
+            }
+            Object next = elements.getField("cursor");
+            Object hasMore = elements.getField("hasMore");
+            // Points written by other devices make cached ranges stale too
+            invalidateCachedRange(userId, dataSourceId, "", points);
+            storeLocally(userId, dataSourceId, points);
+            return new ChangeBatch(userId, dataSourceId, points,
+                                   next instanceof String && !((String) next).isEmpty() ? (String) next : cursor,
+                                   Boolean.TRUE.equals(hasMore));
+        }
+    }
+
+    /** Blocking body of {@link #createSession}. */
+    Session sendSession(String userId, Session session) throws IOException, JSONException {
+        String endpoint = SESSIONS.expand(userId);
+        JSONObject json = session.toJson();
+        String response = makeRequest(endpoint, "POST", json.toString());
+        return Session.fromJson(new JSONObject(response));
+    }
+
+    private List<DataPoint> fetchDataPoints(String userId, String dataSourceId, String datasetId)
+            throws IOException, JSONException {
+        String endpoint = DATASET.expand(userId, dataSourceId, datasetId);
+        if (binaryDataPoints) {
+            DataPointColumns columns = fetchColumns(endpoint);
+            storeLocally(userId, dataSourceId, columns);
+            List<DataPoint> dataPoints = new ArrayList<>(columns.size());
+            for (int row = 0; row < columns.size(); row++) {
+                dataPoints.add(columns.toDataPoint(row));
+            }
+            return dataPoints;
+        }
+        String response = makeRequest(endpoint, "GET", null);
+        JSONObject json = new JSONObject(response);
+        // The server names the array "point"; older builds used "dataPoints"
+        JSONArray pointsArray = json.has("point") ? json.getJSONArray("point") : json.getJSONArray("dataPoints");
         
-        return response.toString();
+        List<DataPoint> dataPoints = new ArrayList<>();
+        for (int i = 0; i < pointsArray.length(); i++) {
+            dataPoints.add(DataPoint.fromJson(pointsArray.getJSONObject(i)));
+        }
+        storeLocally(userId, dataSourceId, dataPoints);
+        return dataPoints;
+    }
+
+    /**
+     * Mirrors points into the local store, if one is open. Best effort: the server stays
+     * the source of truth, and a failed local write must not fail the call that fed it.
+     */
+    void storeLocally(String userId, String dataSourceId, List<DataPoint> points) {
+        LocalTimeSeriesStore store = localStore;
+        if (store != null && !points.isEmpty()) {
+            try {
+                store.put(userId, dataSourceId, points);
+            } catch (IOException e) {
+                // Re-read from the server next time
+            }
+        }
+    }
+
+    private void storeLocally(String userId, String dataSourceId, DataPointColumns points) {
+        LocalTimeSeriesStore store = localStore;
+        if (store != null && points.size() > 0) {
+            try {
+                store.put(userId, dataSourceId, points);
+            } catch (IOException e) {
+                // Re-read from the server next time
+            }
+        }
+    }
+
+    /** GETs a dataset into columns, as binary when enabled and offered by the server, else as JSON. */
+    private DataPointColumns fetchColumns(String endpoint) throws IOException, JSONException {
+        String accept = binaryDataPoints ? DataPointWireFormat.CONTENT_TYPE + ", application/json;q=0.5" : null;
+        try (HttpTransport.Response response = openResponse(endpoint, "GET", null, "application/json", accept)) {
+            if (DataPointWireFormat.isBinary(response.getContentType())) {
+                return DataPointWireFormat.decode(response.getBody());
+            }
+            DataPointColumns.Builder columns = new DataPointColumns.Builder(1024);
+            try (JsonArrayStreamReader elements = new JsonArrayStreamReader(response.getBody(), "point", "dataPoints")) {
+                while (elements.hasNext()) {
+                    columns.add(elements.next());
+                }
+            }
+            return columns.build();
+        }
+    }
+
+    /** Dataset IDs are {@code startTimeNanos-endTimeNanos}; returns null when unparseable. */
+    private static long[] parseDatasetId(String datasetId) {
+        int dash = datasetId.indexOf('-', 1);
+        if (dash < 0) {
+            return null;
+        }
+        try {
+            return new long[] {
+                Long.parseLong(datasetId.substring(0, dash)),
+                Long.parseLong(datasetId.substring(dash + 1))
+            };
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private void invalidateCachedRange(String userId, String dataSourceId, String datasetId,
+                                       List<DataPoint> dataPoints) {
+        DataPointCache cache = dataPointCache;
+        if (cache == null) {
+            return;
+        }
+        long[] range = parseDatasetId(datasetId);
+        long start = range != null ? range[0] : Long.MAX_VALUE;
+        long end = range != null ? range[1] : Long.MIN_VALUE;
+        for (DataPoint point : dataPoints) {
+            start = Math.min(start, point.getStartTimeNanos());
+            end = Math.max(end, point.getEndTimeNanos());
+        }
+        if (start <= end) {
+            cache.invalidate(userId, dataSourceId, start, end);
+        }
+    }
+
+    private <T> PagedIterator.Page<T> fetchPage(String endpoint, String pageToken, int pageSize,
+                                                ElementMapper<T> mapper, String... arrayFields)
+            throws Exception {
+        StringBuilder url = new StringBuilder(endpoint)
+            .append(endpoint.indexOf('?') >= 0 ? '&' : '?')
+            .append("limit=").append(pageSize);
+        if (pageToken != null) {
+            url.append("&pageToken=").append(URLEncoder.encode(pageToken, "UTF-8"));
+        }
+        try (HttpTransport.Response response = openResponse(url.toString(), "GET", null);
+             JsonArrayStreamReader elements = new JsonArrayStreamReader(response.getBody(), arrayFields)) {
+            List<T> items = new ArrayList<>(pageSize);
+            while (elements.hasNext()) {
+                items.add(mapper.apply(elements.next()));
+            }
+            Object next = elements.getField("nextPageToken");
+            return new PagedIterator.Page<>(items, next instanceof String ? (String) next : null);
+        }
+    }
+
+    private static <T> CompletableFuture<T> withFailureMessage(CompletableFuture<T> future, String message) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        future.whenComplete((value, error) -> {
+            if (error == null) {
+                result.complete(value);
+            } else {
+                result.completeExceptionally(new HealthyDuckException(message, unwrap(error)));
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Runs {@code task} on the client's executor. An executor that refuses the task fails
+     * the returned future rather than throwing at the call site or running it on the caller.
+     */
+    private <T> CompletableFuture<T> supplyAsync(Supplier<T> task) {
+        try {
+            return CompletableFuture.supplyAsync(task, executor);
+        } catch (RejectedExecutionException e) {
+            return failedFuture(new HealthyDuckException("Client executor rejected the request", e));
+        }
+    }
+
+    private CompletableFuture<Void> runAsync(Runnable task) {
+        return supplyAsync(() -> {
+            task.run();
+            return null;
+        });
+    }
+
+    private static <T> CompletableFuture<T> failedFuture(Throwable error) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(error);
+        return future;
+    }
+
+    static Throwable unwrap(Throwable error) {
+        while ((error instanceof CompletionException || error instanceof ExecutionException)
+               && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error;
     }
 
     private DataSource createStepsDataSource() {
@@ -265,24 +926,61 @@ public class HealthyDuckClient {
         return dataSource;
     }
 
+    private static String packageNameOf(Context context) {
+        return context != null ? context.getPackageName() : null;
+    }
+
     private Application createDefaultApplication() {
         Application app = new Application();
-        app.setPackageName(context.getPackageName());
+        app.setPackageName(packageName);
         app.setVersion("1.0");
         app.setName("HealthyDuck Android Client");
         return app;
     }
 
+    @Override
+    public void close() throws IOException {
+        try {
+            closeLocalStore();
+        } finally {
+            if (ownsTransport) {
+                transport.close();
+            }
+        }
+    }
+
+    /** Receives one parsed array element; model {@code fromJson} methods may throw. */
+    private interface ElementHandler {
+        void accept(JSONObject element) throws Exception;
+    }
+
+    private interface ElementMapper<T> {
+        T apply(JSONObject element) throws Exception;
+    }
+
     // Data model classes would be defined here...
     // (DataSource, DataPoint, Session, etc. with toJson/fromJson methods)
 }
 
 class HealthyDuckException extends RuntimeException {
+    private final int statusCode;
+
     public HealthyDuckException(String message) {
+        this(message, 0);
+    }
+    
+    public HealthyDuckException(String message, int statusCode) {
         super(message);
+        this.statusCode = statusCode;
     }
     
     public HealthyDuckException(String message, Throwable cause) {
         super(message, cause);
+        this.statusCode = cause instanceof HealthyDuckException ? ((HealthyDuckException) cause).statusCode : 0;
+    }
+
+    /** HTTP status of the failed call, or 0 when the request never got a response. */
+    public int getStatusCode() {
+        return statusCode;
     }
 }
@@ -0,0 +1,48 @@
+package com.ultimatequack.healthyduck.client;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Caps the number of concurrent requests per host (scheme + authority).
+ */
+class HostConnectionLimiter {
+    private final int permitsPerHost;
+    private final ConcurrentMap<String, Semaphore> hosts = new ConcurrentHashMap<>();
+
+    HostConnectionLimiter(int permitsPerHost) {
+        this.permitsPerHost = permitsPerHost;
+    }
+
+    /** Blocks until a slot for the URL's host is free; closing the result frees it again. */
+    Closeable acquire(String url) throws IOException {
+        Semaphore semaphore = hosts.computeIfAbsent(hostKey(url), k -> new Semaphore(permitsPerHost, true));
+        try {
+            semaphore.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for a connection to " + url);
+        }
+        return new Closeable() {
+            private boolean released;
+
+            @Override
+            public synchronized void close() {
+                if (!released) {
+                    released = true;
+                    semaphore.release();
+                }
+            }
+        };
+    }
+
+    private static String hostKey(String url) {
+        URI uri = URI.create(url);
+        return uri.getScheme() + "://" + uri.getRawAuthority();
+    }
+}
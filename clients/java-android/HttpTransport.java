@@ -0,0 +1,165 @@
+package com.ultimatequack.healthyduck.client;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Pluggable HTTP engine used by {@link HealthyDuckClient}.
+ * Implementations are expected to be thread-safe and to reuse connections between calls.
+ */
+public interface HttpTransport extends Closeable {
+
+    /**
+     * Executes a request. The returned response must be closed so the underlying
+     * connection can go back to the pool.
+     */
+    Response execute(Request request) throws IOException;
+
+    /**
+     * Picks the best engine available on this runtime: {@code java.net.http.HttpClient}
+     * (HTTP/2 capable) on desktop/server JVMs, pooled {@code HttpURLConnection} on Android.
+     */
+    static HttpTransport createDefault(TransportOptions options) {
+        if (options.isPreferHttp2() && JdkHttpClientTransport.isSupported()) {
+            return new JdkHttpClientTransport(options);
+        }
+        return new UrlConnectionTransport(options);
+    }
+
+    /**
+     * Request body written straight to the connection instead of being held as one array.
+     * A retried request sends it again, so every call must produce the same bytes.
+     */
+    interface StreamingBody {
+        /** Exact length in bytes, or -1 to send the body with chunked transfer encoding. */
+        long contentLength();
+
+        void writeTo(OutputStream out) throws IOException;
+
+        /** The same bytes for engines that pull the body; closing the stream ends the read. */
+        InputStream openStream() throws IOException;
+    }
+
+    final class Request {
+        private final String method;
+        private final String url;
+        private final byte[] body;
+        private final StreamingBody streamingBody;
+        private final Map<String, String> headers = new LinkedHashMap<>();
+        private int timeoutMillis;
+
+        public Request(String method, String url, byte[] body) {
+            this(method, url, body, null);
+        }
+
+        public Request(String method, String url, StreamingBody body) {
+            this(method, url, null, body);
+        }
+
+        private Request(String method, String url, byte[] body, StreamingBody streamingBody) {
+            this.method = method;
+            this.url = url;
+            this.body = body;
+            this.streamingBody = streamingBody;
+        }
+
+        public String getMethod() { return method; }
+        public String getUrl() { return url; }
+
+        /**
+         * The body as one array, or null when there is none. A streaming body is copied into
+         * a new array here, so engines that can stream should check {@link #getStreamingBody()} first.
+         */
+        public byte[] getBody() {
+            if (streamingBody == null) {
+                return body;
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try {
+                streamingBody.writeTo(out);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return out.toByteArray();
+        }
+
+        /** Non-null when the body should be streamed to the connection. */
+        public StreamingBody getStreamingBody() { return streamingBody; }
+
+        /** Body length in bytes: 0 without a body, -1 for a chunked streaming body. */
+        public long getContentLength() {
+            if (streamingBody != null) {
+                return streamingBody.contentLength();
+            }
+            return body != null ? body.length : 0;
+        }
+
+        public Map<String, String> getHeaders() { return headers; }
+        public int getTimeoutMillis() { return timeoutMillis; }
+
+        public Request setHeader(String name, String value) {
+            headers.put(name, value);
+            return this;
+        }
+
+        public Request setTimeoutMillis(int timeoutMillis) {
+            this.timeoutMillis = timeoutMillis;
+            return this;
+        }
+
+        /** Copy with the same method, URL, body and headers but another timeout. */
+        public Request withTimeoutMillis(int timeoutMillis) {
+            Request copy = new Request(method, url, body, streamingBody).setTimeoutMillis(timeoutMillis);
+            copy.headers.putAll(headers);
+            return copy;
+        }
+    }
+
+    final class Response implements Closeable {
+        private final int statusCode;
+        private final String contentType;
+        private final InputStream body;
+        private final Closeable onClose;
+
+        public Response(int statusCode, InputStream body, Closeable onClose) {
+            this(statusCode, null, body, onClose);
+        }
+
+        public Response(int statusCode, String contentType, InputStream body, Closeable onClose) {
+            this.statusCode = statusCode;
+            this.contentType = contentType;
+            this.body = body;
+            this.onClose = onClose;
+        }
+
+        public int getStatusCode() { return statusCode; }
+
+        /** Value of the {@code Content-Type} header, or null when absent. */
+        public String getContentType() { return contentType; }
+
+        /** Raw response stream; may be empty but never null. */
+        public InputStream getBody() { return body; }
+
+        public String readBodyAsString() throws IOException {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = body.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public void close() throws IOException {
+            onClose.close();
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package com.ultimatequack.healthyduck.client;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Incremental sync over the server's change feed. Each (user, data source) has a cursor,
+ * a high-water mark on the points' modification time, and every poll returns only what
+ * changed after it. When nothing has changed the server holds the request open for
+ * {@link SyncOptions#getLongPollMillis()}, so a subscription sees new points without
+ * re-reading any history. The server holds each change back for 30 seconds after it is
+ * stamped, so a slow write that commits late is not skipped. New points therefore reach a
+ * subscription about 30 seconds after they are written.
+ *
+ * <p>Cursors start empty, which replays the whole stream once. With a persistence file
+ * they survive process restarts.
+ */
+public class IncrementalSync implements Closeable {
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+    private final HealthyDuckClient client;
+    private final SyncOptions options;
+    private final Executor executor;
+    private final Map<String, String> cursors = new ConcurrentHashMap<>();
+    private final Set<Subscription> subscriptions = ConcurrentHashMap.newKeySet();
+    private volatile File persistenceFile;
+
+    IncrementalSync(HealthyDuckClient client, SyncOptions options, Executor executor) {
+        this.client = client;
+        this.options = options;
+        this.executor = executor;
+    }
+
+    /** Current high-water mark for the stream, or null when it has never been synced. */
+    public String getCursor(String userId, String dataSourceId) {
+        return cursors.get(key(userId, dataSourceId));
+    }
+
+    /** Restores a cursor from {@link ChangeBatch#getCursor()}; null syncs from the beginning again. */
+    public void setCursor(String userId, String dataSourceId, String cursor) {
+        if (cursor == null) {
+            cursors.remove(key(userId, dataSourceId));
+        } else {
+            cursors.put(key(userId, dataSourceId), cursor);
+        }
+        save();
+    }
+
+    /**
+     * Fetches the changes since the stream's cursor and advances it, waiting up to the
+     * long-poll time for the first change. Completes with an empty batch when none arrived.
+     */
+    public CompletableFuture<ChangeBatch> pollChanges(String userId, String dataSourceId) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                String cursor = getCursor(userId, dataSourceId);
+                ChangeBatch batch = client.fetchChanges(userId, dataSourceId, cursor,
+                                                        options.getPageSize(), options.getLongPollMillis());
+                advance(userId, dataSourceId, cursor, batch.getCursor());
+                return batch;
+            } catch (Exception e) {
+                throw new HealthyDuckException("Failed to poll changes", e);
+            }
+        }, executor);
+    }
+
+    /**
+     * Keeps polling the stream on a background thread and hands each non-empty batch to
+     * {@code onChanges}. The cursor only moves once {@code onChanges} returns, so a batch
+     * whose handler throws is delivered again (at-least-once). Failures go to
+     * {@code onError}, which may be null, and are retried with backoff; a 4xx other than
+     * 408 or 429 ends the subscription.
+     *
+     * <p>Closing the returned handle stops the subscription; a poll already waiting on the
+     * server may take until the end of its long poll to notice.
+     */
+    public Closeable subscribe(String userId, String dataSourceId, Consumer<ChangeBatch> onChanges,
+                               Consumer<Throwable> onError) {
+        Subscription subscription = new Subscription(userId, dataSourceId, onChanges, onError);
+        subscriptions.add(subscription);
+        subscription.thread.start();
+        return subscription;
+    }
+
+    /**
+     * Loads saved cursors from {@code file} and keeps it updated from now on. A missing or
+     * unreadable file starts every stream from the beginning.
+     */
+    public void setPersistenceFile(File file) {
+        if (file != null && file.isFile()) {
+            try (InputStream in = new FileInputStream(file)) {
+                ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+                byte[] chunk = new byte[8192];
+                int read;
+                while ((read = in.read(chunk)) != -1) {
+                    buffer.write(chunk, 0, read);
+                }
+                JSONObject json = new JSONObject(new String(buffer.toByteArray(), StandardCharsets.UTF_8));
+                JSONArray users = json.names();
+                for (int u = 0; users != null && u < users.length(); u++) {
+                    String userId = users.getString(u);
+                    JSONObject streams = json.getJSONObject(userId);
+                    JSONArray ids = streams.names();
+                    for (int i = 0; ids != null && i < ids.length(); i++) {
+                        String dataSourceId = ids.getString(i);
+                        cursors.putIfAbsent(key(userId, dataSourceId), streams.getString(dataSourceId));
+                    }
+                }
+            } catch (Exception e) {
+                // A lost cursor only costs one full replay of the stream
+            }
+        }
+        this.persistenceFile = file;
+    }
+
+    /** Stops all subscriptions. */
+    @Override
+    public void close() {
+        for (Subscription subscription : subscriptions) {
+            subscription.close();
+        }
+    }
+
+    /** Moves the cursor unless another poll or {@link #setCursor} changed it in the meantime. */
+    private void advance(String userId, String dataSourceId, String from, String to) {
+        if (to == null || to.equals(from)) {
+            return;
+        }
+        String key = key(userId, dataSourceId);
+        boolean moved = from == null ? cursors.putIfAbsent(key, to) == null : cursors.replace(key, from, to);
+        if (moved) {
+            save();
+        }
+    }
+
+    private synchronized void save() {
+        File file = persistenceFile;
+        if (file == null) {
+            return;
+        }
+        try {
+            JSONObject json = new JSONObject();
+            for (Map.Entry<String, String> entry : cursors.entrySet()) {
+                int split = entry.getKey().indexOf('\n');
+                String userId = entry.getKey().substring(0, split);
+                JSONObject streams = json.optJSONObject(userId);
+                if (streams == null) {
+                    streams = new JSONObject();
+                    json.put(userId, streams);
+                }
+                streams.put(entry.getKey().substring(split + 1), entry.getValue());
+            }
+            File temp = new File(file.getPath() + ".tmp");
+            try (OutputStream out = new FileOutputStream(temp)) {
+                out.write(json.toString().getBytes(StandardCharsets.UTF_8));
+            }
+            if (!temp.renameTo(file) && (!file.delete() || !temp.renameTo(file))) {
+                temp.delete();
+            }
+        } catch (Exception e) {
+            // Persistence is best effort; the in-memory cursors stay authoritative
+        }
+    }
+
+    private static String key(String userId, String dataSourceId) {
+        return userId + '\n' + dataSourceId;
+    }
+
+    private static boolean isPermanent(Throwable error) {
+        int status = error instanceof HealthyDuckException ? ((HealthyDuckException) error).getStatusCode() : 0;
+        return status >= 400 && status < 500 && status != 408 && status != 429;
+    }
+
+    private final class Subscription implements Closeable, Runnable {
+        private final String userId;
+        private final String dataSourceId;
+        private final Consumer<ChangeBatch> onChanges;
+        private final Consumer<Throwable> onError;
+        private final Thread thread;
+        private volatile boolean closed;
+
+        Subscription(String userId, String dataSourceId, Consumer<ChangeBatch> onChanges,
+                     Consumer<Throwable> onError) {
+            this.userId = userId;
+            this.dataSourceId = dataSourceId;
+            this.onChanges = onChanges;
+            this.onError = onError;
+            // A long poll parks its thread for most of its life, so it gets its own rather than a pool slot
+            this.thread = new Thread(this, "healthyduck-sync-" + THREAD_COUNTER.incrementAndGet());
+            this.thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            int failures = 0;
+            boolean caughtUp = false;
+            while (!closed) {
+                try {
+                    String cursor = getCursor(userId, dataSourceId);
+                    // Drain a backlog page by page without waiting, then settle into long polls
+                    int wait = caughtUp ? options.getLongPollMillis() : 0;
+                    ChangeBatch batch = client.fetchChanges(userId, dataSourceId, cursor,
+                                                            options.getPageSize(), wait);
+                    if (closed) {
+                        return;
+                    }
+                    if (!batch.isEmpty()) {
+                        onChanges.accept(batch);
+                    }
+                    advance(userId, dataSourceId, cursor, batch.getCursor());
+                    caughtUp = !batch.hasMore();
+                    failures = 0;
+                } catch (Exception e) {
+                    if (closed) {
+                        return;
+                    }
+                    Throwable error = e instanceof HealthyDuckException ? e
+                        : new HealthyDuckException("Failed to poll changes", e);
+                    if (onError != null) {
+                        onError.accept(error);
+                    }
+                    if (isPermanent(error)) {
+                        close();
+                        return;
+                    }
+                    failures++;
+                    if (!sleep(backoffMillis(failures))) {
+                        return;
+                    }
+                }
+            }
+        }
+
+        private long backoffMillis(int failures) {
+            long delay = (long) options.getErrorBackoffMillis() << Math.min(failures - 1, 20);
+            return Math.min(delay, options.getMaxErrorBackoffMillis());
+        }
+
+        private boolean sleep(long millis) {
+            try {
+                Thread.sleep(millis);
+                return !closed;
+            } catch (InterruptedException e) {
+                return false;
+            }
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            subscriptions.remove(this);
+            if (Thread.currentThread() != thread) {
+                thread.interrupt();
+            }
+        }
+    }
+}
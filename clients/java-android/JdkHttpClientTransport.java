@@ -0,0 +1,106 @@
+package com.ultimatequack.healthyduck.client;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * {@code java.net.http.HttpClient} engine with a shared connection pool and HTTP/2
+ * multiplexing (falls back to HTTP/1.1 keep-alive when the server does not speak h2).
+ * Not available on Android; {@link HttpTransport#createDefault} only picks it when
+ * {@link #isSupported()} is true.
+ */
+public class JdkHttpClientTransport implements HttpTransport {
+    private final HttpClient httpClient;
+    private final HostConnectionLimiter limiter;
+
+    public JdkHttpClientTransport(TransportOptions options) {
+        this.httpClient = HttpClient.newBuilder()
+            .version(options.isPreferHttp2() ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofMillis(options.getConnectTimeoutMillis()))
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .build();
+        this.limiter = new HostConnectionLimiter(options.getMaxConnectionsPerHost());
+    }
+
+    static boolean isSupported() {
+        try {
+            Class.forName("java.net.http.HttpClient");
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    @Override
+    public Response execute(Request request) throws IOException {
+        HttpRequest.BodyPublisher publisher = publisherFor(request);
+
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(request.getUrl()))
+            .method(request.getMethod(), publisher);
+        if (request.getTimeoutMillis() > 0) {
+            builder.timeout(Duration.ofMillis(request.getTimeoutMillis()));
+        }
+        for (Map.Entry<String, String> header : request.getHeaders().entrySet()) {
+            builder.header(header.getKey(), header.getValue());
+        }
+
+        Closeable permit = limiter.acquire(request.getUrl());
+        try {
+            HttpResponse<InputStream> response = httpClient.send(builder.build(),
+                HttpResponse.BodyHandlers.ofInputStream());
+            InputStream responseBody = response.body();
+            String contentType = response.headers().firstValue("Content-Type").orElse(null);
+            return new Response(response.statusCode(), contentType, responseBody, () -> {
+                try {
+                    responseBody.close();
+                } finally {
+                    permit.close();
+                }
+            });
+        } catch (InterruptedException e) {
+            permit.close();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted calling " + request.getUrl());
+        } catch (IOException | RuntimeException e) {
+            permit.close();
+            throw e;
+        }
+    }
+
+    private static HttpRequest.BodyPublisher publisherFor(Request request) {
+        StreamingBody streaming = request.getStreamingBody();
+        if (streaming == null) {
+            byte[] body = request.getBody();
+            return body != null && body.length > 0
+                ? HttpRequest.BodyPublishers.ofByteArray(body)
+                : HttpRequest.BodyPublishers.noBody();
+        }
+        long length = streaming.contentLength();
+        if (length == 0) {
+            return HttpRequest.BodyPublishers.noBody();
+        }
+        HttpRequest.BodyPublisher stream = HttpRequest.BodyPublishers.ofInputStream(() -> {
+            try {
+                return streaming.openStream();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        // Without a length the client falls back to chunked transfer encoding
+        return length > 0 ? HttpRequest.BodyPublishers.fromPublisher(stream, length) : stream;
+    }
+
+    @Override
+    public void close() {
+        // HttpClient releases its pool when it becomes unreachable.
+    }
+}
@@ -0,0 +1,257 @@
+package com.ultimatequack.healthyduck.client;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Pulls the elements of one array field out of a JSON response object one at a time,
+ * e.g. {@code point} in a dataset or {@code session} in a session list. Only the current
+ * element is held in memory, so large responses are parsed with a flat heap profile.
+ *
+ * <p>Uses a small hand-rolled scanner rather than {@code JSONTokener(Reader)}, which the
+ * Android copy of {@code org.json} does not have. Scalar fields next to the array (such as
+ * {@code nextPageToken}) are kept and can be read with {@link #getField(String)} once the
+ * array has been consumed.
+ */
+class JsonArrayStreamReader implements Iterator<JSONObject>, Closeable {
+    private static final int NO_CHAR = -2;
+
+    private final Reader reader;
+    private final List<String> arrayFields;
+    private final Map<String, Object> fields = new HashMap<>();
+    private final StringBuilder element = new StringBuilder(256);
+    private int peeked = NO_CHAR;
+    private boolean inArray;
+    private boolean first;
+    private boolean done;
+    private JSONObject next;
+
+    JsonArrayStreamReader(InputStream in, String... arrayFields) throws IOException {
+        this.reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 16 * 1024);
+        this.arrayFields = Arrays.asList(arrayFields);
+        expect('{');
+        seekArray();
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null && !done) {
+            try {
+                next = readElement();
+            } catch (IOException e) {
+                throw new HealthyDuckException("Failed to read response stream", e);
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public JSONObject next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        JSONObject result = next;
+        next = null;
+        return result;
+    }
+
+    /** Top-level scalar field; only complete after {@link #hasNext()} has returned false. */
+    Object getField(String name) {
+        return fields.get(name);
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private JSONObject readElement() throws IOException {
+        while (true) {
+            if (!inArray) {
+                done = true;
+                return null;
+            }
+            int c = nextClean();
+            if (c == ']') {
+                inArray = false;
+                readRemainingFields();
+                continue;
+            }
+            if (!first) {
+                if (c != ',') {
+                    throw syntaxError("Expected ',' or ']'", c);
+                }
+                c = nextClean();
+            }
+            first = false;
+            if (c != '{') {
+                throw syntaxError("Expected array element object", c);
+            }
+            element.setLength(0);
+            captureValue(c, element);
+            try {
+                return new JSONObject(element.toString());
+            } catch (JSONException e) {
+                throw new IOException("Malformed array element", e);
+            }
+        }
+    }
+
+    /** Walks top-level members until one of the wanted arrays is opened. */
+    private void seekArray() throws IOException {
+        while (true) {
+            int c = nextClean();
+            if (c == '}') {
+                return;
+            }
+            if (c == ',') {
+                c = nextClean();
+            }
+            String key = readString(c);
+            expect(':');
+            c = nextClean();
+            if (arrayFields.contains(key) && c == '[') {
+                inArray = true;
+                first = true;
+                return;
+            }
+            keepField(key, c);
+        }
+    }
+
+    private void readRemainingFields() throws IOException {
+        while (true) {
+            int c = nextClean();
+            if (c == '}' || c == -1) {
+                return;
+            }
+            if (c != ',') {
+                throw syntaxError("Expected ',' or '}'", c);
+            }
+            String key = readString(nextClean());
+            expect(':');
+            keepField(key, nextClean());
+        }
+    }
+
+    private void keepField(String key, int firstChar) throws IOException {
+        StringBuilder raw = new StringBuilder();
+        captureValue(firstChar, raw);
+        if (firstChar != '{' && firstChar != '[') {
+            try {
+                fields.put(key, new JSONTokener(raw.toString()).nextValue());
+            } catch (JSONException e) {
+                throw new IOException("Malformed value for " + key, e);
+            }
+        }
+    }
+
+    /** Copies one complete JSON value, starting with {@code c}, into {@code out}. */
+    private void captureValue(int c, StringBuilder out) throws IOException {
+        if (c == '"') {
+            captureString(out);
+            return;
+        }
+        if (c != '{' && c != '[') {
+            out.append((char) c);
+            while (true) {
+                int n = read();
+                if (n == -1 || n == ',' || n == '}' || n == ']' || Character.isWhitespace(n)) {
+                    peeked = n;
+                    return;
+                }
+                out.append((char) n);
+            }
+        }
+        int depth = 0;
+        while (true) {
+            if (c == -1) {
+                throw new IOException("Unexpected end of response");
+            }
+            if (c == '"') {
+                captureString(out);
+            } else {
+                out.append((char) c);
+                if (c == '{' || c == '[') {
+                    depth++;
+                } else if (c == '}' || c == ']') {
+                    if (--depth == 0) {
+                        return;
+                    }
+                }
+            }
+            c = read();
+        }
+    }
+
+    private void captureString(StringBuilder out) throws IOException {
+        out.append('"');
+        while (true) {
+            int c = read();
+            if (c == -1) {
+                throw new IOException("Unterminated string");
+            }
+            out.append((char) c);
+            if (c == '\\') {
+                out.append((char) read());
+            } else if (c == '"') {
+                return;
+            }
+        }
+    }
+
+    private String readString(int c) throws IOException {
+        if (c != '"') {
+            throw syntaxError("Expected field name", c);
+        }
+        StringBuilder raw = new StringBuilder();
+        captureString(raw);
+        try {
+            return (String) new JSONTokener(raw.toString()).nextValue();
+        } catch (JSONException e) {
+            throw new IOException("Malformed field name", e);
+        }
+    }
+
+    private void expect(char expected) throws IOException {
+        int c = nextClean();
+        if (c != expected) {
+            throw syntaxError("Expected '" + expected + "'", c);
+        }
+    }
+
+    private int nextClean() throws IOException {
+        int c;
+        do {
+            c = read();
+        } while (c != -1 && Character.isWhitespace(c));
+        return c;
+    }
+
+    private int read() throws IOException {
+        if (peeked != NO_CHAR) {
+            int c = peeked;
+            peeked = NO_CHAR;
+            return c;
+        }
+        return reader.read();
+    }
+
+    private static IOException syntaxError(String message, int found) {
+        return new IOException(message + " but found " + (found == -1 ? "end of input" : "'" + (char) found + "'"));
+    }
+}
@@ -0,0 +1,63 @@
+package com.ultimatequack.healthyduck.client;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Recent response latencies per operation, for adaptive timeouts and hedge delays.
+ * Each operation keeps a ring of the last {@link #WINDOW} samples; percentiles are
+ * recomputed from a sorted copy every {@link #RECOMPUTE_EVERY} samples rather than on
+ * every lookup.
+ */
+class LatencyTracker {
+    static final int WINDOW = 256;
+    static final int MIN_SAMPLES = 20;
+    private static final int RECOMPUTE_EVERY = 16;
+
+    private final Map<String, Window> windows = new ConcurrentHashMap<>();
+
+    void record(String operation, long latencyMillis) {
+        windows.computeIfAbsent(operation, key -> new Window()).add(latencyMillis);
+    }
+
+    /** The p95 latency, or -1 while there are fewer than {@link #MIN_SAMPLES} samples. */
+    long p95(String operation) {
+        Window window = windows.get(operation);
+        return window != null ? window.percentiles()[0] : -1;
+    }
+
+    /** The p99 latency, or -1 while there are fewer than {@link #MIN_SAMPLES} samples. */
+    long p99(String operation) {
+        Window window = windows.get(operation);
+        return window != null ? window.percentiles()[1] : -1;
+    }
+
+    private static final class Window {
+        private final long[] samples = new long[WINDOW];
+        private int count;
+        private int next;
+        private int sinceRecompute;
+        private long[] cached = {-1, -1};
+
+        synchronized void add(long latencyMillis) {
+            samples[next] = latencyMillis;
+            next = (next + 1) % WINDOW;
+            count = Math.min(count + 1, WINDOW);
+            sinceRecompute++;
+        }
+
+        synchronized long[] percentiles() {
+            if (count < MIN_SAMPLES) {
+                return cached;
+            }
+            if (sinceRecompute >= RECOMPUTE_EVERY || cached[0] < 0) {
+                long[] sorted = Arrays.copyOf(samples, count);
+                Arrays.sort(sorted);
+                cached = new long[] {sorted[(int) (count * 0.95)], sorted[Math.min(count - 1, (int) (count * 0.99))]};
+                sinceRecompute = 0;
+            }
+            return cached;
+        }
+    }
+}
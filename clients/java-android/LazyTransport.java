@@ -0,0 +1,54 @@
+package com.ultimatequack.healthyduck.client;
+
+import java.io.IOException;
+import java.util.function.Supplier;
+
+/**
+ * Creates the engine on first use. Building {@code java.net.http.HttpClient} starts its
+ * selector thread and loads a large part of {@code java.net.http}, which has no place on
+ * the thread that constructs the client, typically the main thread at app launch.
+ */
+final class LazyTransport implements HttpTransport {
+    private final Supplier<HttpTransport> factory;
+    private volatile HttpTransport delegate;
+    private boolean closed;
+
+    LazyTransport(Supplier<HttpTransport> factory) {
+        this.factory = factory;
+    }
+
+    @Override
+    public Response execute(Request request) throws IOException {
+        return delegate().execute(request);
+    }
+
+    /** The engine, created now if this is its first use. */
+    HttpTransport delegate() throws IOException {
+        HttpTransport engine = delegate;
+        if (engine == null) {
+            synchronized (this) {
+                if (closed) {
+                    throw new IOException("Transport is closed");
+                }
+                engine = delegate;
+                if (engine == null) {
+                    engine = factory.get();
+                    delegate = engine;
+                }
+            }
+        }
+        return engine;
+    }
+
+    @Override
+    public void close() throws IOException {
+        HttpTransport engine;
+        synchronized (this) {
+            closed = true;
+            engine = delegate;
+        }
+        if (engine != null) {
+            engine.close();
+        }
+    }
+}
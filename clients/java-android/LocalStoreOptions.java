@@ -0,0 +1,55 @@
+package com.ultimatequack.healthyduck.client;
+
+/**
+ * Settings for {@link LocalTimeSeriesStore}.
+ */
+public class LocalStoreOptions {
+    private int maxOpenSegments = 32;
+    private int indexStride = 64;
+    private boolean syncEachWrite = false;
+    private boolean autoCompact = true;
+
+    public int getMaxOpenSegments() { return maxOpenSegments; }
+
+    /**
+     * Day files kept open and mapped at once; the least recently used is closed beyond
+     * this and re-indexed when it is next read.
+     */
+    public LocalStoreOptions setMaxOpenSegments(int maxOpenSegments) {
+        if (maxOpenSegments < 1) {
+            throw new IllegalArgumentException("maxOpenSegments must be at least 1");
+        }
+        this.maxOpenSegments = maxOpenSegments;
+        return this;
+    }
+
+    public int getIndexStride() { return indexStride; }
+
+    /** Records per sparse index entry; smaller reads fewer records per query but indexes more. */
+    public LocalStoreOptions setIndexStride(int indexStride) {
+        if (indexStride < 1) {
+            throw new IllegalArgumentException("indexStride must be at least 1");
+        }
+        this.indexStride = indexStride;
+        return this;
+    }
+
+    public boolean isSyncEachWrite() { return syncEachWrite; }
+
+    /**
+     * Forces each write to disk before returning. Off by default: the store mirrors the
+     * server and the offline queue, so a write lost in a crash is fetched again.
+     */
+    public LocalStoreOptions setSyncEachWrite(boolean syncEachWrite) {
+        this.syncEachWrite = syncEachWrite;
+        return this;
+    }
+
+    public boolean isAutoCompact() { return autoCompact; }
+
+    /** Rewrites a day file once it holds more superseded versions than live points. */
+    public LocalStoreOptions setAutoCompact(boolean autoCompact) {
+        this.autoCompact = autoCompact;
+        return this;
+    }
+}
@@ -0,0 +1,466 @@
+package com.ultimatequack.healthyduck.client;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * On-device copy of a user's time series, so charts and daily totals are answered from
+ * local storage instead of the server.
+ *
+ * <p>Points are kept in append-only {@link TimeSeriesSegment day files} under
+ * {@code directory/<user>/<data type>/<UTC epoch day>.seg}, partitioned by the day the
+ * point starts. Each open file has a sparse time index and is read through a memory
+ * mapping, so a query only touches the days and index blocks it overlaps.
+ *
+ * <p>Versions are reconciled by {@code modifiedTimeMillis}: a point (data source, start,
+ * end) is only written again when the incoming copy is newer, so reading the same range
+ * from the server repeatedly does not grow the files. Points recorded locally without a
+ * modification time keep 0, which marks them pending: any copy read back from the server
+ * supersedes them, whatever the device clock says, and a later pending write replaces an
+ * earlier one.
+ *
+ * <p>Opened through {@link HealthyDuckClient#openLocalStore}, the store is fed by the
+ * client's inserts, the offline queue, dataset reads and the change feed. It can also be
+ * filled directly with {@link #put}. Range semantics follow the dataset endpoint: a
+ * point belongs to {@code [start, end]} when it starts at or after {@code start} and
+ * ends at or before {@code end}.
+ */
+public class LocalTimeSeriesStore implements Closeable {
+    static final long DAY_NANOS = 24L * 60 * 60 * 1_000_000_000L;
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String CATALOG = "catalog.json";
+    // Directory for points without a data type; URL encoding never produces it
+    private static final String NO_TYPE = "~";
+
+    private static final Comparator<TimeSeriesSegment.Row> ROW_ORDER = Comparator
+        .comparingLong((TimeSeriesSegment.Row row) -> row.startTimeNanos)
+        .thenComparingLong(row -> row.endTimeNanos)
+        .thenComparing(row -> row.dataSourceId, Comparator.nullsFirst(Comparator.<String>naturalOrder()));
+
+    private final File directory;
+    private final LocalStoreOptions options;
+    private final LinkedHashMap<File, TimeSeriesSegment> open = new LinkedHashMap<>(16, 0.75f, true);
+    // user -> data source -> data types it has points of
+    private final Map<String, Map<String, Set<String>>> catalog = new HashMap<>();
+    // type directory -> epoch days with a segment file
+    private final Map<File, TreeSet<Long>> days = new HashMap<>();
+    private boolean closed;
+
+    LocalTimeSeriesStore(File directory, LocalStoreOptions options) throws IOException {
+        this.directory = directory;
+        this.options = options;
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create store directory " + directory);
+        }
+        loadCatalog();
+    }
+
+    /** Stores or updates points of one data source; returns how many were new or newer. */
+    public synchronized int put(String userId, String dataSourceId, List<DataPoint> points) throws IOException {
+        checkIds(userId, dataSourceId);
+        List<TimeSeriesSegment.Row> rows = new ArrayList<>(points.size());
+        for (DataPoint point : points) {
+            rows.add(toRow(dataSourceId, point));
+        }
+        return write(userId, rows);
+    }
+
+    /** Columnar variant of {@link #put(String, String, List)}, used for binary reads. */
+    synchronized int put(String userId, String dataSourceId, DataPointColumns points) throws IOException {
+        checkIds(userId, dataSourceId);
+        List<TimeSeriesSegment.Row> rows = new ArrayList<>(points.size());
+        for (int i = 0; i < points.size(); i++) {
+            TimeSeriesSegment.Row row = new TimeSeriesSegment.Row();
+            row.dataSourceId = dataSourceId;
+            row.dataTypeName = points.getDataTypeName(i);
+            row.startTimeNanos = points.getStartTimeNanos(i);
+            row.endTimeNanos = points.getEndTimeNanos(i);
+            row.modifiedTimeMillis = points.getModifiedTimeMillis(i);
+            row.originDataSourceId = points.getOriginDataSourceId(i);
+            row.valueKind = points.getValueKind(i);
+            row.intVal = points.getValueKind(i) == DataPointColumns.VALUE_INT ? points.getIntVal(i) : 0;
+            row.fpVal = points.getFpVal(i);
+            row.stringVal = points.getStringVal(i);
+            rows.add(row);
+        }
+        return write(userId, rows);
+    }
+
+    /** Points of one data source in {@code [startNanos, endNanos]}, in time order. */
+    public List<DataPoint> getDataPoints(String userId, String dataSourceId, long startNanos, long endNanos)
+            throws IOException {
+        DataPointColumns columns = getColumns(userId, dataSourceId, startNanos, endNanos);
+        List<DataPoint> points = new ArrayList<>(columns.size());
+        for (int row = 0; row < columns.size(); row++) {
+            points.add(columns.toDataPoint(row));
+        }
+        return points;
+    }
+
+    /** Columnar variant of {@link #getDataPoints}. */
+    public synchronized DataPointColumns getColumns(String userId, String dataSourceId, long startNanos,
+                                                    long endNanos) throws IOException {
+        List<TimeSeriesSegment.Row> rows = new ArrayList<>();
+        Map<String, Set<String>> sources = catalog.get(userId);
+        Set<String> types = sources != null ? sources.get(dataSourceId) : null;
+        if (types != null) {
+            for (String type : types) {
+                read(userId, type, dataSourceId, startNanos, endNanos, endNanos, rows);
+            }
+        }
+        return toColumns(rows);
+    }
+
+    /** Points of one data type from every data source of the user in {@code [startNanos, endNanos]}. */
+    public synchronized DataPointColumns getColumnsByType(String userId, String dataTypeName, long startNanos,
+                                                          long endNanos) throws IOException {
+        List<TimeSeriesSegment.Row> rows = new ArrayList<>();
+        read(userId, normalizeType(dataTypeName), null, startNanos, endNanos, endNanos, rows);
+        return toColumns(rows);
+    }
+
+    /**
+     * Aggregates the stored points of {@code dataTypeName} that start in
+     * {@code [startTimeMillis, endTimeMillis)}, across all of the user's data sources.
+     */
+    public List<AggregationBucket> aggregate(String userId, String dataTypeName, long startTimeMillis,
+                                             long endTimeMillis, DataPointAggregator aggregator,
+                                             AggregationUtils.AggregationType type) throws IOException {
+        DataPointColumns columns;
+        synchronized (this) {
+            List<TimeSeriesSegment.Row> rows = new ArrayList<>();
+            // The aggregator buckets by start time, so points may end past the range
+            read(userId, normalizeType(dataTypeName), null, startTimeMillis * 1_000_000L,
+                 endTimeMillis * 1_000_000L - 1, Long.MAX_VALUE, rows);
+            columns = toColumns(rows);
+        }
+        return aggregator.aggregate(columns, startTimeMillis, endTimeMillis, type);
+    }
+
+    /** Per-day sums in {@code zone}, e.g. daily step totals for a chart. */
+    public List<AggregationBucket> dailyTotals(String userId, String dataTypeName, long startTimeMillis,
+                                               long endTimeMillis, ZoneId zone) throws IOException {
+        return aggregate(userId, dataTypeName, startTimeMillis, endTimeMillis,
+                         DataPointAggregator.byPeriod("day", 1, zone), AggregationUtils.AggregationType.SUM);
+    }
+
+    /** Rewrites every day file that holds superseded versions; returns how many records were dropped. */
+    public synchronized int compact() throws IOException {
+        checkOpen();
+        int dropped = 0;
+        for (File userDir : listDirectories(directory)) {
+            for (File typeDir : listDirectories(userDir)) {
+                for (long day : days(typeDir)) {
+                    dropped += segment(typeDir, day).compact();
+                }
+            }
+        }
+        return dropped;
+    }
+
+    /** Closes the open day files; the store cannot be used afterwards. */
+    @Override
+    public synchronized void close() throws IOException {
+        closed = true;
+        IOException failure = null;
+        for (TimeSeriesSegment segment : open.values()) {
+            try {
+                segment.close();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        open.clear();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private int write(String userId, List<TimeSeriesSegment.Row> rows) throws IOException {
+        checkOpen();
+        File userDir = new File(directory, fileName(userId));
+        // Catalogue before writing so a crash never leaves points that queries cannot find
+        boolean catalogued = false;
+        Map<String, Map<Long, List<TimeSeriesSegment.Row>>> byTypeAndDay = new LinkedHashMap<>();
+        for (TimeSeriesSegment.Row row : rows) {
+            catalogued |= catalog.computeIfAbsent(userId, id -> new HashMap<>())
+                .computeIfAbsent(row.dataSourceId, id -> new LinkedHashSet<>())
+                .add(row.dataTypeName);
+            byTypeAndDay.computeIfAbsent(row.dataTypeName, type -> new LinkedHashMap<>())
+                .computeIfAbsent(Math.floorDiv(row.startTimeNanos, DAY_NANOS), day -> new ArrayList<>())
+                .add(row);
+        }
+        if (catalogued) {
+            saveCatalog();
+        }
+
+        int written = 0;
+        for (Map.Entry<String, Map<Long, List<TimeSeriesSegment.Row>>> type : byTypeAndDay.entrySet()) {
+            File typeDir = new File(userDir, typeDirectoryName(type.getKey()));
+            if (!typeDir.isDirectory() && !typeDir.mkdirs()) {
+                throw new IOException("Cannot create " + typeDir);
+            }
+            for (Map.Entry<Long, List<TimeSeriesSegment.Row>> day : type.getValue().entrySet()) {
+                TimeSeriesSegment segment = segment(typeDir, day.getKey());
+                written += segment.append(day.getValue());
+                days(typeDir).add(day.getKey());
+                if (options.isAutoCompact() && segment.deadRecords() > segment.liveRecords()) {
+                    segment.compact();
+                }
+            }
+        }
+        return written;
+    }
+
+    /** Adds the rows starting in {@code [startMin, startMax]} and ending by {@code endMax}. */
+    private void read(String userId, String type, String dataSourceId, long startMin, long startMax, long endMax,
+                      List<TimeSeriesSegment.Row> out) throws IOException {
+        checkOpen();
+        if (startMin > startMax) {
+            return;
+        }
+        File typeDir = new File(new File(directory, fileName(userId)), typeDirectoryName(type));
+        if (!typeDir.isDirectory()) {
+            return;
+        }
+        TreeSet<Long> present = days(typeDir);
+        for (long day : present.subSet(Math.floorDiv(startMin, DAY_NANOS), true,
+                                       Math.floorDiv(startMax, DAY_NANOS), true)) {
+            segment(typeDir, day).scan(startMin, startMax, endMax, dataSourceId, out);
+        }
+    }
+
+    private TimeSeriesSegment segment(File typeDir, long day) throws IOException {
+        File file = new File(typeDir, day + SEGMENT_SUFFIX);
+        TimeSeriesSegment segment = open.get(file);
+        if (segment == null) {
+            String type = typeDir.getName().equals(NO_TYPE) ? "" : decode(typeDir.getName());
+            segment = new TimeSeriesSegment(file, type, options.getIndexStride(), options.isSyncEachWrite());
+            open.put(file, segment);
+            evictIfNeeded();
+        }
+        return segment;
+    }
+
+    private void evictIfNeeded() throws IOException {
+        Iterator<TimeSeriesSegment> iterator = open.values().iterator();
+        while (open.size() > options.getMaxOpenSegments() && iterator.hasNext()) {
+            TimeSeriesSegment eldest = iterator.next();
+            iterator.remove();
+            eldest.close();
+        }
+    }
+
+    private TreeSet<Long> days(File typeDir) {
+        TreeSet<Long> present = days.get(typeDir);
+        if (present == null) {
+            present = new TreeSet<>();
+            String[] names = typeDir.list();
+            for (int i = 0; names != null && i < names.length; i++) {
+                if (names[i].endsWith(SEGMENT_SUFFIX)) {
+                    try {
+                        present.add(Long.parseLong(names[i].substring(0, names[i].length() - SEGMENT_SUFFIX.length())));
+                    } catch (NumberFormatException e) {
+                        // Not ours
+                    }
+                }
+            }
+            days.put(typeDir, present);
+        }
+        return present;
+    }
+
+    private static DataPointColumns toColumns(List<TimeSeriesSegment.Row> rows) {
+        rows.sort(ROW_ORDER);
+        DataPointColumns.Builder columns = new DataPointColumns.Builder(rows.size());
+        for (TimeSeriesSegment.Row row : rows) {
+            int origin = row.originDataSourceId != null ? columns.internOrigin(row.originDataSourceId) : -1;
+            long intVal = row.valueKind == DataPointColumns.VALUE_STRING ? columns.internString(row.stringVal)
+                                                                          : row.intVal;
+            columns.addRow(row.startTimeNanos, row.endTimeNanos, row.modifiedTimeMillis,
+                           columns.internDataType(row.dataTypeName), origin, row.valueKind, intVal, row.fpVal);
+        }
+        return columns.build();
+    }
+
+    private static TimeSeriesSegment.Row toRow(String dataSourceId, DataPoint point) {
+        TimeSeriesSegment.Row row = new TimeSeriesSegment.Row();
+        row.dataSourceId = dataSourceId;
+        row.dataTypeName = normalizeType(point.getDataTypeName());
+        row.startTimeNanos = point.getStartTimeNanos();
+        row.endTimeNanos = point.getEndTimeNanos();
+        row.modifiedTimeMillis = point.getModifiedTimeMillis();
+        row.originDataSourceId = point.getOriginDataSourceId();
+        // Same value selection as DataPointColumns: the first value, int before fp before string
+        Value value = point.getValue() != null && !point.getValue().isEmpty() ? point.getValue().get(0) : null;
+        if (value != null && value.getIntVal() != null) {
+            row.valueKind = DataPointColumns.VALUE_INT;
+            row.intVal = value.getIntVal();
+        } else if (value != null && value.getFpVal() != null) {
+            row.valueKind = DataPointColumns.VALUE_FP;
+            row.fpVal = value.getFpVal();
+        } else if (value != null && value.getStringVal() != null) {
+            row.valueKind = DataPointColumns.VALUE_STRING;
+            row.stringVal = value.getStringVal();
+        } else {
+            row.valueKind = DataPointColumns.VALUE_NONE;
+        }
+        return row;
+    }
+
+    private static String normalizeType(String dataTypeName) {
+        return dataTypeName != null ? dataTypeName : "";
+    }
+
+    private static String typeDirectoryName(String dataTypeName) {
+        return dataTypeName.isEmpty() ? NO_TYPE : fileName(dataTypeName);
+    }
+
+    /** URL-encoded, with dots escaped too so no ID can name "." or "..". */
+    private static String fileName(String id) {
+        try {
+            return URLEncoder.encode(id, "UTF-8").replace(".", "%2E").replace("*", "%2A");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String decode(String fileName) {
+        try {
+            return URLDecoder.decode(fileName, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static List<File> listDirectories(File parent) {
+        List<File> directories = new ArrayList<>();
+        File[] files = parent.listFiles();
+        for (int i = 0; files != null && i < files.length; i++) {
+            if (files[i].isDirectory()) {
+                directories.add(files[i]);
+            }
+        }
+        return directories;
+    }
+
+    private static void checkIds(String userId, String dataSourceId) {
+        if (userId == null || dataSourceId == null) {
+            throw new IllegalArgumentException("userId and dataSourceId are required");
+        }
+    }
+
+    private void checkOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Local store is closed");
+        }
+    }
+
+    /**
+     * Reads which data types each data source has points of. A missing or unreadable
+     * catalogue is rebuilt from the day files, which is slower but loses nothing.
+     */
+    private void loadCatalog() throws IOException {
+        File file = new File(directory, CATALOG);
+        if (file.isFile()) {
+            try (InputStream in = new FileInputStream(file)) {
+                ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+                byte[] chunk = new byte[8192];
+                int read;
+                while ((read = in.read(chunk)) != -1) {
+                    buffer.write(chunk, 0, read);
+                }
+                JSONObject json = new JSONObject(new String(buffer.toByteArray(), StandardCharsets.UTF_8));
+                JSONArray users = json.names();
+                for (int u = 0; users != null && u < users.length(); u++) {
+                    String userId = users.getString(u);
+                    JSONObject sources = json.getJSONObject(userId);
+                    JSONArray ids = sources.names();
+                    for (int i = 0; ids != null && i < ids.length(); i++) {
+                        String dataSourceId = ids.getString(i);
+                        JSONArray types = sources.getJSONArray(dataSourceId);
+                        Set<String> known = catalog.computeIfAbsent(userId, id -> new HashMap<>())
+                            .computeIfAbsent(dataSourceId, id -> new LinkedHashSet<>());
+                        for (int t = 0; t < types.length(); t++) {
+                            known.add(types.getString(t));
+                        }
+                    }
+                }
+                return;
+            } catch (Exception e) {
+                catalog.clear();
+            }
+        }
+        rebuildCatalog();
+    }
+
+    private void rebuildCatalog() throws IOException {
+        for (File userDir : listDirectories(directory)) {
+            String userId = decode(userDir.getName());
+            for (File typeDir : listDirectories(userDir)) {
+                for (long day : days(typeDir)) {
+                    TimeSeriesSegment segment = segment(typeDir, day);
+                    for (String dataSourceId : segment.dataSourceIds()) {
+                        catalog.computeIfAbsent(userId, id -> new HashMap<>())
+                            .computeIfAbsent(dataSourceId, id -> new LinkedHashSet<>())
+                            .add(segment.getDataTypeName());
+                    }
+                }
+            }
+        }
+        if (!catalog.isEmpty()) {
+            saveCatalog();
+        }
+    }
+
+    private void saveCatalog() throws IOException {
+        JSONObject json = new JSONObject();
+        try {
+            for (Map.Entry<String, Map<String, Set<String>>> user : catalog.entrySet()) {
+                JSONObject sources = new JSONObject();
+                for (Map.Entry<String, Set<String>> source : user.getValue().entrySet()) {
+                    JSONArray types = new JSONArray();
+                    for (String type : source.getValue()) {
+                        types.put(type);
+                    }
+                    sources.put(source.getKey(), types);
+                }
+                json.put(user.getKey(), sources);
+            }
+        } catch (Exception e) {
+            throw new IOException("Cannot encode store catalog", e);
+        }
+        File file = new File(directory, CATALOG);
+        File temp = new File(directory, CATALOG + ".tmp");
+        try (OutputStream out = new FileOutputStream(temp)) {
+            out.write(json.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        if (!temp.renameTo(file) && (!file.delete() || !temp.renameTo(file))) {
+            throw new IOException("Cannot replace " + file);
+        }
+    }
+}
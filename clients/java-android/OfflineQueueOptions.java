@@ -0,0 +1,49 @@
+package com.ultimatequack.healthyduck.client;
+
+/**
+ * Storage and drain settings for {@link OfflineWriteQueue}.
+ */
+public class OfflineQueueOptions {
+    private long segmentBytes = 1024 * 1024;
+    private long maxBytes = 16 * 1024 * 1024;
+    private boolean syncEachWrite = true;
+    private int drainBatchPoints = 1000;
+
+    public long getSegmentBytes() { return segmentBytes; }
+
+    /** Size at which the log starts a new segment file. */
+    public OfflineQueueOptions setSegmentBytes(long segmentBytes) {
+        this.segmentBytes = segmentBytes;
+        return this;
+    }
+
+    public long getMaxBytes() { return maxBytes; }
+
+    /** Upper bound on undelivered data kept on disk; writes beyond it are rejected. */
+    public OfflineQueueOptions setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+        return this;
+    }
+
+    public boolean isSyncEachWrite() { return syncEachWrite; }
+
+    /**
+     * Flush every write to the storage device before returning. Turning this off trades
+     * durability of the last few writes on power loss for cheaper appends.
+     */
+    public OfflineQueueOptions setSyncEachWrite(boolean syncEachWrite) {
+        this.syncEachWrite = syncEachWrite;
+        return this;
+    }
+
+    public int getDrainBatchPoints() { return drainBatchPoints; }
+
+    /** Consecutive queued inserts for the same stream are merged into PATCHes of up to this many points. */
+    public OfflineQueueOptions setDrainBatchPoints(int drainBatchPoints) {
+        if (drainBatchPoints < 1) {
+            throw new IllegalArgumentException("drainBatchPoints must be >= 1");
+        }
+        this.drainBatchPoints = drainBatchPoints;
+        return this;
+    }
+}
@@ -0,0 +1,293 @@
+package com.ultimatequack.healthyduck.client;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Durable store-and-forward queue for writes made while offline.
+ *
+ * <p>{@code enqueue*} only appends a record to a local {@link WriteAheadLog}, which is cheap
+ * sequential I/O and safe to call from a UI-adjacent thread. {@link #drain()} replays the
+ * log in order on a background thread, merging consecutive inserts for the same stream into
+ * larger PATCHes, and advances the log's checkpoint only after the server accepted a batch.
+ * Delivery is therefore at-least-once: a crash between the server ack and the checkpoint
+ * write replays that batch on the next start.
+ *
+ * <p>Draining stops at the first network, server or authorization error and resumes on the
+ * next call; apps typically call {@link #drain()} from their connectivity callback and may
+ * also use {@link #startAutoDrain(long)}. Records rejected with another 4xx are dropped and
+ * counted in {@link #getDroppedRecords()} so one bad write cannot block the queue. A merged
+ * PATCH that is rejected is first split and resent record by record, so only the records
+ * the server refuses on their own are dropped.
+ *
+ * <p>Replays are made safe on the server: a session that already exists answers 409,
+ * which counts as delivered, and a data point replaces the stored point with the same
+ * data type and time range.
+ */
+public class OfflineWriteQueue implements Closeable {
+    private static final int PEEK_RECORDS = 64;
+
+    private final HealthyDuckClient client;
+    private final OfflineQueueOptions options;
+    private final WriteAheadLog log;
+    private final ScheduledExecutorService drainer;
+    private final AtomicLong droppedRecords = new AtomicLong();
+    private ScheduledFuture<?> autoDrain;
+
+    OfflineWriteQueue(HealthyDuckClient client, File directory, OfflineQueueOptions options) throws IOException {
+        this.client = client;
+        this.options = options;
+        this.log = new WriteAheadLog(directory, options.getSegmentBytes(), options.getMaxBytes(),
+                                     options.isSyncEachWrite());
+        this.drainer = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "healthyduck-offline-drain");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void enqueueInsert(String userId, String dataSourceId, String datasetId, List<DataPoint> points) {
+        try {
+            JSONArray pointArray = new JSONArray();
+            for (DataPoint point : points) {
+                pointArray.put(point.toJson());
+            }
+            JSONObject record = new JSONObject()
+                .put("op", "insert")
+                .put("userId", userId)
+                .put("dataSourceId", dataSourceId)
+                .put("datasetId", datasetId)
+                .put("points", pointArray);
+            append(record);
+            // Visible in local charts right away, not only once the queue drains
+            client.storeLocally(userId, dataSourceId, points);
+        } catch (HealthyDuckException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new HealthyDuckException("Failed to queue data points", e);
+        }
+    }
+
+    public void enqueueSession(String userId, Session session) {
+        try {
+            append(new JSONObject()
+                .put("op", "session")
+                .put("userId", userId)
+                .put("session", session.toJson()));
+        } catch (HealthyDuckException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new HealthyDuckException("Failed to queue session", e);
+        }
+    }
+
+    /**
+     * Sends queued writes in order until the queue is empty. Completes with the number of
+     * records delivered, or exceptionally with the error that stopped the drain.
+     */
+    public CompletableFuture<Integer> drain() {
+        CompletableFuture<Integer> result = new CompletableFuture<>();
+        drainer.execute(() -> {
+            try {
+                result.complete(drainNow());
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            }
+        });
+        return result;
+    }
+
+    /** Retries draining every {@code intervalMillis} while records are pending. */
+    public synchronized void startAutoDrain(long intervalMillis) {
+        stopAutoDrain();
+        autoDrain = drainer.scheduleWithFixedDelay(() -> {
+            try {
+                drainNow();
+            } catch (Exception e) {
+                // Still offline; try again on the next tick
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stopAutoDrain() {
+        if (autoDrain != null) {
+            autoDrain.cancel(false);
+            autoDrain = null;
+        }
+    }
+
+    /** Bytes of undelivered records on disk. */
+    public synchronized long getPendingBytes() throws IOException {
+        return log.sizeOnDisk();
+    }
+
+    public long getDroppedRecords() {
+        return droppedRecords.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        stopAutoDrain();
+        drainer.shutdown();
+        try {
+            drainer.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            log.close();
+        }
+    }
+
+    private synchronized void append(JSONObject record) throws IOException {
+        log.append(record.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Runs on the drainer thread only. */
+    private int drainNow() throws Exception {
+        int delivered = 0;
+        while (true) {
+            List<WriteAheadLog.Entry> entries;
+            synchronized (this) {
+                entries = log.peek(PEEK_RECORDS);
+            }
+            if (entries.isEmpty()) {
+                return delivered;
+            }
+
+            int index = 0;
+            while (index < entries.size()) {
+                JSONObject first = parse(entries.get(index));
+                String op = first.optString("op");
+                int end = "insert".equals(op) ? insertRunEnd(entries, index, first) : index + 1;
+                try {
+                    if ("insert".equals(op)) {
+                        sendInserts(entries, index, end);
+                    } else if ("session".equals(op)) {
+                        sendSession(first);
+                    }
+                    delivered += end - index;
+                } catch (HealthyDuckException e) {
+                    if (!isPermanent(e.getStatusCode())) {
+                        throw e;
+                    }
+                    if (end - index > 1) {
+                        // One bad record, or a merged body too large (413), fails the whole
+                        // PATCH; resend each record alone so only the bad ones are dropped
+                        delivered += sendOneByOne(entries, index, end);
+                        index = end;
+                        continue;
+                    }
+                    droppedRecords.incrementAndGet();
+                }
+                synchronized (this) {
+                    log.commit(entries.get(end - 1).next);
+                }
+                index = end;
+            }
+        }
+    }
+
+    /** Sends records {@code [start, end)} one PATCH each, committing after every one; returns how many landed. */
+    private int sendOneByOne(List<WriteAheadLog.Entry> entries, int start, int end) throws Exception {
+        int delivered = 0;
+        for (int i = start; i < end; i++) {
+            try {
+                sendInserts(entries, i, i + 1);
+                delivered++;
+            } catch (HealthyDuckException e) {
+                if (!isPermanent(e.getStatusCode())) {
+                    throw e;
+                }
+                droppedRecords.incrementAndGet();
+            }
+            synchronized (this) {
+                log.commit(entries.get(i).next);
+            }
+        }
+        return delivered;
+    }
+
+    /**
+     * End index of the run of inserts starting at {@code start} that can share one PATCH:
+     * same user and data source, and at most {@link OfflineQueueOptions#getDrainBatchPoints()} points.
+     */
+    private int insertRunEnd(List<WriteAheadLog.Entry> entries, int start, JSONObject first) throws Exception {
+        String userId = first.getString("userId");
+        String dataSourceId = first.getString("dataSourceId");
+        int points = 0;
+        int end = start;
+        while (end < entries.size()) {
+            JSONObject record = end == start ? first : parse(entries.get(end));
+            if (!"insert".equals(record.optString("op"))
+                || !userId.equals(record.optString("userId"))
+                || !dataSourceId.equals(record.optString("dataSourceId"))) {
+                break;
+            }
+            int count = record.getJSONArray("points").length();
+            if (end > start && points + count > options.getDrainBatchPoints()) {
+                break;
+            }
+            points += count;
+            end++;
+        }
+        return end;
+    }
+
+    /** Sends the insert records {@code [start, end)} of one stream as a single PATCH. */
+    private void sendInserts(List<WriteAheadLog.Entry> entries, int start, int end) throws Exception {
+        JSONObject first = parse(entries.get(start));
+        List<DataPoint> points = new ArrayList<>();
+        long minStart = Long.MAX_VALUE;
+        long maxEnd = Long.MIN_VALUE;
+        for (int index = start; index < end; index++) {
+            JSONObject record = index == start ? first : parse(entries.get(index));
+            JSONArray pointArray = record.getJSONArray("points");
+            for (int i = 0; i < pointArray.length(); i++) {
+                DataPoint point = DataPoint.fromJson(pointArray.getJSONObject(i));
+                minStart = Math.min(minStart, point.getStartTimeNanos());
+                maxEnd = Math.max(maxEnd, point.getEndTimeNanos());
+                points.add(point);
+            }
+        }
+        String datasetId = end - start == 1 || points.isEmpty() ? first.getString("datasetId") : minStart + "-" + maxEnd;
+        client.sendDataPoints(first.getString("userId"), first.getString("dataSourceId"), datasetId, points);
+    }
+
+    private void sendSession(JSONObject record) throws Exception {
+        try {
+            client.sendSession(record.getString("userId"), Session.fromJson(record.getJSONObject("session")));
+        } catch (HealthyDuckException e) {
+            // Session IDs are unique per user: a replay after a lost ack finds it already stored
+            if (e.getStatusCode() != 409) {
+                throw e;
+            }
+        }
+    }
+
+    private static JSONObject parse(WriteAheadLog.Entry entry) throws Exception {
+        return new JSONObject(new String(entry.payload, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 4xx responses that will not succeed on retry. Timeouts and throttling are retried, and
+     * so are 401/403: an expired token or revoked grant is fixed by signing in again, and
+     * the backlog has to survive until then.
+     */
+    private static boolean isPermanent(int statusCode) {
+        return statusCode >= 400 && statusCode < 500
+            && statusCode != 401 && statusCode != 403 && statusCode != 408 && statusCode != 429;
+    }
+}
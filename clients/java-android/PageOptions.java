@@ -0,0 +1,34 @@
+package com.ultimatequack.healthyduck.client;
+
+/**
+ * Page size and read-ahead for {@link PagedIterator}.
+ */
+public class PageOptions {
+    private int pageSize = 500;
+    private int prefetchDepth = 2;
+
+    public int getPageSize() { return pageSize; }
+
+    /**
+     * Maximum number of elements the server returns per page ({@code limit} query parameter).
+     * The server caps it at 999, one below PostgREST's row limit; larger values get 999.
+     */
+    public PageOptions setPageSize(int pageSize) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("pageSize must be >= 1");
+        }
+        this.pageSize = pageSize;
+        return this;
+    }
+
+    public int getPrefetchDepth() { return prefetchDepth; }
+
+    /** Pages fetched in the background ahead of the one being consumed; 0 disables read-ahead. */
+    public PageOptions setPrefetchDepth(int prefetchDepth) {
+        if (prefetchDepth < 0) {
+            throw new IllegalArgumentException("prefetchDepth must be >= 0");
+        }
+        this.prefetchDepth = prefetchDepth;
+        return this;
+    }
+}
@@ -0,0 +1,150 @@
+package com.ultimatequack.healthyduck.client;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Executor;
+
+/**
+ * Iterates over every element of a paged listing, following {@code nextPageToken}.
+ * While the caller works through page N, up to {@link PageOptions#getPrefetchDepth()}
+ * following pages are fetched on the client's executor, so round-trips overlap with
+ * processing instead of running back to back.
+ *
+ * <p>Not thread-safe; consume from one thread. Closing stops further prefetching.
+ */
+public class PagedIterator<T> implements Iterator<T>, Closeable {
+
+    /** Loads one page; {@code pageToken} is null for the first page. */
+    interface PageFetcher<T> {
+        Page<T> fetch(String pageToken) throws Exception;
+    }
+
+    static final class Page<T> {
+        final List<T> items;
+        final String nextPageToken;
+
+        Page(List<T> items, String nextPageToken) {
+            this.items = items;
+            this.nextPageToken = nextPageToken;
+        }
+    }
+
+    private final PageFetcher<T> fetcher;
+    private final Executor executor;
+    private final int prefetchDepth;
+
+    // Guarded by this
+    private final Deque<Page<T>> ready = new ArrayDeque<>();
+    private String nextToken;
+    private boolean fetching;
+    private boolean exhausted;
+    private boolean closed;
+    private Throwable failure;
+
+    private Iterator<T> current = Collections.emptyIterator();
+
+    PagedIterator(PageFetcher<T> fetcher, Executor executor, int prefetchDepth) {
+        this.fetcher = fetcher;
+        this.executor = executor;
+        this.prefetchDepth = prefetchDepth;
+        synchronized (this) {
+            startFetch();
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!current.hasNext()) {
+            Page<T> page = takePage();
+            if (page == null) {
+                return false;
+            }
+            current = page.items.iterator();
+        }
+        return true;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return current.next();
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        ready.clear();
+        notifyAll();
+    }
+
+    private synchronized Page<T> takePage() {
+        boolean interrupted = false;
+        try {
+            while (ready.isEmpty()) {
+                if (failure != null) {
+                    throw new HealthyDuckException("Failed to fetch page", failure);
+                }
+                if (closed || (exhausted && !fetching)) {
+                    return null;
+                }
+                if (!fetching) {
+                    startFetch();
+                }
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                    closed = true;
+                }
+            }
+            Page<T> page = ready.poll();
+            maybePrefetch();
+            return page;
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /** Caller must hold the monitor. */
+    private void maybePrefetch() {
+        if (!fetching && !exhausted && !closed && failure == null && ready.size() < prefetchDepth) {
+            startFetch();
+        }
+    }
+
+    /** Caller must hold the monitor. */
+    private void startFetch() {
+        fetching = true;
+        String token = nextToken;
+        executor.execute(() -> {
+            Page<T> page = null;
+            Throwable error = null;
+            try {
+                page = fetcher.fetch(token);
+            } catch (Throwable t) {
+                error = t;
+            }
+            synchronized (PagedIterator.this) {
+                fetching = false;
+                if (error != null) {
+                    failure = error;
+                } else if (!closed) {
+                    ready.add(page);
+                    nextToken = page.nextPageToken;
+                    exhausted = nextToken == null || nextToken.isEmpty();
+                    maybePrefetch();
+                }
+                PagedIterator.this.notifyAll();
+            }
+        });
+    }
+}
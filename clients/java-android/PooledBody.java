@@ -0,0 +1,150 @@
+package com.ultimatequack.healthyduck.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Request body encoded into chunks borrowed from a {@link ByteChunkPool}, so a large
+ * batch is never held as one contiguous array and its memory is reused by the next one.
+ * Once written it is sent fixed-length as an {@link HttpTransport.StreamingBody}.
+ *
+ * <p>The chunks go back to the pool when the owner calls {@link #release()} and every
+ * stream from {@link #openStream()} has been closed; an engine that is still reading
+ * after a timeout keeps them out of the pool until it is done.
+ */
+final class PooledBody extends OutputStream implements HttpTransport.StreamingBody {
+    private final ByteChunkPool pool;
+    private final List<byte[]> chunks = new ArrayList<>();
+    private byte[] current;
+    private int position;
+    private long size;
+
+    // Guarded by this: the owner's reference plus one per open stream
+    private int references = 1;
+
+    PooledBody(ByteChunkPool pool) {
+        this.pool = pool;
+    }
+
+    @Override
+    public void write(int b) {
+        if (current == null || position == current.length) {
+            nextChunk();
+        }
+        current[position++] = (byte) b;
+        size++;
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) {
+        while (length > 0) {
+            if (current == null || position == current.length) {
+                nextChunk();
+            }
+            int n = Math.min(length, current.length - position);
+            System.arraycopy(bytes, offset, current, position, n);
+            position += n;
+            offset += n;
+            length -= n;
+            size += n;
+        }
+    }
+
+    private void nextChunk() {
+        checkLive();
+        current = pool.acquire();
+        position = 0;
+        chunks.add(current);
+    }
+
+    @Override
+    public long contentLength() {
+        return size;
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        checkLive();
+        long left = size;
+        for (byte[] chunk : chunks) {
+            int n = (int) Math.min(chunk.length, left);
+            out.write(chunk, 0, n);
+            left -= n;
+        }
+    }
+
+    @Override
+    public InputStream openStream() {
+        synchronized (this) {
+            checkLive();
+            references++;
+        }
+        return new ChunkStream();
+    }
+
+    /** Drops the owner's reference; the chunks are pooled again once no stream is open. */
+    void release() {
+        releaseReference();
+    }
+
+    private void releaseReference() {
+        synchronized (this) {
+            if (references == 0 || --references > 0) {
+                return;
+            }
+        }
+        for (byte[] chunk : chunks) {
+            pool.release(chunk);
+        }
+        chunks.clear();
+        current = null;
+    }
+
+    private synchronized void checkLive() {
+        if (references == 0) {
+            throw new IllegalStateException("Body already released");
+        }
+    }
+
+    private final class ChunkStream extends InputStream {
+        private final long limit = size;
+        private long read;
+        private boolean closed;
+
+        @Override
+        public int read() {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+            if (closed || read >= limit) {
+                return -1;
+            }
+            int chunkBytes = pool.chunkBytes();
+            byte[] chunk = chunks.get((int) (read / chunkBytes));
+            int within = (int) (read % chunkBytes);
+            int n = (int) Math.min(Math.min(length, chunkBytes - within), limit - read);
+            System.arraycopy(chunk, within, buffer, offset, n);
+            read += n;
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return closed ? 0 : (int) Math.min(Integer.MAX_VALUE, limit - read);
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                releaseReference();
+            }
+        }
+    }
+}
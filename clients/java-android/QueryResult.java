@@ -0,0 +1,28 @@
+package com.ultimatequack.healthyduck.client;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of one query in a bulk fetch: its points in time order, or the error that
+ * failed it. Queries over all of a user's data sources produce one result per source.
+ */
+public final class QueryResult {
+    private final DataPointQuery query;
+    private final List<DataPoint> points;
+    private final Throwable error;
+
+    QueryResult(DataPointQuery query, List<DataPoint> points, Throwable error) {
+        this.query = query;
+        this.points = points != null ? Collections.unmodifiableList(points) : Collections.<DataPoint>emptyList();
+        this.error = error;
+    }
+
+    public DataPointQuery getQuery() { return query; }
+    public List<DataPoint> getPoints() { return points; }
+
+    /** Null when the query succeeded. */
+    public Throwable getError() { return error; }
+
+    public boolean isSuccess() { return error == null; }
+}
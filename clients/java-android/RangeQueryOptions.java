@@ -0,0 +1,92 @@
+package com.ultimatequack.healthyduck.client;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How {@link HealthyDuckClient#getDataPoints(String, String, String)} and
+ * {@link HealthyDuckClient#getSessions} split a long time range into chunk requests.
+ */
+public class RangeQueryOptions {
+    private int targetPointsPerChunk = 500;
+    private long initialChunkNanos = TimeUnit.DAYS.toNanos(1);
+    private long minChunkNanos = TimeUnit.HOURS.toNanos(1);
+    private long maxChunkNanos = TimeUnit.DAYS.toNanos(90);
+    private long boundaryOverlapNanos = TimeUnit.HOURS.toNanos(1);
+    private int maxConcurrentChunks = 4;
+
+    public int getTargetPointsPerChunk() { return targetPointsPerChunk; }
+
+    /**
+     * Chunks are sized from the density seen so far in the same stream to return about this
+     * many. The server returns at most 1000 rows per request, and a chunk that hits that
+     * limit is read again in halves, so the target sits well below it to leave room for
+     * density changes.
+     */
+    public RangeQueryOptions setTargetPointsPerChunk(int targetPointsPerChunk) {
+        if (targetPointsPerChunk < 1) {
+            throw new IllegalArgumentException("targetPointsPerChunk must be >= 1");
+        }
+        this.targetPointsPerChunk = targetPointsPerChunk;
+        return this;
+    }
+
+    public long getInitialChunkNanos() { return initialChunkNanos; }
+
+    /** Chunk length for a stream whose density has not been observed yet. */
+    public RangeQueryOptions setInitialChunkNanos(long initialChunkNanos) {
+        if (initialChunkNanos < 1) {
+            throw new IllegalArgumentException("initialChunkNanos must be >= 1");
+        }
+        this.initialChunkNanos = initialChunkNanos;
+        return this;
+    }
+
+    public long getMinChunkNanos() { return minChunkNanos; }
+
+    public RangeQueryOptions setMinChunkNanos(long minChunkNanos) {
+        if (minChunkNanos < 1) {
+            throw new IllegalArgumentException("minChunkNanos must be >= 1");
+        }
+        this.minChunkNanos = minChunkNanos;
+        return this;
+    }
+
+    public long getMaxChunkNanos() { return maxChunkNanos; }
+
+    /** Upper bound for sparse streams; a range no longer than one chunk is sent as a single request. */
+    public RangeQueryOptions setMaxChunkNanos(long maxChunkNanos) {
+        if (maxChunkNanos < 1) {
+            throw new IllegalArgumentException("maxChunkNanos must be >= 1");
+        }
+        this.maxChunkNanos = maxChunkNanos;
+        return this;
+    }
+
+    public long getBoundaryOverlapNanos() { return boundaryOverlapNanos; }
+
+    /**
+     * How far each chunk request reaches past its end. The server only returns points that
+     * end inside the requested range, so a point crossing a chunk boundary is found through
+     * the overlap. The longest point seen in the stream widens it further, and a stream
+     * read for the first time overlaps by a whole chunk. A point longer than all of these
+     * that crosses a boundary is missed.
+     */
+    public RangeQueryOptions setBoundaryOverlapNanos(long boundaryOverlapNanos) {
+        if (boundaryOverlapNanos < 0) {
+            throw new IllegalArgumentException("boundaryOverlapNanos must be >= 0");
+        }
+        this.boundaryOverlapNanos = boundaryOverlapNanos;
+        return this;
+    }
+
+    public int getMaxConcurrentChunks() { return maxConcurrentChunks; }
+
+    /** Chunk requests one range query keeps in flight. */
+    public RangeQueryOptions setMaxConcurrentChunks(int maxConcurrentChunks) {
+        if (maxConcurrentChunks < 1) {
+            throw new IllegalArgumentException("maxConcurrentChunks must be >= 1");
+        }
+        this.maxConcurrentChunks = maxConcurrentChunks;
+        return this;
+    }
+}
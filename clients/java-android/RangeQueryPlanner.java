@@ -0,0 +1,315 @@
+package com.ultimatequack.healthyduck.client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.function.ToLongFunction;
+
+/**
+ * Splits a long time-range read into chunk requests sized from the density observed in
+ * the same stream, runs up to {@link RangeQueryOptions#getMaxConcurrentChunks()} of them at
+ * once and stitches the results back in order.
+ *
+ * <p>Chunks are planned as earlier ones complete, so a stream read for the first time
+ * starts at {@link RangeQueryOptions#getInitialChunkNanos()} and moves to well-sized chunks
+ * within the same query. Each chunk owns the elements starting inside it; the overlap past
+ * its end only serves to catch elements crossing the boundary, and what the overlap
+ * returns from the next chunk is dropped, so boundary elements are kept exactly once.
+ *
+ * <p>The server answers at most {@link #SERVER_ROW_LIMIT} rows per request and drops the
+ * rest without saying so. A chunk that comes back full is therefore read again as two
+ * halves, recursively, so a density estimate that was too low costs extra requests instead
+ * of losing points. A query given a {@link RequestLimiter} takes a permit for each request.
+ */
+final class RangeQueryPlanner {
+
+    /** Reads one chunk, {@code [startNanos, endNanos]}, with the server's containment semantics. */
+    interface ChunkFetcher<T> {
+        List<T> fetch(long startNanos, long endNanos) throws Exception;
+    }
+
+    // PostgREST's default max-rows; a response this long may have been cut short
+    static final int SERVER_ROW_LIMIT = 1000;
+
+    private static final double DENSITY_WEIGHT = 0.5;
+
+    private final RangeQueryOptions options;
+    private final Executor executor;
+    private final ConcurrentMap<String, StreamStats> stats = new ConcurrentHashMap<>();
+
+    RangeQueryPlanner(RangeQueryOptions options, Executor executor) {
+        this.options = options;
+        this.executor = executor;
+    }
+
+    /**
+     * Reads {@code [startNanos, endNanos]} of the stream {@code streamKey}. Chunk boundaries
+     * are multiples of {@code granularityNanos} from {@code startNanos}, for endpoints that
+     * take coarser times, and chunks overlap by at least {@code minOverlapNanos}. The result
+     * is in ascending chunk order, or descending when {@code newestFirst}, keeping each
+     * chunk's own order. With a {@code limiter}, every chunk request also waits for one of
+     * its permits; null means only {@link RangeQueryOptions#getMaxConcurrentChunks()} applies.
+     */
+    <T> CompletableFuture<List<T>> fetch(String streamKey, long startNanos, long endNanos, long granularityNanos,
+                                         long minOverlapNanos, boolean newestFirst, ToLongFunction<T> startOf,
+                                         ToLongFunction<T> endOf, ChunkFetcher<T> fetcher, RequestLimiter limiter) {
+        StreamStats streamStats = stats.computeIfAbsent(streamKey, key -> new StreamStats());
+        return new RangeQuery<>(streamStats, startNanos, endNanos, granularityNanos, minOverlapNanos, newestFirst,
+                                startOf, endOf, fetcher, limiter).start();
+    }
+
+    private final class StreamStats {
+        // Guarded by this; elements per nanosecond, or negative before the first chunk lands
+        private double density = -1;
+        private long longestNanos;
+
+        synchronized long chunkNanos() {
+            long length = density < 0 ? options.getInitialChunkNanos()
+                : density == 0 ? options.getMaxChunkNanos()
+                : (long) Math.min(Long.MAX_VALUE, options.getTargetPointsPerChunk() / density);
+            return Math.max(options.getMinChunkNanos(), Math.min(options.getMaxChunkNanos(), length));
+        }
+
+        /**
+         * Until a chunk of the stream has landed nothing is known about its point lengths,
+         * so the overlap is a whole chunk: a point up to a chunk long that crosses the
+         * boundary is still found, as it was by a single request for the range.
+         */
+        synchronized long overlapNanos(long chunkNanos) {
+            long overlap = Math.max(options.getBoundaryOverlapNanos(), longestNanos);
+            return density < 0 ? Math.max(overlap, chunkNanos) : overlap;
+        }
+
+        synchronized void record(int count, long spanNanos, long longest) {
+            double observed = count / (double) Math.max(1, spanNanos);
+            density = density < 0 ? observed : DENSITY_WEIGHT * observed + (1 - DENSITY_WEIGHT) * density;
+            longestNanos = Math.max(longestNanos, longest);
+        }
+    }
+
+    private final class RangeQuery<T> {
+        private final StreamStats streamStats;
+        private final long endNanos;
+        private final long granularityNanos;
+        private final long minOverlapNanos;
+        private final boolean newestFirst;
+        private final ToLongFunction<T> startOf;
+        private final ToLongFunction<T> endOf;
+        private final RequestLimiter limiter;
+        private final Splitter<T> splitter;
+        private final CompletableFuture<List<T>> done = new CompletableFuture<>();
+
+        // Guarded by this
+        private final List<List<T>> chunks = new ArrayList<>();
+        private long cursor;
+        private int running;
+
+        RangeQuery(StreamStats streamStats, long startNanos, long endNanos, long granularityNanos,
+                   long minOverlapNanos, boolean newestFirst, ToLongFunction<T> startOf, ToLongFunction<T> endOf,
+                   ChunkFetcher<T> fetcher, RequestLimiter limiter) {
+            this.streamStats = streamStats;
+            this.cursor = startNanos;
+            this.endNanos = endNanos;
+            this.granularityNanos = Math.max(1, granularityNanos);
+            this.minOverlapNanos = minOverlapNanos;
+            this.newestFirst = newestFirst;
+            this.startOf = startOf;
+            this.endOf = endOf;
+            this.limiter = limiter;
+            this.splitter = new Splitter<>(fetcher, this.granularityNanos, minOverlapNanos, newestFirst, startOf, endOf);
+        }
+
+        CompletableFuture<List<T>> start() {
+            pump();
+            return done;
+        }
+
+        private void pump() {
+            List<Runnable> started = new ArrayList<>();
+            synchronized (this) {
+                while (!done.isDone() && running < options.getMaxConcurrentChunks() && cursor <= endNanos) {
+                    started.add(nextChunk());
+                }
+                if (running == 0 && cursor > endNanos && !done.isDone()) {
+                    done.complete(stitch());
+                }
+            }
+            for (Runnable chunk : started) {
+                chunk.run();
+            }
+        }
+
+        /** Claims the next chunk and returns the action that sends it. Caller must hold the monitor. */
+        private Runnable nextChunk() {
+            long from = cursor;
+            long length = roundUp(streamStats.chunkNanos());
+            // A short remainder rides along with this chunk instead of becoming its own request
+            long last = endNanos - from < length + Math.max(length / 4, granularityNanos) ? endNanos : from + length - 1;
+            long overlap = roundUp(Math.max(minOverlapNanos, streamStats.overlapNanos(length)));
+            long queryEnd = last == endNanos ? endNanos : Math.min(endNanos, saturatedAdd(last, overlap));
+            int index = chunks.size();
+            chunks.add(null);
+            cursor = last == endNanos ? endNanos + 1 : last + 1;
+            running++;
+            return () -> {
+                CompletableFuture<List<T>> fetch;
+                try {
+                    fetch = limiter != null ? limiter.submit(() -> readChunk(from, last, queryEnd))
+                                            : readChunk(from, last, queryEnd);
+                } catch (RuntimeException e) {
+                    fetch = new CompletableFuture<>();
+                    fetch.completeExceptionally(e);
+                }
+                fetch.whenComplete((elements, error) -> chunkDone(index, from, last, queryEnd, elements, error));
+            };
+        }
+
+        private CompletableFuture<List<T>> readChunk(long from, long last, long queryEnd) {
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    return splitter.read(from, last, queryEnd).elements;
+                } catch (Exception e) {
+                    throw new HealthyDuckException("Failed to read chunk " + from + "-" + queryEnd, e);
+                }
+            }, executor);
+        }
+
+
+        private void chunkDone(int index, long from, long last, long queryEnd, List<T> elements, Throwable error) {
+            if (error == null) {
+                long longest = 0;
+                List<T> owned = new ArrayList<>(elements.size());
+                for (T element : elements) {
+                    long start = startOf.applyAsLong(element);
+                    longest = Math.max(longest, endOf.applyAsLong(element) - start);
+                    if (start <= last) {
+                        owned.add(element);
+                    }
+                }
+                streamStats.record(elements.size(), queryEnd - from + 1, longest);
+                synchronized (this) {
+                    chunks.set(index, owned);
+                    running--;
+                }
+                pump();
+            } else {
+                synchronized (this) {
+                    running--;
+                }
+                done.completeExceptionally(HealthyDuckClient.unwrap(error));
+            }
+        }
+
+        /** Caller must hold the monitor. */
+        private List<T> stitch() {
+            int total = 0;
+            for (List<T> chunk : chunks) {
+                total += chunk.size();
+            }
+            List<T> stitched = new ArrayList<>(total);
+            for (int i = 0; i < chunks.size(); i++) {
+                stitched.addAll(chunks.get(newestFirst ? chunks.size() - 1 - i : i));
+            }
+            return stitched;
+        }
+
+        private long roundUp(long nanos) {
+            return RangeQueryPlanner.roundUp(nanos, granularityNanos);
+        }
+    }
+
+    /** Elements read for one range, and whether every response behind them was below the row limit. */
+    static final class RangeRead<T> {
+        final List<T> elements;
+        final boolean complete;
+
+        RangeRead(List<T> elements, boolean complete) {
+            this.elements = elements;
+            this.complete = complete;
+        }
+    }
+
+    /**
+     * Reads {@code [startNanos, endNanos]} on the calling thread as one range, splitting it
+     * while the server returns a full response, like a chunk. For callers that must know
+     * the result is complete, such as the data point cache before it marks a range covered.
+     */
+    static <T> RangeRead<T> fetchWhole(long startNanos, long endNanos, ToLongFunction<T> startOf,
+                                       ToLongFunction<T> endOf, ChunkFetcher<T> fetcher) throws Exception {
+        return new Splitter<>(fetcher, 1, 0, false, startOf, endOf).read(startNanos, endNanos, endNanos);
+    }
+
+    /** Re-reads full responses as two halves, recursively, so the server's row limit loses nothing. */
+    private static final class Splitter<T> {
+        private final ChunkFetcher<T> fetcher;
+        private final long granularityNanos;
+        private final long minOverlapNanos;
+        private final boolean newestFirst;
+        private final ToLongFunction<T> startOf;
+        private final ToLongFunction<T> endOf;
+
+        Splitter(ChunkFetcher<T> fetcher, long granularityNanos, long minOverlapNanos, boolean newestFirst,
+                 ToLongFunction<T> startOf, ToLongFunction<T> endOf) {
+            this.fetcher = fetcher;
+            this.granularityNanos = granularityNanos;
+            this.minOverlapNanos = minOverlapNanos;
+            this.newestFirst = newestFirst;
+            this.startOf = startOf;
+            this.endOf = endOf;
+        }
+
+        /**
+         * Reads {@code [from, queryEnd]}, owning what starts by {@code last}, and splits it
+         * while the server returns a full response. The left half reaches past its end by
+         * the longest element in the full response and keeps only what starts inside it;
+         * the right half carries the range's own overlap. The configured overlap is not
+         * used here: it can be as long as the whole chunk, and then the left half would be
+         * no smaller. A full response that cannot be split is returned as incomplete.
+         */
+        RangeRead<T> read(long from, long last, long queryEnd) throws Exception {
+            List<T> elements = fetcher.fetch(from, queryEnd);
+            if (elements.size() < SERVER_ROW_LIMIT) {
+                return new RangeRead<>(elements, true);
+            }
+            long leftLast = from + roundUp(Math.max(1, (last - from + 1) / 2), granularityNanos) - 1;
+            if (leftLast >= last || leftLast < from) {
+                return new RangeRead<>(elements, false);
+            }
+            long longest = 0;
+            for (T element : elements) {
+                longest = Math.max(longest, endOf.applyAsLong(element) - startOf.applyAsLong(element));
+            }
+            long overlap = roundUp(Math.max(minOverlapNanos, longest), granularityNanos);
+            long leftEnd = Math.min(queryEnd, saturatedAdd(leftLast, overlap));
+            if (leftEnd >= queryEnd) {
+                // Elements as long as the range; halving cannot shrink the response
+                return new RangeRead<>(elements, false);
+            }
+            RangeRead<T> leftRead = read(from, leftLast, leftEnd);
+            List<T> left = new ArrayList<>(leftRead.elements.size());
+            for (T element : leftRead.elements) {
+                if (startOf.applyAsLong(element) <= leftLast) {
+                    left.add(element);
+                }
+            }
+            RangeRead<T> right = read(leftLast + 1, last, queryEnd);
+            List<T> whole = new ArrayList<>(left.size() + right.elements.size());
+            whole.addAll(newestFirst ? right.elements : left);
+            whole.addAll(newestFirst ? left : right.elements);
+            return new RangeRead<>(whole, leftRead.complete && right.complete);
+        }
+    }
+
+    private static long roundUp(long nanos, long granularityNanos) {
+        long rounded = (nanos + granularityNanos - 1) / granularityNanos * granularityNanos;
+        return rounded > 0 ? rounded : Long.MAX_VALUE / 2;
+    }
+
+    private static long saturatedAdd(long a, long b) {
+        long sum = a + b;
+        return ((a ^ sum) & (b ^ sum)) < 0 ? Long.MAX_VALUE : sum;
+    }
+}
@@ -0,0 +1,113 @@
+package com.ultimatequack.healthyduck.client;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-process {@link ClientMetrics}: a latency histogram and counters per operation plus
+ * client-wide gauges. Install with {@link HealthyDuckClient#setMetrics} and read the
+ * getters from a debug screen or a periodic reporter.
+ */
+public class RecordingClientMetrics implements ClientMetrics {
+    private final Map<String, OperationStats> operations = new ConcurrentHashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder cachePartialHits = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
+
+    @Override
+    public Object requestStarted(String operation) {
+        inFlight.incrementAndGet();
+        return null;
+    }
+
+    @Override
+    public void requestFinished(Object span, String operation, int statusCode, long latencyNanos,
+                                long requestBytes, Throwable error) {
+        inFlight.decrementAndGet();
+        OperationStats stats = stats(operation);
+        stats.latency.record(latencyNanos / 1000);
+        stats.requests.increment();
+        stats.bytesSent.add(requestBytes);
+        if (error != null || statusCode >= 400) {
+            stats.errors.increment();
+        }
+    }
+
+    @Override
+    public void responseBodyRead(String operation, long bytes) {
+        stats(operation).bytesReceived.add(bytes);
+    }
+
+    @Override
+    public void retryScheduled(String operation, int attempt) {
+        stats(operation).retries.increment();
+    }
+
+    @Override
+    public void hedgeSent(String operation) {
+        stats(operation).hedges.increment();
+    }
+
+    @Override
+    public void cacheHit(boolean partial) {
+        (partial ? cachePartialHits : cacheHits).increment();
+    }
+
+    @Override
+    public void cacheMiss() {
+        cacheMisses.increment();
+    }
+
+    /** Operations seen so far. */
+    public Set<String> getOperations() {
+        return Collections.unmodifiableSet(operations.keySet());
+    }
+
+    /** Stats for {@code operation}, or null when it has not been called. */
+    public OperationStats getOperation(String operation) {
+        return operations.get(operation);
+    }
+
+    /** Requests currently waiting for response headers. */
+    public int getInFlight() { return inFlight.get(); }
+
+    public long getCacheHits() { return cacheHits.sum(); }
+    public long getCachePartialHits() { return cachePartialHits.sum(); }
+    public long getCacheMisses() { return cacheMisses.sum(); }
+
+    private OperationStats stats(String operation) {
+        OperationStats stats = operations.get(operation);
+        return stats != null ? stats : operations.computeIfAbsent(operation, key -> new OperationStats());
+    }
+
+    public static final class OperationStats {
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder retries = new LongAdder();
+        private final LongAdder hedges = new LongAdder();
+        private final LongAdder bytesSent = new LongAdder();
+        private final LongAdder bytesReceived = new LongAdder();
+
+        OperationStats() {
+        }
+
+        /** Time to response headers per attempt, in microseconds. */
+        public LatencyHistogram getLatency() { return latency; }
+
+        /** Attempts sent, including retries and hedges. */
+        public long getRequests() { return requests.sum(); }
+
+        /** Attempts that failed or returned a 4xx/5xx status. */
+        public long getErrors() { return errors.sum(); }
+        public long getRetries() { return retries.sum(); }
+        public long getHedges() { return hedges.sum(); }
+        public long getBytesSent() { return bytesSent.sum(); }
+        public long getBytesReceived() { return bytesReceived.sum(); }
+    }
+}
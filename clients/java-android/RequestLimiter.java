@@ -0,0 +1,66 @@
+package com.ultimatequack.healthyduck.client;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Caps the HTTP requests in flight across everything that shares it, without blocking a
+ * thread while a request waits for a permit. Waiters are served in arrival order.
+ * {@link BulkDataPointFetch} hands one to each of its reads, so the chunk requests of a
+ * long range count against the same bound as the listings and the other reads.
+ */
+final class RequestLimiter {
+    private final int permits;
+
+    // Guarded by this
+    private final Deque<CompletableFuture<Void>> waiters = new ArrayDeque<>();
+    private int inUse;
+
+    RequestLimiter(int permits) {
+        if (permits < 1) {
+            throw new IllegalArgumentException("permits must be >= 1");
+        }
+        this.permits = permits;
+    }
+
+    /** Starts {@code request} once a permit is free and holds the permit until it completes. */
+    <T> CompletableFuture<T> submit(Supplier<CompletableFuture<T>> request) {
+        return acquire().thenCompose(ignored -> {
+            CompletableFuture<T> future;
+            try {
+                future = request.get();
+            } catch (RuntimeException e) {
+                release();
+                throw e;
+            }
+            return future.whenComplete((value, error) -> release());
+        });
+    }
+
+    private CompletableFuture<Void> acquire() {
+        synchronized (this) {
+            if (inUse < permits) {
+                inUse++;
+                return CompletableFuture.completedFuture(null);
+            }
+            CompletableFuture<Void> waiter = new CompletableFuture<>();
+            waiters.add(waiter);
+            return waiter;
+        }
+    }
+
+    private void release() {
+        CompletableFuture<Void> next;
+        synchronized (this) {
+            next = waiters.poll();
+            if (next == null) {
+                inUse--;
+                return;
+            }
+        }
+        // The permit passes straight to the next waiter; completing outside the lock
+        next.complete(null);
+    }
+}
@@ -0,0 +1,149 @@
+package com.ultimatequack.healthyduck.client;
+
+/**
+ * Timeout, hedging and retry settings applied to every request a {@link HealthyDuckClient}
+ * makes. Set with {@link HealthyDuckClient#setRequestPolicy}; do not modify an instance
+ * after handing it over.
+ */
+public class RequestPolicy {
+    private boolean adaptiveTimeouts = true;
+    private int minTimeoutMillis = 1000;
+    private int maxTimeoutMillis = 10000;
+    private double timeoutMultiplier = 3.0;
+    private boolean hedgeReads = true;
+    private int minHedgeDelayMillis = 50;
+    private int maxAttempts = 3;
+    private int baseBackoffMillis = 100;
+    private int maxBackoffMillis = 2000;
+    private double retryBudgetRatio = 0.1;
+    private int maxRetryBudget = 10;
+
+    /** Fixed timeout, no hedging and no retries: the behaviour before policies existed. */
+    public static RequestPolicy none() {
+        return new RequestPolicy().setAdaptiveTimeouts(false).setHedgeReads(false).setMaxAttempts(1);
+    }
+
+    public boolean isAdaptiveTimeouts() { return adaptiveTimeouts; }
+
+    /**
+     * Derive each endpoint's timeout from its observed p99 latency times
+     * {@link #getTimeoutMultiplier()}, bounded by the min and max timeouts. Until enough
+     * samples exist the max timeout applies.
+     */
+    public RequestPolicy setAdaptiveTimeouts(boolean adaptiveTimeouts) {
+        this.adaptiveTimeouts = adaptiveTimeouts;
+        return this;
+    }
+
+    public int getMinTimeoutMillis() { return minTimeoutMillis; }
+
+    public RequestPolicy setMinTimeoutMillis(int minTimeoutMillis) {
+        if (minTimeoutMillis < 1) {
+            throw new IllegalArgumentException("minTimeoutMillis must be >= 1");
+        }
+        this.minTimeoutMillis = minTimeoutMillis;
+        return this;
+    }
+
+    public int getMaxTimeoutMillis() { return maxTimeoutMillis; }
+
+    public RequestPolicy setMaxTimeoutMillis(int maxTimeoutMillis) {
+        if (maxTimeoutMillis < 1) {
+            throw new IllegalArgumentException("maxTimeoutMillis must be >= 1");
+        }
+        this.maxTimeoutMillis = maxTimeoutMillis;
+        return this;
+    }
+
+    public double getTimeoutMultiplier() { return timeoutMultiplier; }
+
+    public RequestPolicy setTimeoutMultiplier(double timeoutMultiplier) {
+        if (timeoutMultiplier < 1) {
+            throw new IllegalArgumentException("timeoutMultiplier must be >= 1");
+        }
+        this.timeoutMultiplier = timeoutMultiplier;
+        return this;
+    }
+
+    public boolean isHedgeReads() { return hedgeReads; }
+
+    /**
+     * Send a second copy of a GET when the first has not answered within the endpoint's
+     * p95 latency, but no sooner than {@link #getMinHedgeDelayMillis()}, and use whichever
+     * response arrives first. Hedges draw on the retry budget.
+     */
+    public RequestPolicy setHedgeReads(boolean hedgeReads) {
+        this.hedgeReads = hedgeReads;
+        return this;
+    }
+
+    public int getMinHedgeDelayMillis() { return minHedgeDelayMillis; }
+
+    /**
+     * Shortest wait before a hedge is sent. On a fast backend the p95 can be a millisecond
+     * or less, and scheduling jitter alone would then hedge most reads.
+     */
+    public RequestPolicy setMinHedgeDelayMillis(int minHedgeDelayMillis) {
+        if (minHedgeDelayMillis < 0) {
+            throw new IllegalArgumentException("minHedgeDelayMillis must be >= 0");
+        }
+        this.minHedgeDelayMillis = minHedgeDelayMillis;
+        return this;
+    }
+
+    public int getMaxAttempts() { return maxAttempts; }
+
+    /**
+     * Attempts per request, including the first. Only idempotent requests (GET, and PATCH
+     * of a dataset) are retried after a timeout or a 408/429/5xx; any request is retried
+     * when the connection could not be established.
+     */
+    public RequestPolicy setMaxAttempts(int maxAttempts) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("maxAttempts must be >= 1");
+        }
+        this.maxAttempts = maxAttempts;
+        return this;
+    }
+
+    public int getBaseBackoffMillis() { return baseBackoffMillis; }
+
+    /** Retry {@code n} waits a random time up to {@code min(max, base * 2^(n-1))}. */
+    public RequestPolicy setBaseBackoffMillis(int baseBackoffMillis) {
+        this.baseBackoffMillis = baseBackoffMillis;
+        return this;
+    }
+
+    public int getMaxBackoffMillis() { return maxBackoffMillis; }
+
+    public RequestPolicy setMaxBackoffMillis(int maxBackoffMillis) {
+        this.maxBackoffMillis = maxBackoffMillis;
+        return this;
+    }
+
+    public double getRetryBudgetRatio() { return retryBudgetRatio; }
+
+    /**
+     * Retries and hedges allowed per original request, across the whole client. When
+     * the backend is down this caps extra load at roughly this fraction instead of
+     * multiplying it by {@link #getMaxAttempts()}.
+     */
+    public RequestPolicy setRetryBudgetRatio(double retryBudgetRatio) {
+        if (retryBudgetRatio < 0) {
+            throw new IllegalArgumentException("retryBudgetRatio must be >= 0");
+        }
+        this.retryBudgetRatio = retryBudgetRatio;
+        return this;
+    }
+
+    public int getMaxRetryBudget() { return maxRetryBudget; }
+
+    /** Retries that may be saved up during quiet periods and spent in a burst. */
+    public RequestPolicy setMaxRetryBudget(int maxRetryBudget) {
+        if (maxRetryBudget < 0) {
+            throw new IllegalArgumentException("maxRetryBudget must be >= 0");
+        }
+        this.maxRetryBudget = maxRetryBudget;
+        return this;
+    }
+}
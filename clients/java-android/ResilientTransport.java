@@ -0,0 +1,348 @@
+package com.ultimatequack.healthyduck.client;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+/**
+ * Applies a {@link RequestPolicy} around another transport: per-operation adaptive
+ * timeouts, hedged GETs and budgeted retries with jittered exponential backoff.
+ *
+ * <p>Operations are keyed by method and URL path with IDs masked, e.g.
+ * {@code GET /api/fitness/v1/users/{id}/dataSources/{id}/datasets/{id}}, so a slow dataset read
+ * does not inflate the timeout of a quick data source listing. Latencies are tracked per
+ * operation and size class: the time span of a dataset read, or the size of a request
+ * body. A multi-month read therefore does not inherit a timeout learned from one-hour
+ * reads. A request that arrives with its own timeout keeps it and is not hedged.
+ */
+class ResilientTransport implements HttpTransport {
+    private static final String[] ID_PARENTS = {"users", "dataSources", "datasets", "sessions"};
+
+    private final HttpTransport delegate;
+    private final LatencyTracker latencies = new LatencyTracker();
+    private volatile RequestPolicy policy;
+    private volatile RetryBudget budget;
+    private volatile ClientMetrics metrics = ClientMetrics.NOOP;
+
+    ResilientTransport(HttpTransport delegate, RequestPolicy policy) {
+        this.delegate = delegate;
+        setPolicy(policy);
+    }
+
+    void setPolicy(RequestPolicy policy) {
+        this.budget = new RetryBudget(policy.getMaxRetryBudget());
+        this.policy = policy;
+    }
+
+    void setMetrics(ClientMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Response execute(Request request) throws IOException {
+        RequestPolicy policy = this.policy;
+        RetryBudget budget = this.budget;
+        String operation = operationKey(request.getMethod(), request.getUrl());
+        String latencyKey = latencyKey(operation, request);
+        boolean idempotent = isIdempotent(request);
+        // A caller-set timeout (e.g. a long poll) is deliberate: it is neither adapted nor hedged
+        boolean explicitTimeout = request.getTimeoutMillis() > 0;
+        boolean hedge = policy.isHedgeReads() && !explicitTimeout && "GET".equals(request.getMethod());
+        budget.deposit(policy.getRetryBudgetRatio(), policy.getMaxRetryBudget());
+
+        for (int attempt = 1; ; attempt++) {
+            Request timed = explicitTimeout ? request : withTimeout(request, timeoutFor(latencyKey, policy));
+            boolean last = attempt >= policy.getMaxAttempts();
+            Response response;
+            try {
+                response = hedge ? executeHedged(operation, latencyKey, timed, policy, budget)
+                                 : executeTimed(operation, latencyKey, timed);
+            } catch (IOException e) {
+                // A refused connection never reached the server, so even a POST is safe to resend
+                boolean retryable = (idempotent || e instanceof ConnectException)
+                    && !Thread.currentThread().isInterrupted();
+                if (last || !retryable || !budget.tryWithdraw()) {
+                    throw e;
+                }
+                metrics.retryScheduled(operation, attempt);
+                backoff(attempt, policy);
+                continue;
+            }
+            if (!last && idempotent && isRetryableStatus(response.getStatusCode()) && budget.tryWithdraw()) {
+                response.close();
+                metrics.retryScheduled(operation, attempt);
+                backoff(attempt, policy);
+                continue;
+            }
+            return response;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        delegate.close();
+    }
+
+    private Response executeTimed(String operation, String latencyKey, Request request) throws IOException {
+        ClientMetrics metrics = this.metrics;
+        long requestBytes = Math.max(0, request.getContentLength());
+        Object span = metrics.requestStarted(operation);
+        long start = System.nanoTime();
+        Response response;
+        try {
+            response = delegate.execute(request);
+        } catch (IOException | RuntimeException e) {
+            long elapsed = System.nanoTime() - start;
+            metrics.requestFinished(span, operation, -1, elapsed, requestBytes, e);
+            if (request.getTimeoutMillis() > 0 && TimeUnit.NANOSECONDS.toMillis(elapsed) >= request.getTimeoutMillis()) {
+                // Count timeouts so a slowing backend raises its own timeout instead of tripping it forever
+                latencies.record(latencyKey, TimeUnit.NANOSECONDS.toMillis(elapsed));
+            }
+            throw e;
+        }
+        long elapsed = System.nanoTime() - start;
+        latencies.record(latencyKey, TimeUnit.NANOSECONDS.toMillis(elapsed));
+        metrics.requestFinished(span, operation, response.getStatusCode(), elapsed, requestBytes, null);
+        return metrics == ClientMetrics.NOOP ? response : countingBody(response, operation, metrics);
+    }
+
+    /** Reports the bytes read from the body when the response is closed. */
+    private static Response countingBody(Response response, String operation, ClientMetrics metrics) {
+        CountingInputStream body = new CountingInputStream(response.getBody());
+        return new Response(response.getStatusCode(), response.getContentType(), body, () -> {
+            try {
+                response.close();
+            } finally {
+                metrics.responseBodyRead(operation, body.count);
+            }
+        });
+    }
+
+    /**
+     * Sends a second copy if the first has not answered within the p95 latency, or the
+     * policy's minimum hedge delay if longer; first success wins.
+     */
+    private Response executeHedged(String operation, String latencyKey, Request request, RequestPolicy policy,
+                                   RetryBudget budget) throws IOException {
+        long p95 = latencies.p95(latencyKey);
+        if (p95 < 0) {
+            return executeTimed(operation, latencyKey, request);
+        }
+        long delay = Math.max(p95, policy.getMinHedgeDelayMillis());
+        CompletableFuture<Response> primary = submit(operation, latencyKey, request);
+        try {
+            return primary.get(delay, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // Still waiting: hedge below
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return await(primary);
+        } catch (ExecutionException e) {
+            return await(primary);
+        }
+        if (!budget.tryWithdraw()) {
+            return await(primary);
+        }
+
+        CompletableFuture<Response> winner = new CompletableFuture<>();
+        AtomicInteger failures = new AtomicInteger();
+        BiConsumer<Response, Throwable> race = (response, error) -> {
+            if (error == null) {
+                if (!winner.complete(response)) {
+                    closeQuietly(response);
+                }
+            } else if (failures.incrementAndGet() == 2) {
+                winner.completeExceptionally(error);
+            }
+        };
+        primary.whenComplete(race);
+        metrics.hedgeSent(operation);
+        submit(operation, latencyKey, request).whenComplete(race);
+        return await(winner);
+    }
+
+    private CompletableFuture<Response> submit(String operation, String latencyKey, Request request) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return executeTimed(operation, latencyKey, request);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, ClientExecutors.hedgeExecutor());
+    }
+
+    private static Response await(CompletableFuture<Response> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.thenAccept(ResilientTransport::closeQuietly);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for response");
+        } catch (ExecutionException e) {
+            Throwable cause = HealthyDuckClient.unwrap(e);
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private int timeoutFor(String latencyKey, RequestPolicy policy) {
+        int max = policy.getMaxTimeoutMillis();
+        if (!policy.isAdaptiveTimeouts()) {
+            return max;
+        }
+        long p99 = latencies.p99(latencyKey);
+        if (p99 < 0) {
+            return max;
+        }
+        long adaptive = (long) Math.ceil(p99 * policy.getTimeoutMultiplier());
+        return (int) Math.max(policy.getMinTimeoutMillis(), Math.min(max, adaptive));
+    }
+
+    private static void backoff(int attempt, RequestPolicy policy) throws InterruptedIOException {
+        long cap = Math.min(policy.getMaxBackoffMillis(),
+                            (long) policy.getBaseBackoffMillis() << Math.min(attempt - 1, 20));
+        // Full jitter keeps clients that failed together from retrying together
+        long sleep = cap > 0 ? ThreadLocalRandom.current().nextLong(cap + 1) : 0;
+        try {
+            Thread.sleep(sleep);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted during retry backoff");
+        }
+    }
+
+    private static boolean isIdempotent(Request request) {
+        String method = request.getMethod();
+        // Dataset PATCHes upsert on the stored point's unique key (scripts/007), so a replay
+        // after a timeout overwrites the points the first attempt wrote instead of adding copies
+        return "GET".equals(method) || "HEAD".equals(method)
+            || ("PATCH".equals(method) && request.getUrl().contains("/datasets/"));
+    }
+
+    private static boolean isRetryableStatus(int statusCode) {
+        return statusCode == 408 || statusCode == 429 || (statusCode >= 500 && statusCode != 501);
+    }
+
+    static String operationKey(String method, String url) {
+        int pathStart = url.indexOf("://");
+        pathStart = url.indexOf('/', pathStart < 0 ? 0 : pathStart + 3);
+        if (pathStart < 0) {
+            return method + " /";
+        }
+        int query = url.indexOf('?', pathStart);
+        String[] segments = url.substring(pathStart + 1, query < 0 ? url.length() : query).split("/");
+        StringBuilder key = new StringBuilder(method).append(' ');
+        for (int i = 0; i < segments.length; i++) {
+            key.append('/');
+            key.append(i > 0 && isIdParent(segments[i - 1]) ? "{id}" : segments[i]);
+        }
+        return key.toString();
+    }
+
+    /**
+     * The operation plus a size class: powers of 4 of a request body's KiB, or for a dataset
+     * read the number of days its {@code start-end} ID spans, rounded up to a power of 4.
+     */
+    static String latencyKey(String operation, Request request) {
+        long length = request.getContentLength();
+        if (length != 0) {
+            return length < 0 ? operation + " [streamed]" : operation + " [body<=" + powerOf4(length / 1024) + "KiB]";
+        }
+        String url = request.getUrl();
+        int datasets = url.indexOf("/datasets/");
+        if (datasets < 0) {
+            return operation;
+        }
+        int idStart = datasets + "/datasets/".length();
+        int idEnd = idStart;
+        while (idEnd < url.length() && url.charAt(idEnd) != '?' && url.charAt(idEnd) != '/') {
+            idEnd++;
+        }
+        String id = url.substring(idStart, idEnd);
+        int dash = id.indexOf('-', 1);
+        try {
+            long span = Long.parseLong(id.substring(dash + 1)) - Long.parseLong(id.substring(0, dash));
+            return operation + " [span<=" + powerOf4(span / 86_400_000_000_000L) + "d]";
+        } catch (RuntimeException e) {
+            return operation;
+        }
+    }
+
+    /** Smallest power of 4 that is at least {@code value}, and at least 1. */
+    private static long powerOf4(long value) {
+        long power = 1;
+        while (power < value && power < (1L << 60)) {
+            power <<= 2;
+        }
+        return power;
+    }
+
+    private static boolean isIdParent(String segment) {
+        for (String parent : ID_PARENTS) {
+            if (parent.equals(segment)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Request withTimeout(Request request, int timeoutMillis) {
+        return request.getTimeoutMillis() == timeoutMillis ? request : request.withTimeoutMillis(timeoutMillis);
+    }
+
+    private static void closeQuietly(Response response) {
+        try {
+            response.close();
+        } catch (IOException e) {
+            // Losing hedge; nothing to report
+        }
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+}
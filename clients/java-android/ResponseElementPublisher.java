@@ -0,0 +1,198 @@
+package com.ultimatequack.healthyduck.client;
+
+import org.json.JSONObject;
+import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes the elements of one array field of a GET response, parsed one at a time as
+ * the subscriber requests them. Cold: every subscriber gets its own request, opened on
+ * its first demand.
+ *
+ * <p>Reading runs on the client's executor and only while there is outstanding demand.
+ * When demand runs out the pool thread is released and the response is left unread, so
+ * a slow subscriber holds back the server through the connection's flow control rather
+ * than through memory in the client.
+ */
+final class ResponseElementPublisher<T> implements Flow.Publisher<T> {
+
+    /** Sends the request; HTTP errors are thrown here. */
+    interface ResponseOpener {
+        HttpTransport.Response open() throws IOException;
+    }
+
+    interface ElementMapper<T> {
+        T apply(JSONObject element) throws Exception;
+    }
+
+    private final ResponseOpener opener;
+    private final ElementMapper<T> mapper;
+    private final String[] arrayFields;
+    private final Executor executor;
+    private final String failureMessage;
+
+    ResponseElementPublisher(ResponseOpener opener, ElementMapper<T> mapper, String[] arrayFields,
+                             Executor executor, String failureMessage) {
+        this.opener = opener;
+        this.mapper = mapper;
+        this.arrayFields = arrayFields;
+        this.executor = executor;
+        this.failureMessage = failureMessage;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super T> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("subscriber");
+        }
+        new ElementSubscription(subscriber).start();
+    }
+
+    private final class ElementSubscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super T> subscriber;
+        private final AtomicLong demand = new AtomicLong();
+        // Drain passes still owed; only the pass that raises it from zero runs the loop
+        private final AtomicInteger pending = new AtomicInteger(1);
+        private volatile boolean cancelled;
+        private volatile Throwable badRequest;
+
+        // Only touched by the draining thread
+        private HttpTransport.Response response;
+        private JsonArrayStreamReader elements;
+        private boolean done;
+
+        ElementSubscription(Flow.Subscriber<? super T> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        /** Delivers onSubscribe, then runs the first drain pass, so no signal overlaps it. */
+        void start() {
+            try {
+                subscriber.onSubscribe(this);
+            } catch (Throwable t) {
+                cancelled = true;
+            }
+            schedule();
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                badRequest = new IllegalArgumentException("request must be positive, was " + n);
+            } else {
+                long current;
+                long next;
+                do {
+                    current = demand.get();
+                    next = current + n < 0 ? Long.MAX_VALUE : current + n;
+                } while (!demand.compareAndSet(current, next));
+            }
+            signal();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            signal();
+        }
+
+        private void signal() {
+            if (pending.getAndIncrement() == 0) {
+                schedule();
+            }
+        }
+
+        private void schedule() {
+            try {
+                executor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                // Nothing else is draining while a pass is owed, so signalling here is serial
+                if (!done) {
+                    done = true;
+                    subscriber.onError(new HealthyDuckException(failureMessage, e));
+                }
+            }
+        }
+
+        private void drain() {
+            int owed = 1;
+            while (true) {
+                try {
+                    emit();
+                } catch (Throwable t) {
+                    // The subscriber threw, which it must not; stop as if it had cancelled
+                    cancelled = true;
+                    finish();
+                }
+                owed = pending.addAndGet(-owed);
+                if (owed == 0) {
+                    return;
+                }
+            }
+        }
+
+        private void emit() {
+            while (!done) {
+                if (cancelled) {
+                    finish();
+                    return;
+                }
+                if (badRequest != null) {
+                    fail(badRequest);
+                    return;
+                }
+                if (demand.get() == 0) {
+                    return;
+                }
+                T item;
+                try {
+                    if (elements == null) {
+                        response = opener.open();
+                        elements = new JsonArrayStreamReader(response.getBody(), arrayFields);
+                    }
+                    if (!elements.hasNext()) {
+                        finish();
+                        subscriber.onComplete();
+                        return;
+                    }
+                    item = mapper.apply(elements.next());
+                } catch (Exception e) {
+                    fail(new HealthyDuckException(failureMessage, e));
+                    return;
+                }
+                demand.decrementAndGet();
+                subscriber.onNext(item);
+            }
+        }
+
+        private void fail(Throwable error) {
+            finish();
+            subscriber.onError(error);
+        }
+
+        private void finish() {
+            if (done) {
+                return;
+            }
+            done = true;
+            try {
+                if (elements != null) {
+                    elements.close();
+                }
+            } catch (IOException e) {
+                // Nothing left to read from it
+            }
+            try {
+                if (response != null) {
+                    response.close();
+                }
+            } catch (IOException e) {
+                // Nothing left to read from it
+            }
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.ultimatequack.healthyduck.client;
+
+/**
+ * Token bucket shared by all requests of a client: every original request deposits
+ * {@code ratio} tokens (up to {@code max}) and every retry or hedge spends one. Once the
+ * bucket is empty, failures are returned to the caller instead of being retried.
+ */
+class RetryBudget {
+    private double tokens;
+
+    RetryBudget(int max) {
+        this.tokens = max;
+    }
+
+    synchronized void deposit(double ratio, int max) {
+        tokens = Math.min(max, tokens + ratio);
+    }
+
+    synchronized boolean tryWithdraw() {
+        if (tokens < 1) {
+            return false;
+        }
+        tokens -= 1;
+        return true;
+    }
+}
@@ -0,0 +1,60 @@
+package com.ultimatequack.healthyduck.client;
+
+/**
+ * Long-poll and paging settings for {@link IncrementalSync}.
+ */
+public class SyncOptions {
+    private int longPollMillis = 20000;
+    private int pageSize = 500;
+    private int errorBackoffMillis = 1000;
+    private int maxErrorBackoffMillis = 60000;
+
+    public int getLongPollMillis() { return longPollMillis; }
+
+    /**
+     * How long the server holds a request open when there are no changes. The server caps
+     * this at 25 seconds; 0 turns long polling into plain polling.
+     */
+    public SyncOptions setLongPollMillis(int longPollMillis) {
+        if (longPollMillis < 0) {
+            throw new IllegalArgumentException("longPollMillis must be >= 0");
+        }
+        this.longPollMillis = longPollMillis;
+        return this;
+    }
+
+    public int getPageSize() { return pageSize; }
+
+    /**
+     * Maximum changes per response; a full page is followed up immediately. The server caps
+     * it at 999, one below PostgREST's row limit.
+     */
+    public SyncOptions setPageSize(int pageSize) {
+        if (pageSize < 1 || pageSize > 999) {
+            throw new IllegalArgumentException("pageSize must be between 1 and 999");
+        }
+        this.pageSize = pageSize;
+        return this;
+    }
+
+    public int getErrorBackoffMillis() { return errorBackoffMillis; }
+
+    /** First delay before a subscription retries a failed poll; doubles per consecutive failure. */
+    public SyncOptions setErrorBackoffMillis(int errorBackoffMillis) {
+        if (errorBackoffMillis < 0) {
+            throw new IllegalArgumentException("errorBackoffMillis must be >= 0");
+        }
+        this.errorBackoffMillis = errorBackoffMillis;
+        return this;
+    }
+
+    public int getMaxErrorBackoffMillis() { return maxErrorBackoffMillis; }
+
+    public SyncOptions setMaxErrorBackoffMillis(int maxErrorBackoffMillis) {
+        if (maxErrorBackoffMillis < 0) {
+            throw new IllegalArgumentException("maxErrorBackoffMillis must be >= 0");
+        }
+        this.maxErrorBackoffMillis = maxErrorBackoffMillis;
+        return this;
+    }
+}
@@ -0,0 +1,450 @@
+package com.ultimatequack.healthyduck.client;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * One day of one data type for one user in a {@link LocalTimeSeriesStore}: an
+ * append-only file of {@code [int length][int crc32][payload]} records, as in
+ * {@link WriteAheadLog}, behind an 8-byte header.
+ *
+ * <p>Records are appended in arrival order, not time order, so the sparse index keeps
+ * the min and max start time of every block of {@code indexStride} records and a query
+ * only reads the blocks whose range overlaps it. Reads go through a read-only memory
+ * mapping of the file that is extended when appends outgrow it.
+ *
+ * <p>A point is identified by (data source, start, end). A newer version, by
+ * {@code modifiedTimeMillis}, is appended and marks the old record dead; older or equal
+ * versions are not written at all. A modified time of 0 marks a pending local write: it
+ * replaces another pending write of the same point, and loses to any server copy. {@link #compact()} rewrites the file without dead
+ * records. Not thread-safe; the store serialises access.
+ */
+final class TimeSeriesSegment implements Closeable {
+    private static final byte[] MAGIC = {'H', 'D', 'T', 'S'};
+    private static final int VERSION = 1;
+    private static final int FILE_HEADER_BYTES = 8;
+    private static final int RECORD_HEADER_BYTES = 8;
+    // start, end, modified, value kind, value bits
+    private static final int FIXED_PAYLOAD_BYTES = 8 + 8 + 8 + 1 + 8;
+    private static final int MAX_RECORD_BYTES = 1024 * 1024;
+
+    /** One decoded record. */
+    static final class Row {
+        String dataSourceId;
+        // Not stored per record: every record of a segment has the segment's type
+        String dataTypeName;
+        long startTimeNanos;
+        long endTimeNanos;
+        long modifiedTimeMillis;
+        byte valueKind;
+        long intVal;
+        double fpVal;
+        String stringVal;
+        String originDataSourceId;
+    }
+
+    private final File file;
+    private final String dataTypeName;
+    private final int indexStride;
+    private final boolean syncEachWrite;
+    private FileChannel channel;
+    private MappedByteBuffer map;
+    private long length;
+
+    // Sparse index: block i starts at blockOffset[i] and its records start within [blockMin[i], blockMax[i]]
+    private long[] blockOffset = new long[8];
+    private long[] blockMin = new long[8];
+    private long[] blockMax = new long[8];
+    private int blocks;
+    private int recordsInLastBlock;
+
+    private final Map<PointKey, Version> live = new HashMap<>();
+    private final Set<Long> deadOffsets = new HashSet<>();
+    private int records;
+
+    TimeSeriesSegment(File file, String dataTypeName, int indexStride, boolean syncEachWrite) throws IOException {
+        this.file = file;
+        this.dataTypeName = dataTypeName;
+        this.indexStride = indexStride;
+        this.syncEachWrite = syncEachWrite;
+        open();
+    }
+
+    String getDataTypeName() {
+        return dataTypeName;
+    }
+
+    int liveRecords() {
+        return live.size();
+    }
+
+    int deadRecords() {
+        return records - live.size();
+    }
+
+    Set<String> dataSourceIds() {
+        Set<String> ids = new HashSet<>();
+        for (PointKey key : live.keySet()) {
+            ids.add(key.dataSourceId);
+        }
+        return ids;
+    }
+
+    /**
+     * Appends the rows that are new or newer than the stored version of the same point.
+     * Returns how many were written.
+     */
+    int append(List<Row> rows) throws IOException {
+        ByteBuffer buffer = null;
+        int written = 0;
+        for (Row row : rows) {
+            PointKey key = new PointKey(row.dataSourceId, row.startTimeNanos, row.endTimeNanos);
+            Version current = live.get(key);
+            if (current != null && !supersedes(row.modifiedTimeMillis, current.modifiedTimeMillis)) {
+                continue;
+            }
+            byte[] payload = encode(row);
+            int size = RECORD_HEADER_BYTES + payload.length;
+            if (buffer == null || buffer.capacity() < size) {
+                buffer = ByteBuffer.allocate(Math.max(size, 4096));
+            }
+            buffer.clear();
+            buffer.putInt(payload.length).putInt(crc(payload, 0, payload.length)).put(payload).flip();
+            long offset = length;
+            while (buffer.hasRemaining()) {
+                channel.write(buffer, length + buffer.position());
+            }
+            length += size;
+            if (current != null) {
+                deadOffsets.add(current.offset);
+            }
+            live.put(key, new Version(row.modifiedTimeMillis, offset));
+            index(offset, row.startTimeNanos);
+            records++;
+            written++;
+        }
+        if (written > 0 && syncEachWrite) {
+            channel.force(false);
+        }
+        return written;
+    }
+
+    /** Pending local writes (0) replace each other; otherwise only a newer version is kept. */
+    private static boolean supersedes(long incoming, long stored) {
+        return incoming > stored || incoming == 0 && stored == 0;
+    }
+
+    /**
+     * Adds the live records starting in {@code [startMin, startMax]} and ending by
+     * {@code endMax} to {@code out}; {@code dataSourceId} null means every source.
+     */
+    void scan(long startMin, long startMax, long endMax, String dataSourceId, List<Row> out) throws IOException {
+        ByteBuffer view = mapped();
+        byte[] wanted = dataSourceId != null ? dataSourceId.getBytes(StandardCharsets.UTF_8) : null;
+        for (int b = 0; b < blocks; b++) {
+            if (blockMin[b] > startMax || blockMax[b] < startMin) {
+                continue;
+            }
+            long blockEnd = b + 1 < blocks ? blockOffset[b + 1] : length;
+            int position = (int) blockOffset[b];
+            while (position < blockEnd) {
+                int payloadLength = view.getInt(position);
+                int payload = position + RECORD_HEADER_BYTES;
+                long start = view.getLong(payload);
+                long end = view.getLong(payload + 8);
+                if (start >= startMin && start <= startMax && end <= endMax
+                        && (deadOffsets.isEmpty() || !deadOffsets.contains((long) position))
+                        && (wanted == null || sourceMatches(view, payload + FIXED_PAYLOAD_BYTES, wanted))) {
+                    Row row = decode(view, payload);
+                    row.dataTypeName = dataTypeName;
+                    out.add(row);
+                }
+                position = payload + payloadLength;
+            }
+        }
+    }
+
+    /** Rewrites the file with live records only; returns how many dead records were dropped. */
+    int compact() throws IOException {
+        int dropped = deadRecords();
+        if (dropped == 0) {
+            return 0;
+        }
+        List<Row> rows = new ArrayList<>(live.size());
+        scan(Long.MIN_VALUE, Long.MAX_VALUE, Long.MAX_VALUE, null, rows);
+        // Written in time order, so each index block covers a narrow range
+        rows.sort(Comparator.comparingLong((Row row) -> row.startTimeNanos).thenComparingLong(row -> row.endTimeNanos));
+        File temp = new File(file.getPath() + ".tmp");
+        if (temp.exists() && !temp.delete()) {
+            throw new IOException("Cannot delete stale " + temp);
+        }
+        try (TimeSeriesSegment rewritten = new TimeSeriesSegment(temp, dataTypeName, indexStride, false)) {
+            rewritten.append(rows);
+            rewritten.channel.force(false);
+        }
+        close();
+        if (!temp.renameTo(file) && (!file.delete() || !temp.renameTo(file))) {
+            throw new IOException("Cannot replace " + file + " with its compacted copy");
+        }
+        open();
+        return dropped;
+    }
+
+    @Override
+    public void close() throws IOException {
+        map = null;
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    private void open() throws IOException {
+        live.clear();
+        deadOffsets.clear();
+        records = 0;
+        blocks = 0;
+        recordsInLastBlock = 0;
+        map = null;
+        channel = new RandomAccessFile(file, "rw").getChannel();
+        try {
+            recover();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Validates the header, indexes every intact record and truncates the file at the
+     * first torn or corrupt one, which is what a crash in the middle of an append leaves.
+     * A file with a bad header is started over: the store only mirrors server data and
+     * writes that are still held by the offline queue.
+     */
+    private void recover() throws IOException {
+        long size = channel.size();
+        if (size < FILE_HEADER_BYTES || !hasValidHeader()) {
+            channel.truncate(0);
+            ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_BYTES);
+            header.put(MAGIC).put((byte) VERSION).flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            length = FILE_HEADER_BYTES;
+            return;
+        }
+
+        length = size;
+        ByteBuffer view = mapped();
+        int position = FILE_HEADER_BYTES;
+        while (position + RECORD_HEADER_BYTES <= size) {
+            int payloadLength = view.getInt(position);
+            int payload = position + RECORD_HEADER_BYTES;
+            if (payloadLength < FIXED_PAYLOAD_BYTES || payloadLength > MAX_RECORD_BYTES
+                    || payload + (long) payloadLength > size
+                    || crc(view, payload, payloadLength) != view.getInt(position + 4)) {
+                break;
+            }
+            Row row = decode(view, payload);
+            PointKey key = new PointKey(row.dataSourceId, row.startTimeNanos, row.endTimeNanos);
+            Version current = live.get(key);
+            // Appends only ever supersede, so a later record always replaces an earlier one
+            if (current != null) {
+                deadOffsets.add(current.offset);
+            }
+            live.put(key, new Version(row.modifiedTimeMillis, position));
+            index(position, row.startTimeNanos);
+            records++;
+            position = payload + payloadLength;
+        }
+        if (position < size) {
+            map = null;
+            channel.truncate(position);
+        }
+        length = position;
+    }
+
+    private boolean hasValidHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_BYTES);
+        while (header.hasRemaining() && channel.read(header, header.position()) >= 0) {
+            // Fill the header
+        }
+        return !header.hasRemaining()
+            && Arrays.equals(Arrays.copyOf(header.array(), MAGIC.length), MAGIC)
+            && header.get(MAGIC.length) == VERSION;
+    }
+
+    /** The read-only mapping, remapped when appends have grown the file past it. */
+    private ByteBuffer mapped() throws IOException {
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("Segment too large to map: " + file);
+        }
+        if (map == null || map.capacity() < length) {
+            map = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+        }
+        return map;
+    }
+
+    private void index(long offset, long startNanos) {
+        if (blocks == 0 || recordsInLastBlock == indexStride) {
+            if (blocks == blockOffset.length) {
+                blockOffset = Arrays.copyOf(blockOffset, blocks * 2);
+                blockMin = Arrays.copyOf(blockMin, blocks * 2);
+                blockMax = Arrays.copyOf(blockMax, blocks * 2);
+            }
+            blockOffset[blocks] = offset;
+            blockMin[blocks] = startNanos;
+            blockMax[blocks] = startNanos;
+            blocks++;
+            recordsInLastBlock = 0;
+        }
+        int last = blocks - 1;
+        blockMin[last] = Math.min(blockMin[last], startNanos);
+        blockMax[last] = Math.max(blockMax[last], startNanos);
+        recordsInLastBlock++;
+    }
+
+    private static byte[] encode(Row row) {
+        byte[] source = utf8(row.dataSourceId);
+        byte[] origin = utf8(row.originDataSourceId);
+        byte[] string = utf8(row.stringVal);
+        ByteBuffer payload = ByteBuffer.allocate(FIXED_PAYLOAD_BYTES + 12 + length(source) + length(origin)
+                                                 + length(string));
+        payload.putLong(row.startTimeNanos).putLong(row.endTimeNanos).putLong(row.modifiedTimeMillis)
+            .put(row.valueKind)
+            .putLong(row.valueKind == DataPointColumns.VALUE_FP ? Double.doubleToRawLongBits(row.fpVal) : row.intVal);
+        putString(payload, source);
+        putString(payload, origin);
+        putString(payload, string);
+        return payload.array();
+    }
+
+    private static Row decode(ByteBuffer view, int payload) {
+        Row row = new Row();
+        row.startTimeNanos = view.getLong(payload);
+        row.endTimeNanos = view.getLong(payload + 8);
+        row.modifiedTimeMillis = view.getLong(payload + 16);
+        row.valueKind = view.get(payload + 24);
+        long bits = view.getLong(payload + 25);
+        if (row.valueKind == DataPointColumns.VALUE_FP) {
+            row.fpVal = Double.longBitsToDouble(bits);
+        } else {
+            row.intVal = bits;
+        }
+        int position = payload + FIXED_PAYLOAD_BYTES;
+        row.dataSourceId = getString(view, position);
+        position += 4 + Math.max(0, view.getInt(position));
+        row.originDataSourceId = getString(view, position);
+        position += 4 + Math.max(0, view.getInt(position));
+        row.stringVal = getString(view, position);
+        return row;
+    }
+
+    private static boolean sourceMatches(ByteBuffer view, int position, byte[] wanted) {
+        if (view.getInt(position) != wanted.length) {
+            return false;
+        }
+        for (int i = 0; i < wanted.length; i++) {
+            if (view.get(position + 4 + i) != wanted[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] utf8(String value) {
+        return value != null ? value.getBytes(StandardCharsets.UTF_8) : null;
+    }
+
+    private static int length(byte[] bytes) {
+        return bytes != null ? bytes.length : 0;
+    }
+
+    /** Length-prefixed UTF-8; length -1 is null. */
+    private static void putString(ByteBuffer buffer, byte[] bytes) {
+        if (bytes == null) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(bytes.length).put(bytes);
+        }
+    }
+
+    private static String getString(ByteBuffer view, int position) {
+        int length = view.getInt(position);
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        ByteBuffer slice = view.duplicate();
+        slice.position(position + 4);
+        slice.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int crc(byte[] bytes, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, offset, length);
+        return (int) crc.getValue();
+    }
+
+    private static int crc(ByteBuffer view, int offset, int length) {
+        byte[] bytes = new byte[length];
+        ByteBuffer slice = view.duplicate();
+        slice.position(offset);
+        slice.get(bytes);
+        return crc(bytes, 0, length);
+    }
+
+    private static final class PointKey {
+        final String dataSourceId;
+        final long startTimeNanos;
+        final long endTimeNanos;
+
+        PointKey(String dataSourceId, long startTimeNanos, long endTimeNanos) {
+            this.dataSourceId = dataSourceId;
+            this.startTimeNanos = startTimeNanos;
+            this.endTimeNanos = endTimeNanos;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof PointKey)) {
+                return false;
+            }
+            PointKey key = (PointKey) other;
+            return startTimeNanos == key.startTimeNanos && endTimeNanos == key.endTimeNanos
+                && Objects.equals(dataSourceId, key.dataSourceId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(dataSourceId, startTimeNanos, endTimeNanos);
+        }
+    }
+
+    private static final class Version {
+        final long modifiedTimeMillis;
+        final long offset;
+
+        Version(long modifiedTimeMillis, long offset) {
+            this.modifiedTimeMillis = modifiedTimeMillis;
+            this.offset = offset;
+        }
+    }
+}
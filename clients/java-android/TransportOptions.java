@@ -0,0 +1,41 @@
+package com.ultimatequack.healthyduck.client;
+
+/**
+ * Connection settings for the default {@link HttpTransport} engines.
+ */
+public class TransportOptions {
+    private int maxConnectionsPerHost = 8;
+    private int connectTimeoutMillis = 10000;
+    private boolean preferHttp2 = true;
+
+    public int getMaxConnectionsPerHost() { return maxConnectionsPerHost; }
+
+    /**
+     * Upper bound on concurrent requests to a single host. With HTTP/1.1 this is the
+     * number of pooled keep-alive connections; with HTTP/2 it bounds multiplexed streams.
+     * {@link UrlConnectionTransport} only keeps {@code http.maxConnections} of them idle,
+     * which the app has to raise itself; see that class.
+     */
+    public TransportOptions setMaxConnectionsPerHost(int maxConnectionsPerHost) {
+        if (maxConnectionsPerHost < 1) {
+            throw new IllegalArgumentException("maxConnectionsPerHost must be >= 1");
+        }
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+        return this;
+    }
+
+    public int getConnectTimeoutMillis() { return connectTimeoutMillis; }
+
+    public TransportOptions setConnectTimeoutMillis(int connectTimeoutMillis) {
+        this.connectTimeoutMillis = connectTimeoutMillis;
+        return this;
+    }
+
+    public boolean isPreferHttp2() { return preferHttp2; }
+
+    /** Use {@code java.net.http.HttpClient} with HTTP/2 when the runtime provides it. */
+    public TransportOptions setPreferHttp2(boolean preferHttp2) {
+        this.preferHttp2 = preferHttp2;
+        return this;
+    }
+}
@@ -0,0 +1,113 @@
+package com.ultimatequack.healthyduck.client;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Map;
+
+/**
+ * {@link HttpURLConnection} engine. Works on every Android version; connections are
+ * kept alive and reused by the platform as long as each response body is fully consumed
+ * and closed, which {@link HttpTransport.Response#close()} takes care of.
+ * Note that the desktop JDK implementation rejects {@code PATCH}; only Android's supports it.
+ *
+ * <p>The platform keeps at most {@code http.maxConnections} idle sockets per host (5 by
+ * default). That property is process-wide and shared with every other
+ * {@link HttpURLConnection} user in the app, so this class does not touch it. If
+ * {@link TransportOptions#getMaxConnectionsPerHost()} is raised above 5, set the property
+ * to match once at app startup, before the first connection is opened; otherwise the extra
+ * connections are closed after each response instead of being reused.
+ */
+public class UrlConnectionTransport implements HttpTransport {
+    private static final int MAX_DRAIN_BYTES = 64 * 1024;
+
+    private final TransportOptions options;
+    private final HostConnectionLimiter limiter;
+
+    public UrlConnectionTransport(TransportOptions options) {
+        this.options = options;
+        this.limiter = new HostConnectionLimiter(options.getMaxConnectionsPerHost());
+    }
+
+    @Override
+    public Response execute(Request request) throws IOException {
+        Closeable permit = limiter.acquire(request.getUrl());
+        HttpURLConnection connection = null;
+        try {
+            connection = (HttpURLConnection) new URL(request.getUrl()).openConnection();
+            connection.setRequestMethod(request.getMethod());
+            connection.setRequestProperty("Connection", "keep-alive");
+            for (Map.Entry<String, String> header : request.getHeaders().entrySet()) {
+                connection.setRequestProperty(header.getKey(), header.getValue());
+            }
+            connection.setConnectTimeout(options.getConnectTimeoutMillis());
+            connection.setReadTimeout(request.getTimeoutMillis());
+
+            HttpTransport.StreamingBody streaming = request.getStreamingBody();
+            byte[] body = streaming == null ? request.getBody() : null;
+            if (streaming != null) {
+                connection.setDoOutput(true);
+                long length = streaming.contentLength();
+                // The long overload needs API 19; no request body comes near 2 GiB
+                if (length >= 0 && length <= Integer.MAX_VALUE) {
+                    connection.setFixedLengthStreamingMode((int) length);
+                } else {
+                    connection.setChunkedStreamingMode(0);
+                }
+                try (OutputStream os = connection.getOutputStream()) {
+                    streaming.writeTo(os);
+                }
+            } else if (body != null && body.length > 0) {
+                connection.setDoOutput(true);
+                connection.setFixedLengthStreamingMode(body.length);
+                try (OutputStream os = connection.getOutputStream()) {
+                    os.write(body, 0, body.length);
+                }
+            }
+
+            int responseCode = connection.getResponseCode();
+            InputStream stream = responseCode >= 200 && responseCode < 300
+                ? connection.getInputStream()
+                : connection.getErrorStream();
+            InputStream responseBody = stream != null ? stream : new ByteArrayInputStream(new byte[0]);
+            return new Response(responseCode, connection.getContentType(), responseBody, () -> {
+                try {
+                    drain(responseBody);
+                } finally {
+                    permit.close();
+                }
+            });
+        } catch (IOException | RuntimeException e) {
+            if (connection != null) {
+                connection.disconnect();
+            }
+            permit.close();
+            throw e;
+        }
+    }
+
+    /** Reads what is left of a body so the socket can be handed back to the keep-alive cache. */
+    private static void drain(InputStream stream) throws IOException {
+        try {
+            byte[] buffer = new byte[4096];
+            int total = 0;
+            int read;
+            while (total < MAX_DRAIN_BYTES && (read = stream.read(buffer)) != -1) {
+                total += read;
+            }
+        } catch (IOException e) {
+            // Already closed by a streaming reader, or broken; either way there is nothing to reuse
+        } finally {
+            stream.close();
+        }
+    }
+
+    @Override
+    public void close() {
+        // Pooled sockets belong to the platform keep-alive cache and expire on their own.
+    }
+}
@@ -0,0 +1,283 @@
+package com.ultimatequack.healthyduck.client;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only, segmented record log on local storage.
+ *
+ * <p>Records are framed as {@code [int length][int crc32][payload]} and appended to the
+ * newest segment file; a new segment starts once the current one passes the segment size.
+ * A separate checkpoint file remembers the position of the first unconsumed record and is
+ * replaced atomically (write + rename). Segments entirely before the checkpoint are deleted,
+ * so the log only holds what has not been acknowledged yet.
+ *
+ * <p>On open, the tail of the newest segment is validated and truncated at the first torn
+ * or corrupt record, which is what a crash in the middle of an append leaves behind.
+ *
+ * <p>Not thread-safe; {@link OfflineWriteQueue} serialises access.
+ */
+class WriteAheadLog implements Closeable {
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".wal";
+    private static final String CHECKPOINT = "checkpoint";
+    private static final int HEADER_BYTES = 8;
+    private static final int MAX_RECORD_BYTES = 16 * 1024 * 1024;
+
+    /** A record read from the log, with the position just after it. */
+    static final class Entry {
+        final byte[] payload;
+        final Position next;
+
+        Entry(byte[] payload, Position next) {
+            this.payload = payload;
+            this.next = next;
+        }
+    }
+
+    static final class Position {
+        final long segment;
+        final long offset;
+
+        Position(long segment, long offset) {
+            this.segment = segment;
+            this.offset = offset;
+        }
+    }
+
+    private final File directory;
+    private final long segmentBytes;
+    private final long maxBytes;
+    private final boolean syncEachAppend;
+    private final List<Long> segments = new ArrayList<>();
+    private FileChannel tail;
+    private long tailSegment;
+    private Position checkpoint;
+
+    WriteAheadLog(File directory, long segmentBytes, long maxBytes, boolean syncEachAppend) throws IOException {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.maxBytes = maxBytes;
+        this.syncEachAppend = syncEachAppend;
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create log directory " + directory);
+        }
+        recover();
+    }
+
+    /** Appends a record; throws when the log would exceed its size bound. */
+    void append(byte[] payload) throws IOException {
+        if (payload.length > MAX_RECORD_BYTES) {
+            throw new IOException("Record too large: " + payload.length + " bytes");
+        }
+        long recordBytes = HEADER_BYTES + payload.length;
+        if (sizeOnDisk() + recordBytes > maxBytes) {
+            throw new HealthyDuckException("Offline queue is full (" + maxBytes + " bytes)");
+        }
+        if (tail.size() > 0 && tail.size() + recordBytes > segmentBytes) {
+            rollSegment();
+        }
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+        ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + payload.length);
+        record.putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+        long position = tail.size();
+        while (record.hasRemaining()) {
+            position += tail.write(record, position);
+        }
+        if (syncEachAppend) {
+            tail.force(false);
+        }
+    }
+
+    /** Reads up to {@code max} records starting at the checkpoint without consuming them. */
+    List<Entry> peek(int max) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        Position cursor = checkpoint;
+        while (entries.size() < max) {
+            Entry entry = readAt(cursor);
+            if (entry == null) {
+                int index = segments.indexOf(cursor.segment);
+                if (index < 0 || index + 1 >= segments.size()) {
+                    break;
+                }
+                cursor = new Position(segments.get(index + 1), 0);
+                continue;
+            }
+            entries.add(entry);
+            cursor = entry.next;
+        }
+        return entries;
+    }
+
+    /** Marks everything before {@code position} as consumed and drops finished segments. */
+    void commit(Position position) throws IOException {
+        if (position.segment == tailSegment && position.offset > 0 && position.offset == tail.size()) {
+            // Fully drained: start a fresh segment so the old one can be deleted
+            rollSegment();
+            position = new Position(tailSegment, 0);
+        }
+        writeCheckpoint(position);
+        checkpoint = position;
+        while (segments.size() > 1 && segments.get(0) < position.segment) {
+            File segment = segmentFile(segments.remove(0));
+            if (!segment.delete() && segment.exists()) {
+                throw new IOException("Cannot delete " + segment);
+            }
+        }
+    }
+
+    boolean isEmpty() throws IOException {
+        return peek(1).isEmpty();
+    }
+
+    long sizeOnDisk() throws IOException {
+        long total = 0;
+        for (long segment : segments) {
+            total += segment == tailSegment ? tail.size() : segmentFile(segment).length();
+        }
+        return total - (checkpoint.segment == segments.get(0) ? checkpoint.offset : 0);
+    }
+
+    @Override
+    public void close() throws IOException {
+        tail.force(true);
+        tail.close();
+    }
+
+    private void recover() throws IOException {
+        File[] files = directory.listFiles((dir, name) -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+        if (files != null) {
+            for (File file : files) {
+                String name = file.getName();
+                segments.add(Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+            }
+        }
+        Collections.sort(segments);
+        if (segments.isEmpty()) {
+            segments.add(0L);
+        }
+
+        checkpoint = readCheckpoint();
+        if (checkpoint == null || !segments.contains(checkpoint.segment)) {
+            checkpoint = new Position(segments.get(0), 0);
+        }
+
+        tailSegment = segments.get(segments.size() - 1);
+        tail = new RandomAccessFile(segmentFile(tailSegment), "rw").getChannel();
+        long valid = 0;
+        Entry entry;
+        while ((entry = readAt(new Position(tailSegment, valid))) != null) {
+            valid = entry.next.offset;
+        }
+        if (tail.size() > valid) {
+            tail.truncate(valid);
+            tail.force(true);
+        }
+    }
+
+    private void rollSegment() throws IOException {
+        tail.force(true);
+        tail.close();
+        tailSegment++;
+        segments.add(tailSegment);
+        tail = new RandomAccessFile(segmentFile(tailSegment), "rw").getChannel();
+    }
+
+    /** Returns the record at {@code position}, or null at the end of the segment or a damaged record. */
+    private Entry readAt(Position position) throws IOException {
+        boolean isTail = position.segment == tailSegment && tail != null && tail.isOpen();
+        FileChannel channel = isTail ? tail : new RandomAccessFile(segmentFile(position.segment), "r").getChannel();
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            if (readFully(channel, header, position.offset) < HEADER_BYTES) {
+                return null;
+            }
+            header.flip();
+            int length = header.getInt();
+            int checksum = header.getInt();
+            if (length < 0 || length > MAX_RECORD_BYTES) {
+                return null;
+            }
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            if (readFully(channel, payload, position.offset + HEADER_BYTES) < length) {
+                return null;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(payload.array(), 0, length);
+            if ((int) crc.getValue() != checksum) {
+                return null;
+            }
+            return new Entry(payload.array(), new Position(position.segment, position.offset + HEADER_BYTES + length));
+        } finally {
+            if (!isTail) {
+                channel.close();
+            }
+        }
+    }
+
+    private static int readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        int total = 0;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + total);
+            if (read < 0) {
+                break;
+            }
+            total += read;
+        }
+        return total;
+    }
+
+    private Position readCheckpoint() throws IOException {
+        File file = new File(directory, CHECKPOINT);
+        if (!file.exists()) {
+            return null;
+        }
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            if (in.length() < 20) {
+                return null;
+            }
+            long segment = in.readLong();
+            long offset = in.readLong();
+            int checksum = in.readInt();
+            return checksum == checkpointChecksum(segment, offset) ? new Position(segment, offset) : null;
+        }
+    }
+
+    private void writeCheckpoint(Position position) throws IOException {
+        File temp = new File(directory, CHECKPOINT + ".tmp");
+        try (RandomAccessFile out = new RandomAccessFile(temp, "rw")) {
+            out.setLength(0);
+            out.writeLong(position.segment);
+            out.writeLong(position.offset);
+            out.writeInt(checkpointChecksum(position.segment, position.offset));
+            out.getChannel().force(true);
+        }
+        File target = new File(directory, CHECKPOINT);
+        if (!temp.renameTo(target)) {
+            // Some filesystems refuse to rename over an existing file
+            if (!target.delete() || !temp.renameTo(target)) {
+                throw new IOException("Cannot replace checkpoint in " + directory);
+            }
+        }
+    }
+
+    private static int checkpointChecksum(long segment, long offset) {
+        CRC32 crc = new CRC32();
+        crc.update(ByteBuffer.allocate(16).putLong(segment).putLong(offset).array());
+        return (int) crc.getValue();
+    }
+
+    private File segmentFile(long segment) {
+        return new File(directory, SEGMENT_PREFIX + String.format(Locale.ROOT, "%020d", segment) + SEGMENT_SUFFIX);
+    }
+}
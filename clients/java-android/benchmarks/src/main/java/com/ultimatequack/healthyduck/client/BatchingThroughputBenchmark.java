@@ -0,0 +1,93 @@
+package com.ultimatequack.healthyduck.client;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Points per second sent to {@link StubServer}, one PATCH per point versus
+ * {@link DataPointBatcher}. Each invocation writes {@value #POINTS} points to one stream and
+ * waits until all of them have landed; the score is in points per second.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+@State(Scope.Benchmark)
+public class BatchingThroughputBenchmark {
+    static final int POINTS = 1000;
+
+    @Param({"100", "500"})
+    public int maxBatchSize;
+
+    private StubServer server;
+    private HealthyDuckClient client;
+    private DataPointBatcher batcher;
+    private DataPoint[] points;
+    private String[] datasetIds;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        server = new StubServer(10);
+        // JdkHttpClientTransport, since the desktop HttpURLConnection rejects PATCH
+        client = new HealthyDuckClient(null, server.baseUrl(), "benchmark-token",
+                                       new JdkHttpClientTransport(new TransportOptions()));
+        client.setRequestPolicy(RequestPolicy.none());
+        // Only size and explicit flushes send a batch
+        batcher = client.newBatchingWriter(new BatchOptions()
+            .setMaxBatchSize(maxBatchSize)
+            .setLingerMillis(60000)
+            .setMaxBufferedPoints(POINTS * 2));
+        points = new DataPoint[POINTS];
+        datasetIds = new String[POINTS];
+        for (int i = 0; i < POINTS; i++) {
+            points[i] = DataPoint.fromJson(Fixtures.dataPoint(i));
+            datasetIds[i] = points[i].getStartTimeNanos() + "-" + points[i].getEndTimeNanos();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        batcher.close();
+        client.close();
+        server.close();
+    }
+
+    /** What callers did before the batcher: every point is its own insertDataPoints call. */
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public void unbatched() {
+        CompletableFuture<?>[] sent = new CompletableFuture<?>[POINTS];
+        for (int i = 0; i < POINTS; i++) {
+            sent[i] = client.insertDataPoints(Fixtures.USER_ID, Fixtures.DATA_SOURCE_ID, datasetIds[i],
+                                              Collections.singletonList(points[i]));
+        }
+        CompletableFuture.allOf(sent).join();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public void batched() {
+        CompletableFuture<?>[] sent = new CompletableFuture<?>[POINTS];
+        for (int i = 0; i < POINTS; i++) {
+            sent[i] = batcher.add(Fixtures.USER_ID, Fixtures.DATA_SOURCE_ID, points[i]);
+        }
+        batcher.flush();
+        CompletableFuture.allOf(sent).join();
+    }
+}
@@ -0,0 +1,134 @@
+package com.ultimatequack.healthyduck.client;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * {@link DataPointColumns} against {@code List<DataPoint>} holding the same dataset.
+ *
+ * <p>Scan speed is the benchmark score: summing the step counts of one data type, the
+ * typical analytics loop. Heap footprint is not something JMH measures, so the trial
+ * setup measures the retained heap of each form and prints it once per fork, as
+ * {@code # footprint ...} lines above the iteration output. The numbers come from the
+ * heap usage after forced GCs, so run with a fixed heap ({@code -jvmArgs -Xms2g -Xmx2g}).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class ColumnarFootprintBenchmark {
+    private static final String STEPS = "com.ultimatequack.step_count.delta";
+
+    @Param({"10000", "100000"})
+    public int points;
+
+    private List<DataPoint> list;
+    private DataPointColumns columns;
+    private int stepsCode;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        long listBytes = retainedBytes(this::buildList);
+        long columnBytes = retainedBytes(this::buildColumns);
+        System.out.printf(Locale.ROOT, "%n# footprint of %d points: list %d bytes (%.1f/point), columns %d bytes (%.1f/point)%n",
+            points, listBytes, (double) listBytes / points, columnBytes, (double) columnBytes / points);
+
+        list = buildList();
+        columns = buildColumns();
+        stepsCode = -1;
+        String[] types = columns.getDataTypeNames();
+        for (int i = 0; i < types.length; i++) {
+            if (STEPS.equals(types[i])) {
+                stepsCode = i;
+            }
+        }
+    }
+
+    @Benchmark
+    public long scanList() {
+        long total = 0;
+        for (DataPoint point : list) {
+            if (STEPS.equals(point.getDataTypeName()) && !point.getValue().isEmpty()) {
+                Value value = point.getValue().get(0);
+                if (value.getIntVal() != null) {
+                    total += value.getIntVal();
+                }
+            }
+        }
+        return total;
+    }
+
+    @Benchmark
+    public long scanColumns() {
+        long total = 0;
+        for (int row = 0, size = columns.size(); row < size; row++) {
+            if (columns.getDataTypeCode(row) == stepsCode && columns.getValueKind(row) == DataPointColumns.VALUE_INT) {
+                total += columns.getIntVal(row);
+            }
+        }
+        return total;
+    }
+
+    private List<DataPoint> buildList() {
+        List<DataPoint> result = new ArrayList<>(points);
+        for (int i = 0; i < points; i++) {
+            result.add(DataPoint.fromJson(Fixtures.dataPoint(i)));
+        }
+        return result;
+    }
+
+    private DataPointColumns buildColumns() {
+        DataPointColumns.Builder builder = new DataPointColumns.Builder(points);
+        for (int i = 0; i < points; i++) {
+            builder.add(Fixtures.dataPoint(i));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Heap still in use with the built object alive, less the heap in use before it was
+     * built. Median of three builds, since a collection finishing late can skew one.
+     */
+    private static long retainedBytes(Supplier<?> build) {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long[] samples = new long[3];
+        for (int i = 0; i < samples.length; i++) {
+            long before = settledHeapUsed(memory);
+            Object built = build.get();
+            samples[i] = settledHeapUsed(memory) - before;
+            // Keeps the object reachable until the second measurement
+            if (built.hashCode() == 42) {
+                System.out.print("");
+            }
+        }
+        Arrays.sort(samples);
+        return samples[1];
+    }
+
+    private static long settledHeapUsed(MemoryMXBean memory) {
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,184 @@
+package com.ultimatequack.healthyduck.client;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.LongStream;
+
+/**
+ * Load test for the client's executors: fires 10k calls at once from one thread and checks
+ * that they all finish, that none of them runs its I/O on the submitting thread, and that
+ * a parallel stream on {@code ForkJoinPool.commonPool()} is not slowed down meanwhile.
+ * The call mix includes {@code recordWorkout}, whose chained futures used to block pool
+ * threads on each other.
+ *
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar com.ultimatequack.healthyduck.client.ConcurrencyLoadTest [calls] [serviceMillis]
+ * </pre>
+ *
+ * Runs the default pool, a small bounded pool (rejections have to surface as failed
+ * futures) and, on JDK 21+, virtual threads. Exits with status 1 when a check fails.
+ */
+public final class ConcurrencyLoadTest {
+    private static final long DEADLOCK_TIMEOUT_SECONDS = 120;
+
+    private final int calls;
+    private final int serviceMillis;
+    private boolean failed;
+
+    private ConcurrencyLoadTest(int calls, int serviceMillis) {
+        this.calls = calls;
+        this.serviceMillis = serviceMillis;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int calls = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        int serviceMillis = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+        ConcurrencyLoadTest test = new ConcurrencyLoadTest(calls, serviceMillis);
+
+        long idleStreamMillis = parallelStreamMillis();
+        System.out.printf(Locale.ROOT, "Parallel stream on the common pool, idle: %d ms%n", idleStreamMillis);
+
+        test.run("default", ClientExecutors.defaultExecutor(), false, idleStreamMillis);
+        ExecutorService bounded = ClientExecutors.newBoundedExecutor(4, 256);
+        try {
+            test.run("bounded(4, 256)", bounded, true, idleStreamMillis);
+        } finally {
+            bounded.shutdownNow();
+        }
+        if (ClientExecutors.isVirtualThreadSupported()) {
+            ExecutorService virtual = ClientExecutors.newVirtualThreadPerTaskExecutor();
+            try {
+                test.run("virtual", virtual, false, idleStreamMillis);
+            } finally {
+                virtual.shutdownNow();
+            }
+        }
+        if (test.failed) {
+            System.exit(1);
+        }
+    }
+
+    private void run(String name, ExecutorService executor, boolean rejectionsAllowed, long idleStreamMillis)
+            throws Exception {
+        Thread submitter = Thread.currentThread();
+        AtomicInteger onSubmitter = new AtomicInteger();
+        try (StubServer server = new StubServer(10);
+             HttpTransport engine = new JdkHttpClientTransport(new TransportOptions().setMaxConnectionsPerHost(64))) {
+            // A slow server: each request holds its I/O thread for serviceMillis
+            HttpTransport slow = new HttpTransport() {
+                @Override
+                public Response execute(Request request) throws IOException {
+                    if (Thread.currentThread() == submitter) {
+                        onSubmitter.incrementAndGet();
+                    }
+                    sleep(serviceMillis);
+                    return engine.execute(request);
+                }
+
+                @Override
+                public void close() {
+                }
+            };
+            HealthyDuckClient client = new HealthyDuckClient("com.ultimatequack.healthyduck", server.baseUrl(),
+                                                             "load-test-token", slow, executor);
+            client.setRequestPolicy(RequestPolicy.none());
+            String datasetId = Fixtures.datasetId(10);
+            Date start = new Date(Fixtures.START_NANOS / 1000000);
+            Date end = new Date(start.getTime() + 1800000);
+
+            long began = System.nanoTime();
+            List<CompletableFuture<?>> futures = new ArrayList<>(calls);
+            for (int i = 0; i < calls; i++) {
+                switch (i % 3) {
+                    case 0:
+                        futures.add(client.getDataPoints(Fixtures.USER_ID, Fixtures.DATA_SOURCE_ID, datasetId));
+                        break;
+                    case 1:
+                        futures.add(client.getDataSources(Fixtures.USER_ID));
+                        break;
+                    default:
+                        futures.add(client.recordWorkout(Fixtures.USER_ID, "Run " + i, 8, start, end, 0));
+                        break;
+                }
+            }
+            long submitMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - began);
+            long loadedStreamMillis = parallelStreamMillis();
+
+            int succeeded = 0;
+            int rejected = 0;
+            int errors = 0;
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(DEADLOCK_TIMEOUT_SECONDS);
+            for (CompletableFuture<?> future : futures) {
+                try {
+                    future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                    succeeded++;
+                } catch (TimeoutException e) {
+                    check(false, name + ": calls still pending after " + DEADLOCK_TIMEOUT_SECONDS + " s");
+                    break;
+                } catch (Exception e) {
+                    if (isRejection(e)) {
+                        rejected++;
+                    } else {
+                        errors++;
+                    }
+                }
+            }
+            long totalMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - began);
+
+            System.out.printf(Locale.ROOT,
+                "%-16s %d calls: %d ok, %d rejected, %d failed; submitted in %d ms, done in %d ms; "
+                    + "parallel stream under load %d ms%n",
+                name, calls, succeeded, rejected, errors, submitMillis, totalMillis, loadedStreamMillis);
+            check(onSubmitter.get() == 0, name + ": " + onSubmitter.get() + " requests ran on the submitting thread");
+            check(errors == 0, name + ": " + errors + " calls failed");
+            check(rejectionsAllowed || rejected == 0, name + ": " + rejected + " calls were rejected");
+            // Generous bound; a starved common pool waits for the whole run instead
+            check(loadedStreamMillis < Math.max(1000, idleStreamMillis * 20),
+                  name + ": parallel stream took " + loadedStreamMillis + " ms under load");
+        }
+    }
+
+    private void check(boolean ok, String message) {
+        if (!ok) {
+            failed = true;
+            System.out.println("FAIL " + message);
+        }
+    }
+
+    private static boolean isRejection(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof RejectedExecutionException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long parallelStreamMillis() {
+        long began = System.nanoTime();
+        long sum = LongStream.range(0, 20_000_000).parallel().map(v -> v * 31 % 7).sum();
+        if (sum < 0) {
+            throw new AssertionError();
+        }
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - began);
+    }
+
+    private static void sleep(int millis) throws IOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.ultimatequack.healthyduck.client;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full client calls over loopback HTTP against {@link StubServer}: request building,
+ * transport, status handling and response parsing. Run with {@code -t} above 1 to see
+ * connection pool contention.
+ *
+ * <p>{@code -p transport=urlconnection} measures the Android engine, but only for reads:
+ * the desktop JDK's {@code HttpURLConnection} rejects PATCH, which Android's accepts.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+@State(Scope.Benchmark)
+public class EndToEndBenchmark {
+    @Param({"jdk"})
+    public String transport;
+
+    @Param({"false", "true"})
+    public boolean binary;
+
+    @Param({"1000"})
+    public int datasetPoints;
+
+    private StubServer server;
+    private HealthyDuckClient client;
+    private String datasetId;
+    private List<DataPoint> insertBatch;
+    private Session session;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        server = new StubServer(datasetPoints);
+        TransportOptions options = new TransportOptions().setPreferHttp2("jdk".equals(transport));
+        HttpTransport engine = "jdk".equals(transport) && JdkHttpClientTransport.isSupported()
+            ? new JdkHttpClientTransport(options)
+            : new UrlConnectionTransport(options);
+        // Context is only read when building default data sources, which no benchmark does
+        client = new HealthyDuckClient(null, server.baseUrl(), "benchmark-token", engine);
+        // Fixed timeouts and no retries or hedges, so each call is exactly one request
+        client.setRequestPolicy(RequestPolicy.none());
+        client.setBinaryDataPoints(binary);
+
+        datasetId = Fixtures.datasetId(datasetPoints);
+        insertBatch = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            insertBatch.add(DataPoint.fromJson(Fixtures.dataPoint(i)));
+        }
+        session = Session.fromJson(Fixtures.session(0));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        client.close();
+        server.close();
+    }
+
+    @Benchmark
+    public List<DataPoint> getDataPoints() throws Exception {
+        return client.getDataPoints(Fixtures.USER_ID, Fixtures.DATA_SOURCE_ID, datasetId).get();
+    }
+
+    @Benchmark
+    public DataPointColumns getDataPointsColumnar() throws Exception {
+        return client.getDataPointsColumnar(Fixtures.USER_ID, Fixtures.DATA_SOURCE_ID, datasetId).get();
+    }
+
+    @Benchmark
+    public Void insertDataPoints() throws Exception {
+        return client.insertDataPoints(Fixtures.USER_ID, Fixtures.DATA_SOURCE_ID, datasetId, insertBatch).get();
+    }
+
+    @Benchmark
+    public List<DataSource> getDataSources() throws Exception {
+        return client.getDataSources(Fixtures.USER_ID).get();
+    }
+
+    @Benchmark
+    public List<Session> getSessions() throws Exception {
+        return client.getSessions(Fixtures.USER_ID, null, null).get();
+    }
+
+    @Benchmark
+    public Session createSession() throws Exception {
+        return client.createSession(Fixtures.USER_ID, session).get();
+    }
+}
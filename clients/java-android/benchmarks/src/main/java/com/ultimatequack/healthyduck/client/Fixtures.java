@@ -0,0 +1,107 @@
+package com.ultimatequack.healthyduck.client;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Response bodies shaped like the server's route output, so benchmarks exercise the same
+ * JSON the client sees in production. Values are deterministic for repeatable runs.
+ */
+final class Fixtures {
+    static final String USER_ID = "2f1c7a52-6d7e-4a55-9f2e-0c9a4f1d2b11";
+    static final String DATA_SOURCE_ID = "derived:com.ultimatequack.step_count.delta:com.ultimatequack.healthyduck:steps";
+    static final long START_NANOS = 1700000000000000000L;
+    static final long INTERVAL_NANOS = 60000000000L;
+
+    private Fixtures() {
+    }
+
+    static JSONObject dataPoint(int i) {
+        long start = START_NANOS + i * INTERVAL_NANOS;
+        JSONObject value = new JSONObject();
+        if (i % 4 == 3) {
+            value.put("fpVal", 12.5 + i % 97);
+        } else {
+            value.put("intVal", 40 + i % 113);
+        }
+        return new JSONObject()
+            .put("startTimeNanos", Long.toString(start))
+            .put("endTimeNanos", Long.toString(start + INTERVAL_NANOS))
+            .put("dataTypeName", i % 4 == 3 ? "com.ultimatequack.calories.expended"
+                                            : "com.ultimatequack.step_count.delta")
+            .put("modifiedTimeMillis", Long.toString(start / 1000000 + 500))
+            .put("value", new JSONArray().put(value))
+            .put("originDataSourceId", DATA_SOURCE_ID);
+    }
+
+    /** Dataset GET body with {@code count} points, as served by the datasets route. */
+    static String datasetResponse(int count) {
+        JSONArray points = new JSONArray();
+        for (int i = 0; i < count; i++) {
+            points.put(dataPoint(i));
+        }
+        return new JSONObject()
+            .put("minStartTimeNs", Long.toString(START_NANOS))
+            .put("maxEndTimeNs", Long.toString(START_NANOS + count * INTERVAL_NANOS))
+            .put("dataSourceId", DATA_SOURCE_ID)
+            .put("point", points)
+            .toString();
+    }
+
+    /** The same points in the binary wire format. */
+    static byte[] datasetBinary(int count) throws Exception {
+        DataPointColumns.Builder columns = new DataPointColumns.Builder(count);
+        for (int i = 0; i < count; i++) {
+            columns.add(dataPoint(i));
+        }
+        return DataPointWireFormat.encode(columns.build(), true);
+    }
+
+    static JSONObject dataSource(int i) {
+        return new JSONObject()
+            .put("dataStreamId", DATA_SOURCE_ID + ":" + i)
+            .put("dataStreamName", "Steps Data Source " + i)
+            .put("type", "derived")
+            .put("dataType", new JSONObject()
+                .put("name", "com.ultimatequack.step_count.delta")
+                .put("field", new JSONArray()))
+            .put("application", new JSONObject()
+                .put("packageName", "com.ultimatequack.healthyduck")
+                .put("version", "1.0"));
+    }
+
+    static String dataSourcesResponse(int count) {
+        JSONArray sources = new JSONArray();
+        for (int i = 0; i < count; i++) {
+            sources.put(dataSource(i));
+        }
+        return new JSONObject().put("dataSource", sources).toString();
+    }
+
+    static JSONObject session(int i) {
+        long start = START_NANOS / 1000000 + i * 3600000L;
+        return new JSONObject()
+            .put("id", "session-" + i)
+            .put("name", "Morning run " + i)
+            .put("description", "Benchmark session")
+            .put("startTimeMillis", Long.toString(start))
+            .put("endTimeMillis", Long.toString(start + 1800000))
+            .put("modifiedTimeMillis", Long.toString(start + 1800500))
+            .put("activityType", 8)
+            .put("application", new JSONObject().put("packageName", "com.ultimatequack.healthyduck"))
+            .put("activeTimeMillis", "1750000");
+    }
+
+    static String sessionsResponse(int count) {
+        JSONArray sessions = new JSONArray();
+        for (int i = 0; i < count; i++) {
+            sessions.put(session(i));
+        }
+        return new JSONObject().put("session", sessions).toString();
+    }
+
+    /** Dataset id covering the first {@code count} fixture points. */
+    static String datasetId(int count) {
+        return START_NANOS + "-" + (START_NANOS + count * INTERVAL_NANOS);
+    }
+}
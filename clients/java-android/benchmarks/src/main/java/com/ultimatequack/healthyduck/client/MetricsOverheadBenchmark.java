@@ -0,0 +1,79 @@
+package com.ultimatequack.healthyduck.client;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the metrics hooks on one request through {@link ResilientTransport}, over an
+ * in-memory transport so the network does not drown it out. {@code metrics=direct} calls
+ * the inner transport with no wrapper at all, {@code noop} is the default
+ * {@link ClientMetrics#NOOP} and {@code recording} installs {@link RecordingClientMetrics}.
+ * Run with {@code -prof gc}: {@code noop} should allocate no more than the
+ * {@code ResilientTransport} bookkeeping it shares with {@code recording}, which
+ * additionally wraps the response body.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class MetricsOverheadBenchmark {
+    @Param({"direct", "noop", "recording"})
+    public String metrics;
+
+    private final byte[] body = "{\"dataSource\":[]}".getBytes(StandardCharsets.UTF_8);
+    private final byte[] buffer = new byte[64];
+    private HttpTransport transport;
+    private HttpTransport.Request request;
+
+    @Setup
+    public void setUp() {
+        HttpTransport inMemory = new HttpTransport() {
+            @Override
+            public Response execute(Request request) {
+                return new Response(200, "application/json", new ByteArrayInputStream(body), () -> { });
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        if ("direct".equals(metrics)) {
+            transport = inMemory;
+        } else {
+            ResilientTransport resilient = new ResilientTransport(inMemory, RequestPolicy.none());
+            resilient.setMetrics("recording".equals(metrics) ? new RecordingClientMetrics() : ClientMetrics.NOOP);
+            transport = resilient;
+        }
+        request = new HttpTransport.Request("GET", "http://localhost/api/fitness/v1/users/"
+            + Fixtures.USER_ID + "/dataSources", (byte[]) null);
+    }
+
+    @Benchmark
+    public int request() throws IOException {
+        int read = 0;
+        try (HttpTransport.Response response = transport.execute(request)) {
+            InputStream in = response.getBody();
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                read += n;
+            }
+        }
+        return read;
+    }
+}
@@ -0,0 +1,73 @@
+package com.ultimatequack.healthyduck.client;
+
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code toJson}/{@code fromJson} of single model objects, including the text step, which
+ * is what every request body and response element pays.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class ModelJsonBenchmark {
+    private String dataPointText;
+    private String dataSourceText;
+    private String sessionText;
+    private DataPoint dataPoint;
+    private DataSource dataSource;
+    private Session session;
+
+    @Setup
+    public void setUp() throws Exception {
+        dataPointText = Fixtures.dataPoint(3).toString();
+        dataSourceText = Fixtures.dataSource(0).toString();
+        sessionText = Fixtures.session(0).toString();
+        dataPoint = DataPoint.fromJson(new JSONObject(dataPointText));
+        dataSource = DataSource.fromJson(new JSONObject(dataSourceText));
+        session = Session.fromJson(new JSONObject(sessionText));
+    }
+
+    @Benchmark
+    public String dataPointToJson() throws Exception {
+        return dataPoint.toJson().toString();
+    }
+
+    @Benchmark
+    public DataPoint dataPointFromJson() throws Exception {
+        return DataPoint.fromJson(new JSONObject(dataPointText));
+    }
+
+    @Benchmark
+    public String dataSourceToJson() throws Exception {
+        return dataSource.toJson().toString();
+    }
+
+    @Benchmark
+    public DataSource dataSourceFromJson() throws Exception {
+        return DataSource.fromJson(new JSONObject(dataSourceText));
+    }
+
+    @Benchmark
+    public String sessionToJson() throws Exception {
+        return session.toJson().toString();
+    }
+
+    @Benchmark
+    public Session sessionFromJson() throws Exception {
+        return Session.fromJson(new JSONObject(sessionText));
+    }
+}
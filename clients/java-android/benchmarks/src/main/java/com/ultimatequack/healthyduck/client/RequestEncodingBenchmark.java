@@ -0,0 +1,91 @@
+package com.ultimatequack.healthyduck.client;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding an {@code insertDataPoints} body, before and after the pooled streaming
+ * writers. Run with {@code -prof gc}; {@code gc.alloc.rate.norm} is the bytes allocated
+ * per request body.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class RequestEncodingBenchmark {
+    @Param({"100", "10000"})
+    public int points;
+
+    private List<DataPoint> batch;
+
+    @Setup
+    public void setUp() throws Exception {
+        batch = new ArrayList<>(points);
+        for (int i = 0; i < points; i++) {
+            batch.add(DataPoint.fromJson(Fixtures.dataPoint(i)));
+        }
+    }
+
+    /** The previous JSON path: a JSONObject tree, then a String, then its UTF-8 bytes. */
+    @Benchmark
+    public byte[] jsonTree() throws Exception {
+        JSONArray array = new JSONArray();
+        for (DataPoint point : batch) {
+            array.put(point.toJson());
+        }
+        return new JSONObject().put("dataPoints", array).toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public long jsonPooled() throws Exception {
+        PooledBody body = new PooledBody(ByteChunkPool.shared());
+        try {
+            DataPointJsonWriter.write(batch, body);
+            return body.contentLength();
+        } finally {
+            body.release();
+        }
+    }
+
+    /** The previous binary path, which returned the payload as one array. */
+    @Benchmark
+    public byte[] binaryArray() throws Exception {
+        return DataPointWireFormat.encode(columns(), true);
+    }
+
+    @Benchmark
+    public long binaryPooled() throws Exception {
+        PooledBody body = new PooledBody(ByteChunkPool.shared());
+        try {
+            DataPointWireFormat.encode(columns(), true, body);
+            return body.contentLength();
+        } finally {
+            body.release();
+        }
+    }
+
+    private DataPointColumns columns() {
+        DataPointColumns.Builder columns = new DataPointColumns.Builder(batch.size());
+        for (DataPoint point : batch) {
+            columns.add(point);
+        }
+        return columns.build();
+    }
+}
@@ -0,0 +1,104 @@
+package com.ultimatequack.healthyduck.client;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-call latency against a faulty {@link StubServer}: {@code slowPercent} of responses
+ * are held for {@code slowMillis}, and {@code errorPercent} are answered 503.
+ * {@code policy=none} is the client before {@link RequestPolicy} existed, with a fixed
+ * timeout and no retries or hedges. {@code policy=default} adds adaptive timeouts, hedged
+ * reads and budgeted retries. Compare the {@code :p0.99} rows.
+ *
+ * <p>A call that still fails is counted as done at the time it failed. The benchmark
+ * measures latency, so errors are not rethrown; failure rates per policy are printed at
+ * the end of each trial.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ResiliencePolicyBenchmark {
+    @Param({"none", "default"})
+    public String policy;
+
+    @Param({"2"})
+    public double slowPercent;
+
+    @Param({"1500"})
+    public int slowMillis;
+
+    @Param({"1"})
+    public double errorPercent;
+
+    private StubServer server;
+    private HealthyDuckClient client;
+    private String datasetId;
+    private List<DataPoint> insertBatch;
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        server = new StubServer(100, errorPercent / 100, slowPercent / 100, slowMillis);
+        client = new HealthyDuckClient(null, server.baseUrl(), "benchmark-token",
+                                       new JdkHttpClientTransport(new TransportOptions()));
+        client.setRequestPolicy("none".equals(policy) ? RequestPolicy.none() : new RequestPolicy());
+        datasetId = Fixtures.datasetId(100);
+        insertBatch = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            insertBatch.add(DataPoint.fromJson(Fixtures.dataPoint(i)));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        System.out.printf("%n# policy=%s: %d of %d calls failed%n", policy, failures.get(), calls.get());
+        client.close();
+        server.close();
+    }
+
+    @Benchmark
+    public Object getDataPoints() throws InterruptedException {
+        return settle(() -> client.getDataPoints(Fixtures.USER_ID, Fixtures.DATA_SOURCE_ID, datasetId).get());
+    }
+
+    @Benchmark
+    public Object insertDataPoints() throws InterruptedException {
+        return settle(() -> client.insertDataPoints(Fixtures.USER_ID, Fixtures.DATA_SOURCE_ID, datasetId, insertBatch)
+            .get());
+    }
+
+    private Object settle(Call call) throws InterruptedException {
+        calls.incrementAndGet();
+        try {
+            return call.run();
+        } catch (ExecutionException | CompletionException e) {
+            failures.incrementAndGet();
+            return e;
+        }
+    }
+
+    private interface Call {
+        Object run() throws InterruptedException, ExecutionException;
+    }
+}
@@ -0,0 +1,82 @@
+package com.ultimatequack.healthyduck.client;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding a dataset response body already in memory, one way per read path of the
+ * client: the whole-body parse behind {@code makeRequest}/{@code getDataPoints}, the
+ * streaming reader behind {@code streamDataPoints}, and the binary columnar format.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class ResponseParsingBenchmark {
+    @Param({"100", "10000"})
+    public int points;
+
+    private byte[] json;
+    private byte[] binary;
+
+    @Setup
+    public void setUp() throws Exception {
+        json = Fixtures.datasetResponse(points).getBytes(StandardCharsets.UTF_8);
+        binary = Fixtures.datasetBinary(points);
+    }
+
+    @Benchmark
+    public List<DataPoint> wholeBody() throws Exception {
+        HttpTransport.Response response = new HttpTransport.Response(200, new ByteArrayInputStream(json), null);
+        JSONArray array = new JSONObject(response.readBodyAsString()).getJSONArray("point");
+        List<DataPoint> result = new ArrayList<>(array.length());
+        for (int i = 0; i < array.length(); i++) {
+            result.add(DataPoint.fromJson(array.getJSONObject(i)));
+        }
+        return result;
+    }
+
+    @Benchmark
+    public void streaming(Blackhole blackhole) throws Exception {
+        try (JsonArrayStreamReader elements = new JsonArrayStreamReader(new ByteArrayInputStream(json), "point")) {
+            while (elements.hasNext()) {
+                blackhole.consume(DataPoint.fromJson(elements.next()));
+            }
+        }
+    }
+
+    @Benchmark
+    public DataPointColumns jsonToColumns() throws Exception {
+        DataPointColumns.Builder columns = new DataPointColumns.Builder(points);
+        try (JsonArrayStreamReader elements = new JsonArrayStreamReader(new ByteArrayInputStream(json), "point")) {
+            while (elements.hasNext()) {
+                columns.add(elements.next());
+            }
+        }
+        return columns.build();
+    }
+
+    @Benchmark
+    public DataPointColumns binaryColumns() throws Exception {
+        return DataPointWireFormat.decode(new ByteArrayInputStream(binary));
+    }
+}
@@ -0,0 +1,121 @@
+package com.ultimatequack.healthyduck.client;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cold start: building the client and making its first request, once per fresh JVM, so
+ * class loading and engine creation are part of the score. Run with {@code -prof gc};
+ * {@code gc.alloc.rate.norm} is the bytes allocated by that one operation.
+ *
+ * <p>The server answers a constant body without {@code org.json} or the model classes, so
+ * the client is the first to load them. It still shares the JDK's networking classes,
+ * which makes the in-process numbers a lower bound for a real launch.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(20)
+@State(Scope.Benchmark)
+public class StartupBenchmark {
+    private static final String PACKAGE_NAME = "com.ultimatequack.benchmark";
+    private static final String TOKEN = "benchmark-token";
+    private static final String USER_ID = "benchmark-user";
+    private static final byte[] DATA_SOURCES = ("{\"dataSource\":[{\"dataStreamId\":"
+        + "\"derived:com.ultimatequack.step_count.delta:com.ultimatequack.benchmark:steps\","
+        + "\"dataStreamName\":\"Steps Data Source\",\"type\":\"derived\"}]}").getBytes(StandardCharsets.UTF_8);
+
+    private HttpServer server;
+    private String baseUrl;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 16);
+        server.createContext("/", StartupBenchmark::handle);
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    /** A client that has run {@link HealthyDuckClient#warmUp()} before the measurement. */
+    @State(Scope.Benchmark)
+    public static class WarmedClient {
+        HealthyDuckClient client;
+
+        @Setup(Level.Trial)
+        public void setUp(StartupBenchmark benchmark) {
+            client = new HealthyDuckClient(PACKAGE_NAME, benchmark.baseUrl, TOKEN);
+            client.warmUp().join();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            client.close();
+        }
+    }
+
+    /** Only the constructor; the transport is not built until a request needs it. */
+    @Benchmark
+    public HealthyDuckClient construct() {
+        return new HealthyDuckClient(PACKAGE_NAME, baseUrl, TOKEN);
+    }
+
+    /** Time to first request: constructor plus one {@code getDataSources} round trip. */
+    @Benchmark
+    public List<DataSource> firstRequest() throws Exception {
+        try (HealthyDuckClient client = new HealthyDuckClient(PACKAGE_NAME, baseUrl, TOKEN)) {
+            return client.getDataSources(USER_ID).get();
+        }
+    }
+
+    /** The first request once {@code warmUp} has loaded the classes and opened the connection. */
+    @Benchmark
+    public List<DataSource> firstRequestAfterWarmUp(WarmedClient warmed) throws Exception {
+        return warmed.client.getDataSources(USER_ID).get();
+    }
+
+    private static void handle(HttpExchange exchange) throws IOException {
+        try (InputStream body = exchange.getRequestBody()) {
+            byte[] discard = new byte[1024];
+            while (body.read(discard) != -1) {
+                // Drain the request so the connection can be reused
+            }
+        }
+        if (!exchange.getRequestURI().getPath().endsWith("/dataSources")) {
+            // The warm-up probe; any status serves it
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+            return;
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, DATA_SOURCES.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(DATA_SOURCES);
+        }
+    }
+}
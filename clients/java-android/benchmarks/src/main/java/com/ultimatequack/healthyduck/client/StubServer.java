@@ -0,0 +1,127 @@
+package com.ultimatequack.healthyduck.client;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * In-process stand-in for the HealthyDuck API on a loopback port. Responses are canned
+ * and encoded once up front, so a benchmark measures the client's request path rather
+ * than the server. Dataset reads answer in the binary format when the request asks for it.
+ * It can also inject faults: a fraction of responses delayed, and a fraction answered 503.
+ */
+final class StubServer implements AutoCloseable {
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final byte[] dataSources;
+    private final byte[] datasetJson;
+    private final byte[] datasetBinary;
+    private final byte[] sessions;
+    private final byte[] createdSession;
+    private final byte[] ok = "{\"message\":\"ok\"}".getBytes(StandardCharsets.UTF_8);
+    private final double errorFraction;
+    private final double slowFraction;
+    private final int slowMillis;
+
+    StubServer(int datasetPoints) throws Exception {
+        this(datasetPoints, 0, 0, 0);
+    }
+
+    /**
+     * Answers {@code errorFraction} of requests with 503 and holds {@code slowFraction} of
+     * the rest for {@code slowMillis} before responding, picked at random per request.
+     */
+    StubServer(int datasetPoints, double errorFraction, double slowFraction, int slowMillis) throws Exception {
+        this.errorFraction = errorFraction;
+        this.slowFraction = slowFraction;
+        this.slowMillis = slowMillis;
+        dataSources = Fixtures.dataSourcesResponse(10).getBytes(StandardCharsets.UTF_8);
+        datasetJson = Fixtures.datasetResponse(datasetPoints).getBytes(StandardCharsets.UTF_8);
+        datasetBinary = Fixtures.datasetBinary(datasetPoints);
+        sessions = Fixtures.sessionsResponse(50).getBytes(StandardCharsets.UTF_8);
+        createdSession = Fixtures.session(0).toString().getBytes(StandardCharsets.UTF_8);
+
+        // Headers and body go out in separate writes; with Nagle on, a kept-alive connection
+        // waits out the client's delayed ACK (~40 ms) on every response
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 128);
+        // Delayed responses hold a thread each, so a fixed pool would delay the fast ones too
+        executor = slowFraction > 0 ? Executors.newCachedThreadPool()
+                                    : Executors.newFixedThreadPool(Math.max(4, Runtime.getRuntime().availableProcessors()));
+        server.setExecutor(executor);
+        server.createContext("/api/fitness/v1/users/", this::handle);
+        server.start();
+    }
+
+    String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (InputStream body = exchange.getRequestBody()) {
+            byte[] discard = new byte[8192];
+            while (body.read(discard) != -1) {
+                // Drain the request so the connection can be reused
+            }
+        }
+        double roll = ThreadLocalRandom.current().nextDouble();
+        if (roll < errorFraction) {
+            send(exchange, 503, "application/json", "{\"error\":\"Injected fault\"}".getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+        if (roll < errorFraction + slowFraction) {
+            try {
+                Thread.sleep(slowMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        String path = exchange.getRequestURI().getPath();
+        String method = exchange.getRequestMethod();
+        if (path.contains("/datasets/")) {
+            if ("GET".equals(method)) {
+                String accept = exchange.getRequestHeaders().getFirst("Accept");
+                if (accept != null && accept.contains(DataPointWireFormat.CONTENT_TYPE)) {
+                    send(exchange, 200, DataPointWireFormat.CONTENT_TYPE, datasetBinary);
+                } else {
+                    send(exchange, 200, "application/json", datasetJson);
+                }
+            } else {
+                send(exchange, 200, "application/json", ok);
+            }
+        } else if (path.endsWith("/dataSources")) {
+            send(exchange, 200, "application/json", dataSources);
+        } else if (path.endsWith("/sessions")) {
+            if ("POST".equals(method)) {
+                send(exchange, 201, "application/json", createdSession);
+            } else {
+                send(exchange, 200, "application/json", sessions);
+            }
+        } else {
+            send(exchange, 404, "application/json", "{\"error\":\"Not found\"}".getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
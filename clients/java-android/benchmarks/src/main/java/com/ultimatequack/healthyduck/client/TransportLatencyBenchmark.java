@@ -0,0 +1,130 @@
+package com.ultimatequack.healthyduck.client;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-call latency distribution of small reads, before and after pooled transports.
+ * {@code SampleTime} mode reports p50 and p99 alongside the mean.
+ *
+ * <ul>
+ *   <li>{@code unpooled}: the client before {@link HttpTransport} existed. Every call opens
+ *       a new {@link HttpURLConnection} and closes the socket after the response.</li>
+ *   <li>{@code urlconnection}: {@link UrlConnectionTransport} with keep-alive and draining.</li>
+ *   <li>{@code jdk}: {@link JdkHttpClientTransport}.</li>
+ * </ul>
+ *
+ * <p>Loopback has no TLS and almost no round-trip time, so the gap here is the lower bound
+ * of what pooling saves against a real server. Run with {@code -t 8} to add per-host contention.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+@State(Scope.Benchmark)
+public class TransportLatencyBenchmark {
+    @Param({"unpooled", "urlconnection", "jdk"})
+    public String transport;
+
+    @Param({"10"})
+    public int datasetPoints;
+
+    private StubServer server;
+    private HealthyDuckClient client;
+    private String datasetId;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        server = new StubServer(datasetPoints);
+        TransportOptions options = new TransportOptions();
+        HttpTransport engine;
+        if ("unpooled".equals(transport)) {
+            engine = new UnpooledTransport(options.getConnectTimeoutMillis());
+        } else if ("jdk".equals(transport)) {
+            engine = new JdkHttpClientTransport(options);
+        } else {
+            engine = new UrlConnectionTransport(options);
+        }
+        client = new HealthyDuckClient(null, server.baseUrl(), "benchmark-token", engine);
+        client.setRequestPolicy(RequestPolicy.none());
+        datasetId = Fixtures.datasetId(datasetPoints);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        client.close();
+        server.close();
+    }
+
+    @Benchmark
+    public List<DataPoint> getDataPoints() throws Exception {
+        return client.getDataPoints(Fixtures.USER_ID, Fixtures.DATA_SOURCE_ID, datasetId).get();
+    }
+
+    @Benchmark
+    public List<DataSource> getDataSources() throws Exception {
+        return client.getDataSources(Fixtures.USER_ID).get();
+    }
+
+    /** The old {@code makeRequest} I/O: a fresh connection per call, never reused. */
+    static final class UnpooledTransport implements HttpTransport {
+        private final int connectTimeoutMillis;
+
+        UnpooledTransport(int connectTimeoutMillis) {
+            this.connectTimeoutMillis = connectTimeoutMillis;
+        }
+
+        @Override
+        public Response execute(Request request) throws IOException {
+            HttpURLConnection connection = (HttpURLConnection) new URL(request.getUrl()).openConnection();
+            connection.setRequestMethod(request.getMethod());
+            connection.setRequestProperty("Connection", "close");
+            for (Map.Entry<String, String> header : request.getHeaders().entrySet()) {
+                connection.setRequestProperty(header.getKey(), header.getValue());
+            }
+            connection.setConnectTimeout(connectTimeoutMillis);
+            connection.setReadTimeout(request.getTimeoutMillis());
+            byte[] body = request.getBody();
+            if (body != null && body.length > 0) {
+                connection.setDoOutput(true);
+                try (OutputStream os = connection.getOutputStream()) {
+                    os.write(body);
+                }
+            }
+            int responseCode = connection.getResponseCode();
+            InputStream stream = responseCode >= 200 && responseCode < 300
+                ? connection.getInputStream()
+                : connection.getErrorStream();
+            InputStream responseBody = stream != null ? stream : new ByteArrayInputStream(new byte[0]);
+            return new Response(responseCode, connection.getContentType(), responseBody, () -> {
+                responseBody.close();
+                connection.disconnect();
+            });
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,11 @@
+// The dataset PATCH stamps one modified time before it starts its upserts, so a slow write
+// can commit rows stamped earlier than rows the change feed has already handed out. The
+// feed therefore only serves rows stamped more than MAX_WRITE_DURATION_MILLIS ago; by then
+// every write stamped in that window has committed or failed. A PATCH that runs longer
+// than this can still be missed, so the limit has to stay above the route's timeout.
+export const MAX_WRITE_DURATION_MILLIS = 30000
+
+// Newest modified time, in nanos, that the change feed may return right now.
+export function changeFeedHorizonNanos(): string {
+  return (BigInt(Date.now() - MAX_WRITE_DURATION_MILLIS) * BigInt(1000000)).toString()
+}
@@ -0,0 +1,317 @@
+import { gunzipSync, gzipSync } from "zlib"
+
+// Compact binary encoding for batches of data points, used by the dataset routes when the
+// client sends or accepts BINARY_DATAPOINTS_CONTENT_TYPE. Mirrors the Java client's
+// DataPointWireFormat; both sides must change together.
+//
+// Layout (varints are unsigned LEB128, "zigzag" varints are signed):
+//   "HDPB" | version u8 | flags u8 (bit 0: rest of the body is gzip-compressed)
+//   dataTypeNames: varint count, then per entry varint byte length + UTF-8
+//   originDataSourceIds: same
+//   stringValues: same
+//   varint pointCount, then per point:
+//     zigzag startTimeNanos - previous startTimeNanos
+//     zigzag endTimeNanos - startTimeNanos
+//     zigzag modifiedTimeMillis - previous modifiedTimeMillis
+//     varint dataTypeName index
+//     varint originDataSourceId index + 1 (0 = none)
+//     u8 value kind (0 none, 1 int, 2 fp, 3 string)
+//     int: zigzag varint | fp: float64 big-endian | string: varint stringValues index
+
+export const BINARY_DATAPOINTS_CONTENT_TYPE = "application/vnd.healthyduck.datapoints+binary"
+
+export interface WireDataPoint {
+  startTimeNanos: string
+  endTimeNanos: string
+  modifiedTimeMillis: string
+  dataTypeName: string
+  originDataSourceId?: string | null
+  value: Array<{
+    intVal?: number | string
+    fpVal?: number
+    stringVal?: string
+  }>
+}
+
+const MAGIC = [0x48, 0x44, 0x50, 0x42]
+const VERSION = 1
+const FLAG_GZIP = 1
+const HEADER_BYTES = 6
+
+const VALUE_NONE = 0
+const VALUE_INT = 1
+const VALUE_FP = 2
+const VALUE_STRING = 3
+
+// BigInt literals need an ES2020 target
+const ZERO = BigInt(0)
+const ONE = BigInt(1)
+const SEVEN = BigInt(7)
+const LOW_BITS = BigInt(0x7f)
+const CONTINUATION = BigInt(0x80)
+
+const textEncoder = new TextEncoder()
+const textDecoder = new TextDecoder()
+
+export function acceptsBinaryDataPoints(accept: string | null): boolean {
+  return accept !== null && accept.includes(BINARY_DATAPOINTS_CONTENT_TYPE)
+}
+
+export function isBinaryDataPoints(contentType: string | null): boolean {
+  return contentType !== null && contentType.startsWith(BINARY_DATAPOINTS_CONTENT_TYPE)
+}
+
+export function encodeDataPoints(points: WireDataPoint[], options: { compress?: boolean } = {}): Uint8Array {
+  const dataTypes = new Dictionary()
+  const origins = new Dictionary()
+  const strings = new Dictionary()
+  for (const point of points) {
+    dataTypes.code(point.dataTypeName ?? "")
+    if (point.originDataSourceId) {
+      origins.code(point.originDataSourceId)
+    }
+    const value = point.value?.[0]
+    if (value && value.intVal == null && value.fpVal == null && value.stringVal != null) {
+      strings.code(value.stringVal)
+    }
+  }
+
+  const body = new ByteWriter(64 + points.length * 12)
+  dataTypes.writeTo(body)
+  origins.writeTo(body)
+  strings.writeTo(body)
+  body.varint(BigInt(points.length))
+
+  let previousStart = ZERO
+  let previousModified = ZERO
+  for (const point of points) {
+    const start = BigInt(point.startTimeNanos)
+    const modified = BigInt(point.modifiedTimeMillis ?? 0)
+    body.zigzag(start - previousStart)
+    body.zigzag(BigInt(point.endTimeNanos) - start)
+    body.zigzag(modified - previousModified)
+    body.varint(BigInt(dataTypes.code(point.dataTypeName ?? "")))
+    body.varint(BigInt(point.originDataSourceId ? origins.code(point.originDataSourceId) + 1 : 0))
+    previousStart = start
+    previousModified = modified
+
+    const value = point.value?.[0]
+    if (value && value.intVal != null) {
+      body.byte(VALUE_INT)
+      body.zigzag(typeof value.intVal === "number" ? BigInt(Math.trunc(value.intVal)) : BigInt(value.intVal))
+    } else if (value && value.fpVal != null) {
+      body.byte(VALUE_FP)
+      body.float64(value.fpVal)
+    } else if (value && value.stringVal != null) {
+      body.byte(VALUE_STRING)
+      body.varint(BigInt(strings.code(value.stringVal)))
+    } else {
+      body.byte(VALUE_NONE)
+    }
+  }
+
+  const payload = options.compress ? gzipSync(body.toBytes()) : body.toBytes()
+  const out = new Uint8Array(HEADER_BYTES + payload.length)
+  out.set(MAGIC, 0)
+  out[4] = VERSION
+  out[5] = options.compress ? FLAG_GZIP : 0
+  out.set(payload, HEADER_BYTES)
+  return out
+}
+
+export function decodeDataPoints(data: Uint8Array): WireDataPoint[] {
+  if (data.length < HEADER_BYTES || MAGIC.some((b, i) => data[i] !== b)) {
+    throw new Error("Not a binary data point payload")
+  }
+  if (data[4] !== VERSION) {
+    throw new Error(`Unsupported binary data point version ${data[4]}`)
+  }
+  const payload = data.subarray(HEADER_BYTES)
+  const reader = new ByteReader(data[5] & FLAG_GZIP ? new Uint8Array(gunzipSync(payload)) : payload)
+
+  const dataTypes = reader.strings()
+  const origins = reader.strings()
+  const strings = reader.strings()
+  const count = Number(reader.varint())
+
+  const points: WireDataPoint[] = []
+  let start = ZERO
+  let modified = ZERO
+  for (let i = 0; i < count; i++) {
+    start += reader.zigzag()
+    const end = start + reader.zigzag()
+    modified += reader.zigzag()
+    const dataTypeName = lookup(dataTypes, Number(reader.varint()))
+    const originCode = Number(reader.varint())
+
+    let value: WireDataPoint["value"]
+    const kind = reader.byte()
+    if (kind === VALUE_INT) {
+      const intVal = reader.zigzag()
+      const asNumber = Number(intVal)
+      value = [{ intVal: Number.isSafeInteger(asNumber) ? asNumber : intVal.toString() }]
+    } else if (kind === VALUE_FP) {
+      value = [{ fpVal: reader.float64() }]
+    } else if (kind === VALUE_STRING) {
+      value = [{ stringVal: lookup(strings, Number(reader.varint())) }]
+    } else if (kind === VALUE_NONE) {
+      value = []
+    } else {
+      throw new Error(`Unknown value kind ${kind}`)
+    }
+
+    points.push({
+      startTimeNanos: start.toString(),
+      endTimeNanos: end.toString(),
+      modifiedTimeMillis: modified.toString(),
+      dataTypeName,
+      originDataSourceId: originCode === 0 ? null : lookup(origins, originCode - 1),
+      value,
+    })
+  }
+  return points
+}
+
+function lookup(values: string[], index: number): string {
+  if (index < 0 || index >= values.length) {
+    throw new Error(`Dictionary index ${index} out of range`)
+  }
+  return values[index]
+}
+
+class Dictionary {
+  private readonly codes = new Map<string, number>()
+  private readonly values: string[] = []
+
+  code(value: string): number {
+    let code = this.codes.get(value)
+    if (code === undefined) {
+      code = this.values.length
+      this.codes.set(value, code)
+      this.values.push(value)
+    }
+    return code
+  }
+
+  writeTo(writer: ByteWriter) {
+    writer.varint(BigInt(this.values.length))
+    for (const value of this.values) {
+      writer.string(value)
+    }
+  }
+}
+
+class ByteWriter {
+  private buffer: Uint8Array
+  private view: DataView
+  private length = 0
+
+  constructor(initialCapacity: number) {
+    this.buffer = new Uint8Array(initialCapacity)
+    this.view = new DataView(this.buffer.buffer)
+  }
+
+  byte(value: number) {
+    this.ensure(1)
+    this.buffer[this.length++] = value
+  }
+
+  varint(value: bigint) {
+    this.ensure(10)
+    while (value >= CONTINUATION) {
+      this.buffer[this.length++] = Number(value & LOW_BITS) | 0x80
+      value >>= SEVEN
+    }
+    this.buffer[this.length++] = Number(value)
+  }
+
+  zigzag(value: bigint) {
+    this.varint(value >= ZERO ? value << ONE : ((-value) << ONE) - ONE)
+  }
+
+  float64(value: number) {
+    this.ensure(8)
+    this.view.setFloat64(this.length, value)
+    this.length += 8
+  }
+
+  string(value: string) {
+    const bytes = textEncoder.encode(value)
+    this.varint(BigInt(bytes.length))
+    this.ensure(bytes.length)
+    this.buffer.set(bytes, this.length)
+    this.length += bytes.length
+  }
+
+  toBytes(): Uint8Array {
+    return this.buffer.subarray(0, this.length)
+  }
+
+  private ensure(extra: number) {
+    if (this.length + extra <= this.buffer.length) {
+      return
+    }
+    const grown = new Uint8Array(Math.max(this.buffer.length * 2, this.length + extra))
+    grown.set(this.buffer.subarray(0, this.length))
+    this.buffer = grown
+    this.view = new DataView(grown.buffer)
+  }
+}
+
+class ByteReader {
+  private readonly view: DataView
+  private position = 0
+
+  constructor(private readonly buffer: Uint8Array) {
+    this.view = new DataView(buffer.buffer, buffer.byteOffset, buffer.byteLength)
+  }
+
+  byte(): number {
+    if (this.position >= this.buffer.length) {
+      throw new Error("Truncated binary data point payload")
+    }
+    return this.buffer[this.position++]
+  }
+
+  varint(): bigint {
+    let result = ZERO
+    let shift = ZERO
+    for (let i = 0; i < 10; i++) {
+      const b = this.byte()
+      result |= BigInt(b & 0x7f) << shift
+      if ((b & 0x80) === 0) {
+        return result
+      }
+      shift += SEVEN
+    }
+    throw new Error("Malformed varint")
+  }
+
+  zigzag(): bigint {
+    const value = this.varint()
+    return value & ONE ? -(value >> ONE) - ONE : value >> ONE
+  }
+
+  float64(): number {
+    if (this.position + 8 > this.buffer.length) {
+      throw new Error("Truncated binary data point payload")
+    }
+    const value = this.view.getFloat64(this.position)
+    this.position += 8
+    return value
+  }
+
+  strings(): string[] {
+    const count = Number(this.varint())
+    const values: string[] = []
+    for (let i = 0; i < count; i++) {
+      const length = Number(this.varint())
+      if (this.position + length > this.buffer.length) {
+        throw new Error("Truncated binary data point payload")
+      }
+      values.push(textDecoder.decode(this.buffer.subarray(this.position, this.position + length)))
+      this.position += length
+    }
+    return values
+  }
+}
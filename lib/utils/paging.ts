@@ -0,0 +1,29 @@
+// Offset paging shared by the list routes. Routes fetch `limit + 1` rows to learn whether
+// another page follows, and PostgREST silently truncates every response at its max-rows
+// setting (1000 by default). The page size is therefore capped one below that, so the
+// extra row always fits and `hasMore` is never lost to the cap.
+export const POSTGREST_MAX_ROWS = 1000
+export const MAX_PAGE_SIZE = POSTGREST_MAX_ROWS - 1
+export const DEFAULT_PAGE_SIZE = 500
+
+export interface PageParams {
+  limit: number
+  offset: number
+}
+
+// Paging is opt-in: without `limit` or `pageToken` this returns null and the route answers
+// as before. The page token is the row offset of the next page.
+export function parsePageParams(searchParams: URLSearchParams): PageParams | null {
+  const limitParam = searchParams.get("limit")
+  const pageToken = searchParams.get("pageToken")
+  if (!limitParam && !pageToken) {
+    return null
+  }
+
+  return { limit: parseLimit(limitParam), offset: Math.max(Number.parseInt(pageToken || "0") || 0, 0) }
+}
+
+// Page size from a `limit` parameter, clamped to [1, MAX_PAGE_SIZE].
+export function parseLimit(limitParam: string | null): number {
+  return Math.min(Math.max(Number.parseInt(limitParam || "") || DEFAULT_PAGE_SIZE, 1), MAX_PAGE_SIZE)
+}
@@ -0,0 +1,4 @@
+-- Index for the change feed (dataSources/{id}/changes), which pages through a data
+-- source's points in (modified_time_nanos, id) order
+create index if not exists idx_data_points_changes
+  on public.data_points(data_source_id, modified_time_nanos, id);
@@ -0,0 +1,16 @@
+-- One stored point per (data source, data type, time range), so a dataset PATCH that is
+-- retried or replayed from the client's offline queue replaces the point it already
+-- wrote instead of adding a copy. The PATCH route upserts on this key.
+
+-- Keep the most recently modified copy of any existing duplicates
+delete from public.data_points a
+  using public.data_points b
+  where a.data_source_id = b.data_source_id
+    and a.data_type_name = b.data_type_name
+    and a.start_time_nanos = b.start_time_nanos
+    and a.end_time_nanos = b.end_time_nanos
+    and (a.modified_time_nanos, a.id) < (b.modified_time_nanos, b.id);
+
+alter table public.data_points
+  add constraint data_points_point_key
+  unique (data_source_id, data_type_name, start_time_nanos, end_time_nanos);
@@ -0,0 +1,83 @@
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.time.Duration;
+
+/**
+ * Request bodies and endpoints shared by {@link HealthyDuckAPITest} and
+ * {@link HealthyDuckLoadRunner}, so the load test sends exactly what the functional
+ * suite verifies.
+ */
+final class ApiRequestTemplates {
+    static final String STEP_COUNT_TYPE = "com.ultimatequack.step_count";
+
+    private ApiRequestTemplates() {
+    }
+
+    static HttpRequest.Builder requestBuilder(String apiBase, String authToken, String endpoint) {
+        return HttpRequest.newBuilder()
+            .uri(URI.create(apiBase + endpoint))
+            .header("Authorization", "Bearer " + authToken)
+            .header("Content-Type", "application/json")
+            .timeout(Duration.ofSeconds(30));
+    }
+
+    /** Heart-rate data source of one simulated Android device. */
+    static String deviceDataSourceJson(int deviceId) {
+        return String.format("""
+            {
+                "dataStreamName": "com.ultimatequack.android.device_%d.heart_rate",
+                "type": "raw",
+                "application": {
+                    "packageName": "com.ultimatequack.healthyduck.android",
+                    "version": "2.1.0"
+                },
+                "dataType": {
+                    "name": "com.ultimatequack.heart_rate",
+                    "field": [{"name": "bpm", "format": "floatPoint"}]
+                },
+                "device": {
+                    "manufacturer": "Samsung",
+                    "model": "Galaxy S23",
+                    "type": "phone",
+                    "uid": "android_device_%d"
+                }
+            }
+            """, deviceId, deviceId);
+    }
+
+    static String dataSourcesEndpoint(String userId) {
+        return "/users/" + userId + "/dataSources";
+    }
+
+    /** One step-count point covering {@code [startTimeNanos, endTimeNanos]}. */
+    static String stepsDatasetJson(String dataSourceId, long startTimeNanos, long endTimeNanos, int steps) {
+        return String.format("""
+            {
+                "dataSourceId": "%s",
+                "maxEndTimeNs": %d,
+                "minStartTimeNs": %d,
+                "point": [
+                    {
+                        "startTimeNanos": %d,
+                        "endTimeNanos": %d,
+                        "dataTypeName": "com.ultimatequack.step_count",
+                        "value": [{"intVal": %d}],
+                        "originDataSourceId": "%s"
+                    }
+                ]
+            }
+            """, dataSourceId, endTimeNanos, startTimeNanos,
+                 startTimeNanos, endTimeNanos, steps, dataSourceId);
+    }
+
+    static String datasetEndpoint(String userId, String dataSourceId, long startTimeNanos, long endTimeNanos) {
+        return String.format("/users/%s/dataSources/%s/datasets/%d-%d",
+            userId, dataSourceId, startTimeNanos, endTimeNanos);
+    }
+
+    static String dailyAggregateEndpoint(String userId, long startTimeMillis, long endTimeMillis,
+                                         String dataTypeName) {
+        return String.format("/users/%s/dataset/aggregate/daily?startTimeMillis=%d&endTimeMillis=%d&dataTypeName=%s",
+            userId, startTimeMillis, endTimeMillis, dataTypeName);
+    }
+}
@@ -4,7 +4,6 @@ import org.junit.jupiter.api.parallel.ExecutionMode;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
-import java.net.URI;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.concurrent.CompletableFuture;
@@ -43,11 +42,7 @@ public class HealthyDuckAPITest {
     }
     
     private HttpRequest.Builder createRequestBuilder(String endpoint) {
-        return HttpRequest.newBuilder()
-            .uri(URI.create(API_BASE + endpoint))
-            .header("Authorization", "Bearer " + AUTH_TOKEN)
-            .header("Content-Type", "application/json")
-            .timeout(Duration.ofSeconds(30));
+        return ApiRequestTemplates.requestBuilder(API_BASE, AUTH_TOKEN, endpoint);
     }
     
     @Test
@@ -101,25 +96,10 @@ public class HealthyDuckAPITest {
         long currentTimeNanos = Instant.now().toEpochMilli() * 1_000_000L;
         long startTimeNanos = currentTimeNanos - (3600L * 1_000_000_000L); // 1 hour ago
         
-        String datasetJson = String.format("""
-            {
-                "dataSourceId": "%s",
-                "maxEndTimeNs": %d,
-                "minStartTimeNs": %d,
-                "point": [
-                    {
-                        "startTimeNanos": %d,
-                        "endTimeNanos": %d,
-                        "dataTypeName": "com.ultimatequack.step_count",
-                        "value": [{"intVal": 8500}],
-                        "originDataSourceId": "%s"
-                    }
-                ]
-            }
-            """, testDataSourceId, currentTimeNanos, startTimeNanos, 
-                 startTimeNanos, currentTimeNanos, testDataSourceId);
+        String datasetJson = ApiRequestTemplates.stepsDatasetJson(
+            testDataSourceId, startTimeNanos, currentTimeNanos, 8500);
         
-        String endpoint = String.format("/users/%s/dataSources/%s/datasets/%d-%d",
+        String endpoint = ApiRequestTemplates.datasetEndpoint(
             TEST_USER_ID, testDataSourceId, startTimeNanos, currentTimeNanos);
         
         HttpRequest request = createRequestBuilder(endpoint)
@@ -182,26 +162,7 @@ public class HealthyDuckAPITest {
             final int deviceId = i;
             CompletableFuture<HttpResponse<String>> future = CompletableFuture.supplyAsync(() -> {
                 try {
-                    String dataSourceJson = String.format("""
-                        {
-                            "dataStreamName": "com.ultimatequack.android.device_%d.heart_rate",
-                            "type": "raw",
-                            "application": {
-                                "packageName": "com.ultimatequack.healthyduck.android",
-                                "version": "2.1.0"
-                            },
-                            "dataType": {
-                                "name": "com.ultimatequack.heart_rate",
-                                "field": [{"name": "bpm", "format": "floatPoint"}]
-                            },
-                            "device": {
-                                "manufacturer": "Samsung",
-                                "model": "Galaxy S23",
-                                "type": "phone",
-                                "uid": "android_device_%d"
-                            }
-                        }
-                        """, deviceId, deviceId);
+                    String dataSourceJson = ApiRequestTemplates.deviceDataSourceJson(deviceId);
                     
                     HttpRequest request = createRequestBuilder("/users/" + TEST_USER_ID + "/dataSources")
                         .POST(HttpRequest.BodyPublishers.ofString(dataSourceJson))
@@ -236,8 +197,8 @@ public class HealthyDuckAPITest {
         long endTime = Instant.now().toEpochMilli();
         long startTime = endTime - (7 * 24 * 60 * 60 * 1000L); // 7 days ago
         
-        String endpoint = String.format("/users/%s/dataset/aggregate/daily?startTimeMillis=%d&endTimeMillis=%d&dataTypeName=com.ultimatequack.step_count",
-            TEST_USER_ID, startTime, endTime);
+        String endpoint = ApiRequestTemplates.dailyAggregateEndpoint(
+            TEST_USER_ID, startTime, endTime, ApiRequestTemplates.STEP_COUNT_TYPE);
         
         HttpRequest request = createRequestBuilder(endpoint)
             .GET()
@@ -0,0 +1,564 @@
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Open-loop load generator for the fitness API, built on the request templates of
+ * {@link HealthyDuckAPITest}. Simulated devices create their data source, PATCH step
+ * counts and read daily aggregates in a configurable mix, at an arrival rate that follows
+ * a ramp profile.
+ *
+ * <p>Requests are scheduled at their intended times whether or not earlier ones have
+ * finished, and latency is measured from the intended time. A slow server therefore shows
+ * up as queueing delay in the percentiles rather than as a lower request rate, which is
+ * the coordinated omission a closed loop of N threads would hide. Each request runs on
+ * its own virtual thread on JDK 21+, or on a cached pool before that.
+ *
+ * <pre>
+ * java HealthyDuckLoadRunner --target=stub --devices=20000 --rate=2000 --duration=120 --profile=ramp:30
+ * java HealthyDuckLoadRunner --target=http://localhost:3000/api/fitness/v1 --token=... --user=...
+ * </pre>
+ *
+ * Options (defaults in brackets):
+ * <ul>
+ *   <li>{@code --target} API base URL, or {@code stub} for an in-process stand-in [{@code http://localhost:3000/api/fitness/v1}]</li>
+ *   <li>{@code --token}, {@code --user} bearer token and user id [the functional suite's mock values]</li>
+ *   <li>{@code --devices} simulated devices [10000]</li>
+ *   <li>{@code --rate} peak requests per second across all devices [500]</li>
+ *   <li>{@code --duration} seconds of load, including the ramp [60]</li>
+ *   <li>{@code --warmup} leading seconds whose requests are sent but left out of the report [5]</li>
+ *   <li>{@code --preregister} create every device's data source before the load starts, unmeasured [true]</li>
+ *   <li>{@code --profile} {@code constant}, {@code ramp:SECONDS} (linear from zero) or {@code steps:N} (N equal rate steps) [ramp:10]</li>
+ *   <li>{@code --mix} weights of {@code create}, {@code ingest} and {@code aggregate} [create=5,ingest=80,aggregate=15]</li>
+ *   <li>{@code --arrivals} {@code poisson} or {@code uniform} spacing [poisson]</li>
+ *   <li>{@code --maxInFlight} outstanding requests beyond which new arrivals are counted as dropped [50000]</li>
+ *   <li>{@code --threads} {@code virtual} or {@code platform} [virtual when available]</li>
+ *   <li>{@code --stubLatencyMs} service time of the stub server [5]</li>
+ * </ul>
+ */
+public class HealthyDuckLoadRunner {
+    private static final String DEFAULT_API_BASE = "http://localhost:3000/api/fitness/v1";
+    private static final String DEFAULT_USER_ID = "test-user-123";
+    private static final String DEFAULT_AUTH_TOKEN = "mock-jwt-token";
+    private static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+
+    private static final int CREATE = 0;
+    private static final int INGEST = 1;
+    private static final int AGGREGATE = 2;
+    private static final String[] OPERATION_NAMES = {"create", "ingest", "aggregate"};
+
+    private final Config config;
+    private final String apiBase;
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicReferenceArray<String> deviceDataSources;
+    private final Recorder[] recorders = {new Recorder(), new Recorder(), new Recorder()};
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong dropped = new AtomicLong();
+
+    HealthyDuckLoadRunner(Config config, String apiBase, HttpClient httpClient) {
+        this.config = config;
+        this.apiBase = apiBase;
+        this.httpClient = httpClient;
+        this.deviceDataSources = new AtomicReferenceArray<>(config.devices);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Config config = Config.parse(args);
+        StubServer stub = "stub".equals(config.target) ? new StubServer(config.stubLatencyMs) : null;
+        String apiBase = stub != null ? stub.apiBase() : config.target;
+
+        ExecutorService executor = config.virtualThreads ? newVirtualThreadPerTaskExecutor()
+                                                         : Executors.newCachedThreadPool();
+        HttpClient httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(10))
+            .executor(executor)
+            .build();
+
+        System.out.printf(Locale.ROOT, "Target %s, %d devices, peak %.0f req/s for %ds (%s, %s arrivals), %s threads%n",
+            apiBase, config.devices, config.rate, config.durationSeconds, config.profile, config.arrivals,
+            config.virtualThreads ? "virtual" : "platform");
+        try {
+            HealthyDuckLoadRunner runner = new HealthyDuckLoadRunner(config, apiBase, httpClient);
+            if (config.preregister) {
+                runner.preregister(executor);
+            }
+            runner.run(executor);
+        } finally {
+            executor.shutdownNow();
+            if (stub != null) {
+                stub.close();
+            }
+        }
+    }
+
+    /** Creates each device's data source with bounded concurrency, so ingest has somewhere to write. */
+    void preregister(ExecutorService executor) throws InterruptedException {
+        Semaphore permits = new Semaphore(64);
+        long start = System.nanoTime();
+        for (int device = 0; device < config.devices; device++) {
+            int id = device;
+            permits.acquire();
+            executor.execute(() -> {
+                try {
+                    execute(CREATE, id, 0, System.nanoTime(), false);
+                } finally {
+                    permits.release();
+                }
+            });
+        }
+        permits.acquire(64);
+        int registered = 0;
+        for (int device = 0; device < config.devices; device++) {
+            if (deviceDataSources.get(device) != null) {
+                registered++;
+            }
+        }
+        System.out.printf(Locale.ROOT, "Registered %d of %d device data sources in %.1fs%n",
+            registered, config.devices, (System.nanoTime() - start) / 1e9);
+    }
+
+    void run(ExecutorService executor) throws InterruptedException {
+        SplittableRandom random = new SplittableRandom(config.seed);
+        long durationNanos = TimeUnit.SECONDS.toNanos(config.durationSeconds);
+        long start = System.nanoTime();
+        long measureFrom = start + TimeUnit.SECONDS.toNanos(config.warmupSeconds);
+        long nextReport = start + TimeUnit.SECONDS.toNanos(10);
+        long scheduled = 0;
+        double offsetNanos = 0;
+
+        while (true) {
+            double rate = config.rateAt(offsetNanos / 1e9);
+            // A zero rate at the start of a ramp still has to advance time
+            double gap = rate > 0 ? 1e9 / rate : 1e7;
+            offsetNanos += config.poisson && rate > 0 ? -Math.log(1 - random.nextDouble()) * gap : gap;
+            if (offsetNanos >= durationNanos) {
+                break;
+            }
+            if (rate <= 0) {
+                continue;
+            }
+            long intended = start + (long) offsetNanos;
+            long now = System.nanoTime();
+            if (intended > now) {
+                TimeUnit.NANOSECONDS.sleep(intended - now);
+                now = System.nanoTime();
+            }
+            if (now >= nextReport) {
+                progress(start, now, scheduled);
+                nextReport += TimeUnit.SECONDS.toNanos(10);
+            }
+
+            scheduled++;
+            if (inFlight.get() >= config.maxInFlight) {
+                // The load generator itself is saturated; report it instead of silently slowing down
+                if (intended >= measureFrom) {
+                    dropped.incrementAndGet();
+                }
+                continue;
+            }
+            int operation = config.pickOperation(random.nextInt(config.totalWeight()));
+            int device = random.nextInt(config.devices);
+            int steps = 100 + random.nextInt(2000);
+            inFlight.incrementAndGet();
+            executor.execute(() -> {
+                try {
+                    execute(operation, device, steps, intended, intended >= measureFrom);
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+            });
+        }
+
+        long drainDeadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(35);
+        while (inFlight.get() > 0 && System.nanoTime() < drainDeadline) {
+            Thread.sleep(50);
+        }
+        report();
+    }
+
+    private void execute(int operation, int device, int steps, long intendedNanos, boolean measured) {
+        String dataSourceId = deviceDataSources.get(device);
+        // A device cannot ingest before its data source exists
+        int actual = operation == INGEST && dataSourceId == null ? CREATE : operation;
+        HttpRequest request;
+        switch (actual) {
+            case CREATE:
+                request = ApiRequestTemplates.requestBuilder(apiBase, config.token,
+                        ApiRequestTemplates.dataSourcesEndpoint(config.userId))
+                    .POST(HttpRequest.BodyPublishers.ofString(ApiRequestTemplates.deviceDataSourceJson(device)))
+                    .build();
+                break;
+            case INGEST: {
+                long endNanos = System.currentTimeMillis() * 1_000_000L;
+                long startNanos = endNanos - 60_000_000_000L;
+                request = ApiRequestTemplates.requestBuilder(apiBase, config.token,
+                        ApiRequestTemplates.datasetEndpoint(config.userId, dataSourceId, startNanos, endNanos))
+                    .method("PATCH", HttpRequest.BodyPublishers.ofString(
+                        ApiRequestTemplates.stepsDatasetJson(dataSourceId, startNanos, endNanos, steps)))
+                    .build();
+                break;
+            }
+            default: {
+                long endMillis = System.currentTimeMillis();
+                request = ApiRequestTemplates.requestBuilder(apiBase, config.token,
+                        ApiRequestTemplates.dailyAggregateEndpoint(config.userId, endMillis - 7 * DAY_MILLIS,
+                                                                   endMillis, ApiRequestTemplates.STEP_COUNT_TYPE))
+                    .GET()
+                    .build();
+                break;
+            }
+        }
+
+        // Warm-up and registration requests still go out but do not count
+        Recorder recorder = measured ? recorders[actual] : new Recorder();
+        long sent = System.nanoTime();
+        try {
+            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            long done = System.nanoTime();
+            int status = response.statusCode();
+            boolean ok = actual == CREATE ? status == 201 || status == 409 : status == 200;
+            if (actual == CREATE && status == 201) {
+                rememberDataSource(device, response.body());
+            }
+            recorder.record(done - intendedNanos, done - sent, status, ok);
+        } catch (IOException e) {
+            long done = System.nanoTime();
+            recorder.record(done - intendedNanos, done - sent, -1, false);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void rememberDataSource(int device, String body) {
+        try {
+            JsonNode id = objectMapper.readTree(body).get("dataStreamId");
+            if (id != null) {
+                deviceDataSources.compareAndSet(device, null, id.asText());
+            }
+        } catch (IOException e) {
+            // Treated as not created; the device will create again
+        }
+    }
+
+    private void progress(long start, long now, long scheduled) {
+        long completed = 0;
+        for (Recorder recorder : recorders) {
+            completed += recorder.count();
+        }
+        double elapsed = (now - start) / 1e9;
+        System.out.printf(Locale.ROOT, "%6.0fs  scheduled %d  recorded %d (%.0f/s)  in flight %d  dropped %d%n",
+            elapsed, scheduled, completed, completed / elapsed, inFlight.get(), dropped.get());
+    }
+
+    private void report() {
+        // Rates are over the window in which measured requests were scheduled
+        double seconds = config.durationSeconds - config.warmupSeconds;
+        System.out.println();
+        System.out.printf(Locale.ROOT, "Measured %.0fs after %ds warm-up; dropped %d at the generator; %d still in flight%n",
+            seconds, config.warmupSeconds, dropped.get(), inFlight.get());
+        System.out.println("Latency is from the intended send time (ms); service time is from the actual send.");
+        System.out.printf(Locale.ROOT, "%-10s %9s %9s %8s %8s %8s %8s %8s %8s %8s %9s%n",
+            "operation", "requests", "req/s", "errors", "p50", "p90", "p99", "p99.9", "max", "svc p50", "svc p99");
+        Recorder total = new Recorder();
+        for (int op = 0; op < recorders.length; op++) {
+            Recorder recorder = recorders[op];
+            total.addAll(recorder);
+            printRow(OPERATION_NAMES[op], recorder, seconds);
+        }
+        printRow("total", total, seconds);
+        System.out.println("Status codes: " + total.statusCounts());
+    }
+
+    private static void printRow(String name, Recorder recorder, double seconds) {
+        Recorder.Snapshot latency = recorder.latencySnapshot();
+        Recorder.Snapshot service = recorder.serviceSnapshot();
+        System.out.printf(Locale.ROOT, "%-10s %9d %9.1f %8d %8.1f %8.1f %8.1f %8.1f %8.1f %8.1f %9.1f%n",
+            name, recorder.count(), recorder.count() / seconds, recorder.errors(),
+            latency.percentileMillis(50), latency.percentileMillis(90), latency.percentileMillis(99),
+            latency.percentileMillis(99.9), latency.percentileMillis(100),
+            service.percentileMillis(50), service.percentileMillis(99));
+    }
+
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Virtual threads require JDK 21 or newer", e);
+        }
+    }
+
+    static boolean isVirtualThreadSupported() {
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /** Every sample kept exactly: a few million longs per run is cheap next to the HTTP work. */
+    static final class Recorder {
+        private long[] latencies = new long[1024];
+        private long[] serviceTimes = new long[1024];
+        private int count;
+        private long errors;
+        private final Map<Integer, Long> statuses = new LinkedHashMap<>();
+
+        synchronized void record(long latencyNanos, long serviceNanos, int status, boolean ok) {
+            append(latencyNanos, serviceNanos);
+            if (!ok) {
+                errors++;
+            }
+            statuses.merge(status, 1L, Long::sum);
+        }
+
+        synchronized void addAll(Recorder other) {
+            synchronized (other) {
+                for (int i = 0; i < other.count; i++) {
+                    append(other.latencies[i], other.serviceTimes[i]);
+                }
+                errors += other.errors;
+                for (Map.Entry<Integer, Long> entry : other.statuses.entrySet()) {
+                    statuses.merge(entry.getKey(), entry.getValue(), Long::sum);
+                }
+            }
+        }
+
+        private void append(long latencyNanos, long serviceNanos) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+                serviceTimes = Arrays.copyOf(serviceTimes, count * 2);
+            }
+            latencies[count] = latencyNanos;
+            serviceTimes[count] = serviceNanos;
+            count++;
+        }
+
+        synchronized int count() { return count; }
+        synchronized long errors() { return errors; }
+        synchronized Map<Integer, Long> statusCounts() { return new LinkedHashMap<>(statuses); }
+
+        synchronized Snapshot latencySnapshot() {
+            return new Snapshot(Arrays.copyOf(latencies, count));
+        }
+
+        synchronized Snapshot serviceSnapshot() {
+            return new Snapshot(Arrays.copyOf(serviceTimes, count));
+        }
+
+        static final class Snapshot {
+            private final long[] sorted;
+
+            Snapshot(long[] values) {
+                Arrays.sort(values);
+                this.sorted = values;
+            }
+
+            double percentileMillis(double percentile) {
+                if (sorted.length == 0) {
+                    return 0;
+                }
+                int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+                return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))] / 1e6;
+            }
+        }
+    }
+
+    static final class Config {
+        String target = DEFAULT_API_BASE;
+        String token = DEFAULT_AUTH_TOKEN;
+        String userId = DEFAULT_USER_ID;
+        int devices = 10000;
+        double rate = 500;
+        int durationSeconds = 60;
+        int warmupSeconds = 5;
+        boolean preregister = true;
+        String profile = "ramp:10";
+        String arrivals = "poisson";
+        boolean poisson = true;
+        int[] weights = {5, 80, 15};
+        int maxInFlight = 50000;
+        boolean virtualThreads = isVirtualThreadSupported();
+        int stubLatencyMs = 5;
+        long seed = 42;
+
+        static Config parse(String[] args) {
+            Config config = new Config();
+            for (String arg : args) {
+                if (!arg.startsWith("--") || arg.indexOf('=') < 0) {
+                    throw new IllegalArgumentException("Expected --name=value, got " + arg);
+                }
+                String name = arg.substring(2, arg.indexOf('='));
+                String value = arg.substring(arg.indexOf('=') + 1);
+                switch (name) {
+                    case "target": config.target = value.replaceAll("/$", ""); break;
+                    case "token": config.token = value; break;
+                    case "user": config.userId = value; break;
+                    case "devices": config.devices = positive(name, Integer.parseInt(value)); break;
+                    case "rate": config.rate = Double.parseDouble(value); break;
+                    case "duration": config.durationSeconds = positive(name, Integer.parseInt(value)); break;
+                    case "warmup": config.warmupSeconds = Integer.parseInt(value); break;
+                    case "preregister": config.preregister = Boolean.parseBoolean(value); break;
+                    case "profile": config.profile = value; break;
+                    case "arrivals": config.arrivals = value; config.poisson = "poisson".equals(value); break;
+                    case "mix": config.weights = parseMix(value); break;
+                    case "maxInFlight": config.maxInFlight = positive(name, Integer.parseInt(value)); break;
+                    case "threads": config.virtualThreads = "virtual".equals(value); break;
+                    case "stubLatencyMs": config.stubLatencyMs = Integer.parseInt(value); break;
+                    case "seed": config.seed = Long.parseLong(value); break;
+                    default: throw new IllegalArgumentException("Unknown option --" + name);
+                }
+            }
+            if (config.rate <= 0) {
+                throw new IllegalArgumentException("--rate must be > 0");
+            }
+            if (config.warmupSeconds < 0 || config.warmupSeconds >= config.durationSeconds) {
+                throw new IllegalArgumentException("--warmup must be >= 0 and shorter than --duration");
+            }
+            if (config.virtualThreads && !isVirtualThreadSupported()) {
+                throw new IllegalArgumentException("--threads=virtual requires JDK 21 or newer");
+            }
+            config.rateAt(0); // validates the profile
+            return config;
+        }
+
+        /** Target arrival rate {@code seconds} into the run. */
+        double rateAt(double seconds) {
+            if ("constant".equals(profile)) {
+                return rate;
+            }
+            if (profile.startsWith("ramp:")) {
+                double ramp = Double.parseDouble(profile.substring(5));
+                return ramp <= 0 || seconds >= ramp ? rate : rate * seconds / ramp;
+            }
+            if (profile.startsWith("steps:")) {
+                int steps = positive("steps", Integer.parseInt(profile.substring(6)));
+                int step = Math.min(steps - 1, (int) (seconds * steps / durationSeconds));
+                return rate * (step + 1) / steps;
+            }
+            throw new IllegalArgumentException("Unknown profile " + profile);
+        }
+
+        int totalWeight() {
+            return weights[CREATE] + weights[INGEST] + weights[AGGREGATE];
+        }
+
+        int pickOperation(int roll) {
+            if (roll < weights[CREATE]) {
+                return CREATE;
+            }
+            return roll < weights[CREATE] + weights[INGEST] ? INGEST : AGGREGATE;
+        }
+
+        private static int[] parseMix(String value) {
+            int[] weights = new int[3];
+            for (String part : value.split(",")) {
+                String[] pair = part.split("=");
+                int index = Arrays.asList(OPERATION_NAMES).indexOf(pair[0].trim());
+                if (pair.length != 2 || index < 0) {
+                    throw new IllegalArgumentException("Bad --mix entry " + part);
+                }
+                weights[index] = Integer.parseInt(pair[1].trim());
+            }
+            if (weights[CREATE] + weights[INGEST] + weights[AGGREGATE] <= 0) {
+                throw new IllegalArgumentException("--mix needs a positive weight");
+            }
+            return weights;
+        }
+
+        private static int positive(String name, int value) {
+            if (value < 1) {
+                throw new IllegalArgumentException("--" + name + " must be >= 1");
+            }
+            return value;
+        }
+    }
+
+    /**
+     * Loopback stand-in for the three routes under load, answering after a fixed service
+     * time. Lets the runner itself be profiled without a dev server or database.
+     */
+    static final class StubServer implements AutoCloseable {
+        private final HttpServer server;
+        private final ExecutorService executor;
+        private final int latencyMs;
+
+        StubServer(int latencyMs) throws IOException {
+            this.latencyMs = latencyMs;
+            server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 4096);
+            executor = isVirtualThreadSupported() ? newVirtualThreadPerTaskExecutor() : Executors.newCachedThreadPool();
+            server.setExecutor(executor);
+            server.createContext("/api/fitness/v1/users/", this::handle);
+            server.start();
+        }
+
+        String apiBase() {
+            return "http://127.0.0.1:" + server.getAddress().getPort() + "/api/fitness/v1";
+        }
+
+        private void handle(HttpExchange exchange) throws IOException {
+            try (InputStream body = exchange.getRequestBody()) {
+                body.readAllBytes();
+            }
+            if (latencyMs > 0) {
+                try {
+                    Thread.sleep(latencyMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            String path = exchange.getRequestURI().getPath();
+            String method = exchange.getRequestMethod();
+            if ("POST".equals(method) && path.endsWith("/dataSources")) {
+                send(exchange, 201, "{\"dataStreamId\":\"raw:com.ultimatequack.heart_rate:" + UUID.randomUUID() + "\"}");
+            } else if ("PATCH".equals(method) && path.contains("/datasets/")) {
+                send(exchange, 200, "{\"message\":\"Data points updated successfully\"}");
+            } else if ("GET".equals(method) && path.endsWith("/dataset/aggregate/daily")) {
+                send(exchange, 200, "{\"bucket\":[]}");
+            } else {
+                send(exchange, 404, "{\"error\":\"Not found\"}");
+            }
+        }
+
+        private static void send(HttpExchange exchange, int status, String body) throws IOException {
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+
+        @Override
+        public void close() {
+            server.stop(0);
+            executor.shutdownNow();
+        }
+    }
+}